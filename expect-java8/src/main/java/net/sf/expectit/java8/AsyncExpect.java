@@ -0,0 +1,200 @@
+package net.sf.expectit.java8;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import net.sf.expectit.Expect;
+import net.sf.expectit.ExpectCallback;
+import net.sf.expectit.ExpectReactor;
+import net.sf.expectit.Result;
+import net.sf.expectit.matcher.Matcher;
+
+/**
+ * An asynchronous view of an {@link Expect} instance which returns {@link CompletableFuture}s
+ * instead of blocking the calling thread.
+ * <p/>
+ * The instance must be built with input channels attached to the reactor by
+ * {@link net.sf.expectit.ExpectBuilder#withReactor(ExpectReactor)}. The expect operations are
+ * completed by the reactor threads when the input data arrives, so a single thread can drive
+ * any number of sessions by chaining the futures. The dependent stages which are not async run
+ * in the reactor threads and must not block.
+ * <p/>
+ * Only one expect operation can be in progress for an input. The returned future of an
+ * operation started while another one is in progress fails with
+ * {@link IllegalStateException}.
+ * <p/>
+ * The data is sent by the send executor, so sending from a dependent stage doesn't block the
+ * reactor threads while the output is not accepting the data. The data is written in the order
+ * of the send calls.
+ */
+public final class AsyncExpect {
+    private final Expect expect;
+    private final ExpectReactor reactor;
+    private final Executor sendExecutor;
+    private CompletableFuture<?> lastSend = CompletableFuture.completedFuture(null);
+
+    /**
+     * Constructor. The data is sent by {@link ForkJoinPool#commonPool()}.
+     *
+     * @param expect  the instance attached to the reactor.
+     * @param reactor the reactor.
+     */
+    public AsyncExpect(Expect expect, ExpectReactor reactor) {
+        this(expect, reactor, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param expect       the instance attached to the reactor.
+     * @param reactor      the reactor.
+     * @param sendExecutor the executor sending the data, for example, a dedicated pool if the
+     *                     output may block for a long time.
+     */
+    public AsyncExpect(Expect expect, ExpectReactor reactor, Executor sendExecutor) {
+        this.expect = expect;
+        this.reactor = reactor;
+        this.sendExecutor = sendExecutor;
+    }
+
+    /**
+     * Returns the underlying instance.
+     *
+     * @return the instance.
+     */
+    public Expect getExpect() {
+        return expect;
+    }
+
+    /**
+     * Starts an expect operation in the first input with the default timeout.
+     *
+     * @param matcher the matcher.
+     * @param <R>     the result type.
+     * @return the future completed with the result, or with the exception which
+     * {@link Expect#expect(Matcher)} would throw.
+     */
+    public <R extends Result> CompletableFuture<R> expectAsync(Matcher<R> matcher) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            reactor.expect(expect, matcher, new FutureCallback<>(future));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Starts an expect operation in the given input.
+     *
+     * @param input     the input index.
+     * @param timeoutMs the timeout in milliseconds.
+     * @param matcher   the matcher.
+     * @param <R>       the result type.
+     * @return the future completed with the result, or with the exception which
+     * {@link Expect#expectIn(int, long, Matcher)} would throw.
+     */
+    public <R extends Result> CompletableFuture<R> expectInAsync(
+            int input,
+            long timeoutMs,
+            Matcher<R> matcher) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            reactor.expectIn(expect, input, timeoutMs, matcher, new FutureCallback<>(future));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Sends the string to the output. The string is written by the send executor after the
+     * data of the previous send calls.
+     *
+     * @param string the string.
+     * @return the future completed when the string has been written, or with the exception
+     * which {@link Expect#send(String)} would throw.
+     */
+    public CompletableFuture<AsyncExpect> sendAsync(String string) {
+        return send(() -> expect.send(string));
+    }
+
+    /**
+     * Sends the string followed by the line separator to the output.
+     *
+     * @param string the string.
+     * @return the future completed when the string has been written.
+     * @see #sendAsync(String)
+     */
+    public CompletableFuture<AsyncExpect> sendLineAsync(String string) {
+        return send(() -> expect.sendLine(string));
+    }
+
+    private synchronized CompletableFuture<AsyncExpect> send(Send send) {
+        CompletableFuture<AsyncExpect> future = new CompletableFuture<>();
+        try {
+            // the previous failures don't prevent the later data from being sent
+            lastSend.whenCompleteAsync((r, e) -> {
+                try {
+                    send.run();
+                    future.complete(this);
+                } catch (IOException | RuntimeException error) {
+                    future.completeExceptionally(error);
+                }
+            }, sendExecutor);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        lastSend = future;
+        return future;
+    }
+
+    /**
+     * Writes the data to the output.
+     */
+    private interface Send {
+        void run() throws IOException;
+    }
+
+    /**
+     * Completes a future with the outcome of an operation.
+     */
+    private static final class FutureCallback<R extends Result> implements ExpectCallback<R> {
+        private final CompletableFuture<R> future;
+
+        FutureCallback(CompletableFuture<R> future) {
+            this.future = future;
+        }
+
+        @Override
+        public void completed(R result) {
+            future.complete(result);
+        }
+
+        @Override
+        public void failed(Throwable error) {
+            future.completeExceptionally(error);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package net.sf.expectit.java8;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.contains;
+import static net.sf.expectit.matcher.Matchers.regexp;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import net.sf.expectit.Expect;
+import net.sf.expectit.ExpectBuilder;
+import net.sf.expectit.ExpectReactor;
+import net.sf.expectit.Result;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the asynchronous expect operations.
+ */
+public class AsyncExpectTest {
+    private static final long TIMEOUT = 1500;
+
+    private final List<Pipe> pipes = new ArrayList<>();
+    private final List<Expect> expects = new ArrayList<>();
+    private ExpectReactor reactor;
+
+    @Before
+    public void setup() throws IOException {
+        reactor = new ExpectReactor();
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        for (Expect expect : expects) {
+            expect.close();
+        }
+        reactor.close();
+        for (Pipe pipe : pipes) {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    private AsyncExpect open(ByteArrayOutputStream output) throws IOException {
+        Pipe pipe = Pipe.open();
+        pipes.add(pipe);
+        Expect expect = new ExpectBuilder()
+                .withInputChannels(pipe.source())
+                .withOutput(output)
+                .withReactor(reactor)
+                .withTimeout(TIMEOUT, TimeUnit.MILLISECONDS)
+                .build();
+        expects.add(expect);
+        return new AsyncExpect(expect, reactor);
+    }
+
+    private void write(int session, String string) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(string.getBytes());
+        while (bytes.hasRemaining()) {
+            pipes.get(session).sink().write(bytes);
+        }
+    }
+
+    private static String line(int i) {
+        StringBuilder line = new StringBuilder("line" + i);
+        for (int j = 0; j < 300; j++) {
+            line.append((char) ('a' + (i + j) % 26));
+        }
+        return line.append('\n').toString();
+    }
+
+    @Test(timeout = 10000)
+    public void testPipeline() throws Exception {
+        int sessions = 100;
+        List<ByteArrayOutputStream> outputs = new ArrayList<>();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            outputs.add(output);
+            AsyncExpect async = open(output);
+            futures.add(
+                    async.expectAsync(contains("login:"))
+                            .thenCompose(r -> async.sendLineAsync("user"))
+                            .thenCompose(a -> a.expectAsync(contains("$ ")))
+                            .thenApply(Result::getBefore));
+        }
+        for (int i = 0; i < sessions; i++) {
+            write(i, "login:");
+        }
+        for (int i = 0; i < sessions; i++) {
+            // the prompt may arrive before the command is sent
+            write(i, "welcome" + i + "$ ");
+        }
+        for (int i = 0; i < sessions; i++) {
+            assertEquals(futures.get(i).get(), "welcome" + i);
+            assertEquals(outputs.get(i).toString(), "user\n");
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFailures() throws Exception {
+        AsyncExpect async = open(new ByteArrayOutputStream());
+        Result result = async.expectInAsync(0, 100, contains("x")).get();
+        assertFalse(result.isSuccessful());
+
+        CompletableFuture<Result> pending = async.expectAsync(contains("x"));
+        try {
+            async.expectAsync(contains("y")).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        pipes.get(0).sink().close();
+        try {
+            pending.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof EOFException);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testResultsReadConcurrently() throws Exception {
+        AsyncExpect async = open(new ByteArrayOutputStream());
+        write(0, line(0));
+        // the groups of a regular expression result are read from the input on every call
+        Result previous = async.expectAsync(regexp("line\\d+[a-z]+\n")).get();
+        for (int i = 1; i < 2000; i++) {
+            // the reactor thread modifies the buffer while the previous result is read
+            CompletableFuture<Result> next = async.expectAsync(regexp("line\\d+[a-z]+\n"));
+            write(0, line(i));
+            String expected = line(i - 1);
+            do {
+                assertEquals(previous.group(), expected);
+            } while (!next.isDone());
+            previous = next.get();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSendExecutor() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        AsyncExpect async = open(output);
+        List<Runnable> tasks = new ArrayList<>();
+        async = new AsyncExpect(async.getExpect(), reactor, tasks::add);
+        CompletableFuture<AsyncExpect> first = async.sendAsync("a");
+        CompletableFuture<AsyncExpect> second = async.sendLineAsync("b");
+        // the caller thread doesn't write, the second send waits for the first one
+        assertFalse(first.isDone());
+        assertEquals(tasks.size(), 1);
+        tasks.remove(0).run();
+        assertTrue(first.isDone());
+        assertEquals(output.toString(), "a");
+        assertFalse(second.isDone());
+        tasks.remove(0).run();
+        assertEquals(second.get(), async);
+        assertEquals(output.toString(), "ab\n");
+
+        // a failed send doesn't prevent the next one
+        CompletableFuture<AsyncExpect> failed = async.sendAsync(null);
+        CompletableFuture<AsyncExpect> third = async.sendAsync("c");
+        tasks.remove(0).run();
+        tasks.remove(0).run();
+        try {
+            failed.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NullPointerException);
+        }
+        third.get();
+        assertEquals(output.toString(), "ab\nc");
+    }
+
+    @Test
+    public void testNotAttached() throws Exception {
+        Expect expect = new ExpectBuilder()
+                .withInputs(new ByteArrayInputStream(new byte[0]))
+                .build();
+        expects.add(expect);
+        try {
+            new AsyncExpect(expect, reactor).expectAsync(contains("x")).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.contains;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures many successful matches consuming the input buffer which holds a large backlog of
+ * output. Every operation receives {@code size} bytes and then reads them line by line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BacklogBenchmark {
+    @Param({"1048576"})
+    public int size;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        data = BenchmarkUtils.printableBytes(size, new Random(0));
+    }
+
+    @Benchmark
+    public int readLines() throws IOException {
+        Expect expect = new ExpectBuilder()
+                .withInputs(new ByteArrayInputStream(data))
+                .withRingBuffer(64 * 1024)
+                .build();
+        int lines = 0;
+        try {
+            // never matches, returns when the entire input has been received
+            expect.expect(contains("\u0000"));
+            while (expect.expect(contains("\n")).isSuccessful()) {
+                lines++;
+            }
+            return lines;
+        } finally {
+            expect.close();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Random;
+
+/**
+ * Helper methods to generate benchmark data.
+ */
+final class BenchmarkUtils {
+    private static final String ALPHABET =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 .,:;-_/";
+
+    private BenchmarkUtils() {
+    }
+
+    /**
+     * Generates printable ASCII data with a line break every 80 characters on average.
+     */
+    static byte[] printableBytes(int size, Random random) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = random.nextInt(80) == 0
+                    ? (byte) '\n'
+                    : (byte) ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        }
+        return bytes;
+    }
+
+    static String printableString(int size, Random random) {
+        return new String(printableBytes(size, random));
+    }
+}
@@ -0,0 +1,95 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.anyString;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the fixed cost of a short expect call. The input never ends and the buffer is empty
+ * at the start of every call, so every call waits for the data once and consumes one chunk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExpectCallBenchmark {
+    @Param({"pipe", "ring"})
+    public String transport;
+
+    private Expect expect;
+
+    @Setup
+    public void setup() throws IOException {
+        ExpectBuilder builder = new ExpectBuilder()
+                .withInputs(new EndlessInputStream());
+        if ("ring".equals(transport)) {
+            builder.withRingBuffer(64 * 1024);
+        }
+        expect = builder.build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        expect.close();
+    }
+
+    @Benchmark
+    public int expect() throws IOException {
+        return expect.expect(anyString()).end();
+    }
+
+    /**
+     * Produces short lines forever.
+     */
+    private static final class EndlessInputStream extends InputStream {
+        private final byte[] line = "prompt> ok\n".getBytes();
+
+        @Override
+        public int read() {
+            return 'x';
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int n = Math.min(len, line.length);
+            System.arraycopy(line, 0, b, off, n);
+            return n;
+        }
+    }
+}
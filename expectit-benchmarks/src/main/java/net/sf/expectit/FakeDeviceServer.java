@@ -0,0 +1,162 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * A local server which imitates the command line interface of many network devices. It sends
+ * the prompt when a client connects and replies to every received line with the given output
+ * followed by the prompt. All the connections are served by a single thread.
+ */
+final class FakeDeviceServer implements Closeable {
+    static final String PROMPT = "device> ";
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final byte[] reply;
+    private final Thread thread;
+
+    FakeDeviceServer(String output) throws IOException {
+        reply = (output + "\r\n" + PROMPT).getBytes(StandardCharsets.US_ASCII);
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress("127.0.0.1", 0), 4096);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "fake-device-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    SocketAddress getAddress() {
+        return server.socket().getLocalSocketAddress();
+    }
+
+    private void serve() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        ((Connection) key.attachment()).handle(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (selector.isOpen()) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.send(PROMPT.getBytes(StandardCharsets.US_ASCII));
+        channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        selector.close();
+        server.close();
+    }
+
+    /**
+     * A client connection with the output which has not been sent yet.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(4096);
+        private ByteBuffer output = ByteBuffer.allocate(0);
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void handle(SelectionKey key) throws IOException {
+            if (key.isReadable()) {
+                int len = channel.read(input);
+                if (len == -1) {
+                    key.cancel();
+                    channel.close();
+                    return;
+                }
+                input.flip();
+                while (input.hasRemaining()) {
+                    if (input.get() == '\n') {
+                        send(reply);
+                    }
+                }
+                input.clear();
+            }
+            if (key.isValid() && key.isWritable()) {
+                channel.write(output);
+            }
+            if (key.isValid()) {
+                key.interestOps(output.hasRemaining()
+                        ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                        : SelectionKey.OP_READ);
+            }
+        }
+
+        void send(byte[] bytes) throws IOException {
+            if (output.hasRemaining()) {
+                ByteBuffer newOutput = ByteBuffer.allocate(output.remaining() + bytes.length);
+                newOutput.put(output).put(bytes).flip();
+                output = newOutput;
+            } else {
+                output = ByteBuffer.wrap(bytes);
+            }
+            channel.write(output);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.sf.expectit.filter.Filter;
+import net.sf.expectit.filter.Filters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures applying a filter to a chunk of data appended to an input buffer holding
+ * {@code size} characters. The chunk contains the terminal color sequences and the numbers
+ * replaced by the filters, while the data already in the buffer has nothing to replace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FilterBenchmark {
+    private static final String COLOR = "\u001b[1;32m";
+    private static final String RESET = "\u001b[0m";
+
+    @Param({"removeColors", "removeNonPrintable", "replaceInString", "replaceInBuffer"})
+    public String filter;
+
+    @Param({"1024", "1048576"})
+    public int size;
+
+    @Param({"1024"})
+    public int chunk;
+
+    private StringBuilder buffer;
+    private String data;
+    private Filter instance;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        buffer = new StringBuilder(BenchmarkUtils.printableString(size, random));
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < chunk) {
+            builder.append(COLOR)
+                    .append('#')
+                    .append(random.nextInt(1000))
+                    .append(RESET)
+                    .append(BenchmarkUtils.printableString(40, random));
+        }
+        data = builder.toString();
+        if ("removeColors".equals(filter)) {
+            instance = Filters.removeColors();
+        } else if ("removeNonPrintable".equals(filter)) {
+            instance = Filters.removeNonPrintable();
+        } else if ("replaceInString".equals(filter)) {
+            instance = Filters.replaceInString("#(\\d+)", "<$1>");
+        } else {
+            instance = Filters.replaceInBuffer("#(\\d+)", "<$1>");
+        }
+    }
+
+    @Benchmark
+    public int append() {
+        try {
+            String string = instance.beforeAppend(data, buffer);
+            buffer.append(string);
+            instance.afterAppend(buffer);
+            return buffer.length();
+        } finally {
+            buffer.setLength(size);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.contains;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import net.sf.expectit.interact.Action;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures an interact loop which runs an action for every line of the input until the final
+ * marker. Every operation processes {@code lines} lines read inline, so the cost of the loop
+ * isn't hidden by the background threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InteractBenchmark {
+    @Param({"100", "10000"})
+    public int lines;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            builder.append("--More-- line ").append(i).append('\n');
+        }
+        data = builder.append("END\n").toString().getBytes();
+    }
+
+    @Benchmark
+    public int untilEnd() throws IOException {
+        Expect expect = new ExpectBuilder()
+                .withInputs(new ByteArrayInputStream(data))
+                .withInlineReading()
+                .build();
+        CountingAction action = new CountingAction();
+        try {
+            expect.interact()
+                    .when(contains("--More--")).then(action)
+                    .until(contains("END"));
+            return action.count;
+        } finally {
+            expect.close();
+        }
+    }
+
+    /**
+     * Counts the matches.
+     */
+    private static final class CountingAction implements Action<Result> {
+        private int count;
+
+        @Override
+        public void apply(Result result) {
+            count++;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.anyOf;
+import static net.sf.expectit.matcher.Matchers.contains;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.sf.expectit.matcher.Matcher;
+import net.sf.expectit.matcher.MatcherState;
+import net.sf.expectit.matcher.StatefulMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@code anyOf} over many substring matchers waiting for the last of them, which
+ * appears after {@code size} bytes of output. The {@code automaton} mode lets the substring
+ * matchers be evaluated together, the {@code separate} mode hides them behind a wrapper so
+ * every matcher scans the input on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ManyLiteralsBenchmark {
+    @Param({"automaton", "separate"})
+    public String mode;
+
+    @Param({"200"})
+    public int literals;
+
+    @Param({"1048576"})
+    public int size;
+
+    private byte[] data;
+    private Matcher<?> matcher;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        Matcher<?>[] matchers = new Matcher<?>[literals];
+        for (int i = 0; i < literals; i++) {
+            // the upper case letters never appear in the output before the prompt
+            String string = "ERROR-" + (char) ('A' + i % 26) + i + ": ";
+            matchers[i] = "automaton".equals(mode)
+                    ? contains(string)
+                    : new Separate(contains(string));
+        }
+        matcher = anyOf(matchers);
+        String output = BenchmarkUtils.printableString(size, random).toLowerCase();
+        data = (output + "ERROR-" + (char) ('A' + (literals - 1) % 26) + (literals - 1) + ": ")
+                .getBytes();
+    }
+
+    @Benchmark
+    public int anyOfLiterals() throws IOException {
+        Expect expect = new ExpectBuilder()
+                .withInputs(new ByteArrayInputStream(data))
+                .withRingBuffer(64 * 1024)
+                .build();
+        try {
+            return expect.expect(matcher).end();
+        } finally {
+            expect.close();
+        }
+    }
+
+    /**
+     * Delegates to a stateful matcher without exposing its type.
+     */
+    private static final class Separate implements StatefulMatcher<Result> {
+        private final StatefulMatcher<Result> delegate;
+
+        Separate(Matcher<Result> delegate) {
+            this.delegate = (StatefulMatcher<Result>) delegate;
+        }
+
+        @Override
+        public Result matches(String input, boolean isEof) {
+            return delegate.matches(input, isEof);
+        }
+
+        @Override
+        public Result matches(CharSequence input, boolean isEof) {
+            return delegate.matches(input, isEof);
+        }
+
+        @Override
+        public MatcherState<Result> createState() {
+            return delegate.createState();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.allOf;
+import static net.sf.expectit.matcher.Matchers.anyOf;
+import static net.sf.expectit.matcher.Matchers.anyString;
+import static net.sf.expectit.matcher.Matchers.contains;
+import static net.sf.expectit.matcher.Matchers.endsWith;
+import static net.sf.expectit.matcher.Matchers.eof;
+import static net.sf.expectit.matcher.Matchers.exact;
+import static net.sf.expectit.matcher.Matchers.matches;
+import static net.sf.expectit.matcher.Matchers.promptRegexp;
+import static net.sf.expectit.matcher.Matchers.regexp;
+import static net.sf.expectit.matcher.Matchers.sequence;
+import static net.sf.expectit.matcher.Matchers.startsWith;
+import static net.sf.expectit.matcher.Matchers.times;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.sf.expectit.matcher.CharSequenceMatcher;
+import net.sf.expectit.matcher.Matcher;
+import net.sf.expectit.matcher.RegexEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a single matching attempt of every {@link net.sf.expectit.matcher.Matchers} factory
+ * over an input buffer holding {@code size} characters of output followed by a prompt. The
+ * matcher sees the entire buffer for the first time, which is the worst case for the matchers
+ * resuming the scan of the new data, see {@link RegexpBenchmark} for the incremental case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MatchersBenchmark {
+    private static final String PROMPT = "device> ";
+    private static final String PROMPT_REGEXP = "dev\\w+> ";
+
+    @Param({
+            "contains", "regexp", "regexpStreaming", "regexpBounded", "promptRegexp", "matches",
+            "startsWith", "endsWith", "exact", "anyString", "eof", "anyOf", "allOf", "sequence",
+            "times"})
+    public String matcher;
+
+    @Param({"1024", "1048576", "52428800"})
+    public int size;
+
+    private String buffer;
+    private CharSequenceMatcher<?> charSequenceMatcher;
+
+    @Setup
+    public void setup() {
+        // the output doesn't contain the prompt characters
+        buffer = BenchmarkUtils.printableString(size - PROMPT.length(), new Random(0)) + PROMPT;
+        charSequenceMatcher = (CharSequenceMatcher<?>) createMatcher(matcher);
+    }
+
+    private static Matcher<?> createMatcher(String name) {
+        if ("contains".equals(name)) {
+            return contains(PROMPT);
+        } else if ("regexp".equals(name)) {
+            return regexp(PROMPT_REGEXP);
+        } else if ("regexpStreaming".equals(name)) {
+            return regexp(PROMPT_REGEXP, RegexEngine.STREAMING);
+        } else if ("regexpBounded".equals(name)) {
+            return regexp(PROMPT_REGEXP, 64);
+        } else if ("promptRegexp".equals(name)) {
+            return promptRegexp(PROMPT_REGEXP + "$", 64);
+        } else if ("matches".equals(name)) {
+            return matches("(?s).*" + PROMPT_REGEXP);
+        } else if ("startsWith".equals(name)) {
+            return startsWith(PROMPT);
+        } else if ("endsWith".equals(name)) {
+            return endsWith(PROMPT);
+        } else if ("exact".equals(name)) {
+            return exact(PROMPT);
+        } else if ("anyString".equals(name)) {
+            return anyString();
+        } else if ("eof".equals(name)) {
+            return eof();
+        } else if ("anyOf".equals(name)) {
+            return anyOf(contains("error> "), contains("login> "), contains(PROMPT));
+        } else if ("allOf".equals(name)) {
+            return allOf(contains("\n"), contains(PROMPT));
+        } else if ("sequence".equals(name)) {
+            return sequence(contains("\n"), contains(PROMPT));
+        } else if ("times".equals(name)) {
+            return times(2, contains("\n"));
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    @Benchmark
+    public boolean match() {
+        return charSequenceMatcher.matches(buffer, false).isSuccessful();
+    }
+}
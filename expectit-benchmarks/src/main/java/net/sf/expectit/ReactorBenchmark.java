@@ -0,0 +1,145 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.contains;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a command round trip of many concurrent sessions connected to a local fake device.
+ * Every operation sends a command to each session and waits for all the prompts.
+ * <p/>
+ * The {@code stream} mode reads the socket streams by a copier thread per session, the
+ * {@code channel} mode reads the socket channels in the calling threads, and the
+ * {@code reactor} mode performs the expect operations in the threads of a shared
+ * {@link ExpectReactor}, one per available processor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReactorBenchmark {
+    @Param({"100", "1000"})
+    public int sessions;
+
+    @Param({"stream", "channel", "reactor"})
+    public String mode;
+
+    @Param({"1024"})
+    public int outputSize;
+
+    private FakeDeviceServer server;
+    private ExpectReactor reactor;
+    private ExecutorService callers;
+    private final List<Closeable> sockets = new ArrayList<Closeable>();
+    private final List<Expect> expects = new ArrayList<Expect>();
+
+    @Setup
+    public void setup() throws IOException {
+        server = new FakeDeviceServer(BenchmarkUtils.printableString(outputSize, new Random(0)));
+        if ("reactor".equals(mode)) {
+            reactor = new ExpectReactor(Runtime.getRuntime().availableProcessors());
+        }
+        callers = Executors.newFixedThreadPool(sessions);
+        for (int i = 0; i < sessions; i++) {
+            ExpectBuilder builder = new ExpectBuilder();
+            if ("stream".equals(mode)) {
+                // the streams of a socket channel can't read and write concurrently
+                Socket socket = new Socket();
+                socket.connect(server.getAddress());
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                builder.withInputs(socket.getInputStream())
+                        .withOutput(socket.getOutputStream());
+            } else {
+                SocketChannel channel = SocketChannel.open(server.getAddress());
+                channel.socket().setTcpNoDelay(true);
+                sockets.add(channel);
+                builder.withInputChannels(channel)
+                        .withOutputChannel(channel)
+                        .withReactor(reactor);
+            }
+            Expect expect = builder.build();
+            expect.expect(contains(FakeDeviceServer.PROMPT));
+            expects.add(expect);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (Expect expect : expects) {
+            expect.close();
+        }
+        for (Closeable socket : sockets) {
+            socket.close();
+        }
+        callers.shutdownNow();
+        if (reactor != null) {
+            reactor.close();
+        }
+        server.close();
+    }
+
+    @Benchmark
+    public int roundTrip() throws Exception {
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>(sessions);
+        for (final Expect expect : expects) {
+            futures.add(callers.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    expect.sendLine("show version");
+                    return expect.expect(contains(FakeDeviceServer.PROMPT)).end();
+                }
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> future : futures) {
+            total += future.get();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,103 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.promptRegexp;
+import static net.sf.expectit.matcher.Matchers.regexp;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.sf.expectit.matcher.CharSequenceMatcher;
+import net.sf.expectit.matcher.Matcher;
+import net.sf.expectit.matcher.MatcherState;
+import net.sf.expectit.matcher.StatefulMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of a matching attempt for a prompt regular expression after a chunk of
+ * data arrives to an input buffer holding {@code size} characters. The {@code full} mode
+ * searches the entire buffer, the {@code bounded} mode declares the maximum match length, the
+ * {@code prompt} mode searches the end of the buffer only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RegexpBenchmark {
+    private static final String PROMPT = "[\\w-]+[#>$] $";
+
+    @Param({"full", "bounded", "prompt"})
+    public String mode;
+
+    @Param({"10485760"})
+    public int size;
+
+    @Param({"1024"})
+    public int chunk;
+
+    private StringBuilder buffer;
+    private String data;
+    private Matcher<Result> matcher;
+    private MatcherState<Result> state;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        // the output doesn't contain the prompt characters
+        buffer = new StringBuilder(BenchmarkUtils.printableString(size, random));
+        data = BenchmarkUtils.printableString(chunk, random);
+        if ("bounded".equals(mode)) {
+            matcher = regexp(PROMPT, 64);
+        } else if ("prompt".equals(mode)) {
+            matcher = promptRegexp(PROMPT, 64);
+        } else {
+            matcher = regexp(PROMPT);
+        }
+        if (matcher instanceof StatefulMatcher) {
+            state = ((StatefulMatcher<Result>) matcher).createState();
+            state.matches(buffer, 0, false);
+        }
+    }
+
+    @Benchmark
+    public boolean newChunk() {
+        buffer.append(data);
+        try {
+            return state != null
+                    ? state.matches(buffer, size, false).isSuccessful()
+                    : ((CharSequenceMatcher<Result>) matcher).matches(buffer, false).isSuccessful();
+        } finally {
+            buffer.setLength(size);
+        }
+    }
+}
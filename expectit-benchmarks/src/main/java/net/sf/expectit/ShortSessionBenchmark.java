@@ -0,0 +1,77 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.contains;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the lifecycle of a short session: building an instance, a single expect operation
+ * and closing the instance. The {@code shared} executor is the default one, the {@code own}
+ * executor creates a thread per session and shuts it down on close.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ShortSessionBenchmark {
+    private static final byte[] PROMPT = "device> ".getBytes();
+
+    @Param({"shared", "own"})
+    public String executor;
+
+    @Benchmark
+    public int session() throws IOException {
+        ExpectBuilder builder = new ExpectBuilder()
+                .withInputs(new ByteArrayInputStream(PROMPT));
+        ExecutorService own = null;
+        if ("own".equals(executor)) {
+            own = Executors.newFixedThreadPool(1);
+            builder.withExecutor(own);
+        }
+        Expect expect = builder.build();
+        try {
+            return expect.expect(contains("> ")).end();
+        } finally {
+            expect.close();
+            if (own != null) {
+                own.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.anyString;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of passing the input data from the copier thread to the expect
+ * operations for the different transports, or of reading it in the expect operations directly.
+ * Every operation transfers {@code size} bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransportBenchmark {
+    @Param({"pipe", "ring", "inline"})
+    public String transport;
+
+    @Param({"4194304"})
+    public int size;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        data = BenchmarkUtils.printableBytes(size, new Random(0));
+    }
+
+    @Benchmark
+    public long transfer() throws IOException {
+        ExpectBuilder builder = new ExpectBuilder()
+                .withInputs(new ByteArrayInputStream(data));
+        if ("ring".equals(transport)) {
+            builder.withRingBuffer(64 * 1024);
+        } else if ("inline".equals(transport)) {
+            builder.withInlineReading();
+        }
+        Expect expect = builder.build();
+        long total = 0;
+        try {
+            while (true) {
+                Result result = expect.expect(anyString());
+                if (result.isSuccessful()) {
+                    total += result.end();
+                }
+            }
+        } catch (EOFException ignore) {
+            return total;
+        } finally {
+            expect.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.contains;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Opens many mostly idle sessions and reports the number of platform threads and the heap
+ * used by them. Every session receives a prompt and then waits for the input which never
+ * arrives, like an idle device.
+ * <p/>
+ * Usage: {@code java -cp benchmarks.jar net.sf.expectit.VirtualThreadsLoadTest
+ * <sessions> <platform|virtual>}. The virtual mode requires Java 21 or later.
+ */
+public final class VirtualThreadsLoadTest {
+    private static final String PROMPT = "device> ";
+
+    private VirtualThreadsLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        boolean virtual = args.length > 1 && "virtual".equals(args[1]);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapBefore = usedHeap(memory);
+        int threadsBefore = threads.getThreadCount();
+
+        List<Expect> expects = new ArrayList<Expect>(sessions);
+        List<IdleInputStream> inputs = new ArrayList<IdleInputStream>(sessions);
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < sessions; i++) {
+                IdleInputStream input = new IdleInputStream(PROMPT);
+                inputs.add(input);
+                ExpectBuilder builder = new ExpectBuilder().withInputs(input);
+                if (virtual) {
+                    builder.withVirtualThreads();
+                }
+                Expect expect = builder.build();
+                expects.add(expect);
+                expect.expect(contains(PROMPT));
+            }
+            long openMs = (System.nanoTime() - start) / 1000000;
+            System.out.printf(
+                    "mode=%s sessions=%d open=%d ms platform threads=%d (peak %d) "
+                            + "heap=%d KB (%d bytes/session)%n",
+                    virtual ? "virtual" : "platform",
+                    sessions,
+                    openMs,
+                    threads.getThreadCount() - threadsBefore,
+                    threads.getPeakThreadCount(),
+                    (usedHeap(memory) - heapBefore) / 1024,
+                    (usedHeap(memory) - heapBefore) / sessions);
+        } finally {
+            for (IdleInputStream input : inputs) {
+                input.close();
+            }
+            for (Expect expect : expects) {
+                expect.close();
+            }
+        }
+    }
+
+    private static long usedHeap(MemoryMXBean memory) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Returns the given text and then blocks until closed. Waits on a latch rather than a
+     * monitor, so that a virtual thread reading the stream releases its carrier.
+     */
+    private static final class IdleInputStream extends InputStream {
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private byte[] text;
+
+        IdleInputStream(String text) {
+            this.text = text.getBytes();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0];
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (text != null) {
+                int n = Math.min(len, text.length);
+                System.arraycopy(text, 0, b, off, n);
+                text = null;
+                return n;
+            }
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * The base class of the transports which read the input directly in the thread performing
+ * expect operations, so there is no background thread and the {@link #sink()} is not
+ * supported. The bytes are decoded and printed to the echo when they are read, the decoded
+ * characters are kept in the buffer of the decoder until they are transferred by
+ * {@link #read(CharBuffer)}.
+ */
+abstract class AbstractDirectTransport implements InputTransport {
+    private final byte[] bytes;
+    private final InputDecoder decoder;
+    private final Appendable echo;
+    private final Charset charset;
+    private final boolean autoFlushEcho;
+    private CharBuffer pending = CharBuffer.allocate(0);
+    private boolean endOfInput;
+
+    AbstractDirectTransport(
+            final byte[] bytes,
+            final Charset charset,
+            final Appendable echo,
+            final boolean autoFlushEcho,
+            final InputMonitor monitor) {
+        this.bytes = bytes;
+        this.decoder = new InputDecoder(charset, bytes.length, monitor);
+        this.charset = charset;
+        this.echo = echo;
+        this.autoFlushEcho = autoFlushEcho;
+    }
+
+    /**
+     * Reads the bytes from the input to the array passed to the constructor.
+     *
+     * @return the number of bytes read, or {@code -1} if the input reached its end
+     * @throws IOException if I/O error occurs
+     */
+    abstract int readBytes() throws IOException;
+
+    /**
+     * Checks whether the input can be read by {@link #read(CharBuffer)} without blocking.
+     *
+     * @return {@code true} if the input can be read
+     * @throws IOException if I/O error occurs
+     */
+    abstract boolean canRead() throws IOException;
+
+    @Override
+    public Writer sink() {
+        throw new UnsupportedOperationException("The input is read by the expect operations");
+    }
+
+    @Override
+    public int read(final CharBuffer buffer) throws IOException {
+        if (!pending.hasRemaining()) {
+            if (endOfInput) {
+                return -1;
+            }
+            if (canRead()) {
+                readInput();
+            }
+            if (!pending.hasRemaining()) {
+                return endOfInput ? -1 : 0;
+            }
+        }
+        final int len = Math.min(pending.remaining(), buffer.remaining());
+        final int limit = pending.limit();
+        pending.limit(pending.position() + len);
+        buffer.put(pending);
+        pending.limit(limit);
+        return len;
+    }
+
+    /**
+     * Reads and decodes a chunk of the input.
+     *
+     * @throws IOException if I/O error occurs
+     */
+    final void readInput() throws IOException {
+        final int bytesRead = readBytes();
+        if (bytesRead == -1) {
+            endOfInput = true;
+            pending = decoder.finish();
+        } else if (bytesRead > 0) {
+            pending = decoder.decode(bytes, 0, bytesRead);
+        } else {
+            return;
+        }
+        if (echo != null) {
+            Utils.printEcho(
+                    echo,
+                    charset,
+                    autoFlushEcho,
+                    pending,
+                    bytes,
+                    0,
+                    Math.max(0, bytesRead));
+        }
+    }
+
+    /**
+     * Checks whether the data already read from the input, or the end of the input, has not
+     * been returned by {@link #read(CharBuffer)} yet.
+     */
+    final boolean hasPendingInput() {
+        return pending.hasRemaining() || endOfInput;
+    }
+}
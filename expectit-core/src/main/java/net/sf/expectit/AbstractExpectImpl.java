@@ -73,5 +73,37 @@ abstract class AbstractExpectImpl implements Expect {
         return expectIn(0, timeoutMs, matchers);
     }
 
+    public ExpectMetrics getMetrics() {
+        final SingleInputExpect[] inputs = getInputs();
+        final MetricsCounters[] metrics = new MetricsCounters[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            metrics[i] = inputs[i].getMetrics();
+        }
+        return new CompositeMetrics(metrics);
+    }
+
+    public ExpectMetrics getMetrics(int input) {
+        final SingleInputExpect[] inputs = getInputs();
+        if (input >= inputs.length || input < 0) {
+            throw new IllegalArgumentException("Input index is out of bounds: " + input);
+        }
+        return inputs[input].getMetrics();
+    }
+
     abstract SingleInputExpect[] getInputs();
+
+    /**
+     * Starts an expect operation performed by the reactor threads.
+     *
+     * @param input     the input index.
+     * @param timeoutMs the timeout in milliseconds.
+     * @param matcher   the matcher.
+     * @param callback  the callback receiving the outcome.
+     * @param <R>       the result type.
+     */
+    abstract <R extends Result> void expectInAsync(
+            int input,
+            long timeoutMs,
+            Matcher<R> matcher,
+            ExpectCallback<R> callback);
 }
@@ -0,0 +1,119 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The base metrics class which maps the metrics to the indexes of the counters.
+ */
+abstract class AbstractMetrics implements ExpectMetrics {
+    static final int BYTES_RECEIVED = 0;
+    static final int CHUNKS_RECEIVED = 1;
+    static final int DECODE_TIME = 2;
+    static final int FILTER_TIME = 3;
+    static final int MATCHER_EVALUATIONS = 4;
+    static final int MATCHER_TIME = 5;
+    static final int EXPECT_CALLS = 6;
+    static final int EXPECT_TIME = 7;
+    static final int TIMEOUTS = 8;
+    static final int EOFS = 9;
+    static final int BUFFER_HIGH_WATERMARK = 10;
+    static final int COUNT = 11;
+
+    /**
+     * Returns the value of the counter.
+     *
+     * @param index the counter index.
+     * @return the current value.
+     */
+    abstract long get(int index);
+
+    @Override
+    public long getBytesReceived() {
+        return get(BYTES_RECEIVED);
+    }
+
+    @Override
+    public long getChunksReceived() {
+        return get(CHUNKS_RECEIVED);
+    }
+
+    @Override
+    public long getDecodeTimeNanos() {
+        return get(DECODE_TIME);
+    }
+
+    @Override
+    public long getFilterTimeNanos() {
+        return get(FILTER_TIME);
+    }
+
+    @Override
+    public long getMatcherEvaluations() {
+        return get(MATCHER_EVALUATIONS);
+    }
+
+    @Override
+    public long getMatcherTimeNanos() {
+        return get(MATCHER_TIME);
+    }
+
+    @Override
+    public long getExpectCalls() {
+        return get(EXPECT_CALLS);
+    }
+
+    @Override
+    public long getExpectTimeNanos() {
+        return get(EXPECT_TIME);
+    }
+
+    @Override
+    public long getTimeouts() {
+        return get(TIMEOUTS);
+    }
+
+    @Override
+    public long getEofs() {
+        return get(EOFS);
+    }
+
+    @Override
+    public long getBufferHighWatermark() {
+        return get(BUFFER_HIGH_WATERMARK);
+    }
+
+    @Override
+    public String toString() {
+        return "ExpectMetrics{"
+                + "bytesReceived=" + getBytesReceived()
+                + ", chunksReceived=" + getChunksReceived()
+                + ", decodeTimeNanos=" + getDecodeTimeNanos()
+                + ", filterTimeNanos=" + getFilterTimeNanos()
+                + ", matcherEvaluations=" + getMatcherEvaluations()
+                + ", matcherTimeNanos=" + getMatcherTimeNanos()
+                + ", expectCalls=" + getExpectCalls()
+                + ", expectTimeNanos=" + getExpectTimeNanos()
+                + ", timeouts=" + getTimeouts()
+                + ", eofs=" + getEofs()
+                + ", bufferHighWatermark=" + getBufferHighWatermark()
+                + '}';
+    }
+}
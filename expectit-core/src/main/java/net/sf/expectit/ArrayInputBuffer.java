@@ -0,0 +1,266 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The input buffer backed by an array with a head offset.
+ * <p/>
+ * Unlike {@link StringBuilder#delete(int, int)}, consuming the beginning of the buffer only
+ * moves the head offset. The remaining characters are moved to the beginning of the array
+ * when the space is needed for new data and the consumed part is at least as large as the
+ * remaining one, so every character is moved a bounded number of times on average. The array
+ * is shrunk when most of its capacity has not been used after a burst of data.
+ * <p/>
+ * The views share the array with the buffer. The array is never modified under the last
+ * created view, the buffer moves to a new array if it needs the space before the view is
+ * detached. The detached views keep reading the array until its beginning is reused, then
+ * they copy their content. Once the detached views cover more characters than the array
+ * holds, copying them is no cheaper than moving the buffer to a new array, so the array is
+ * left to the views and is no longer reused. The views
+ * replaced by a newer one without being detached are assumed to be no longer used, as an
+ * expect operation keeps only the result of its last view.
+ * <p/>
+ * The class is not thread safe.
+ */
+final class ArrayInputBuffer implements InputBuffer {
+    static final int INITIAL_CAPACITY = 1024;
+
+    private static final int TRIM_RATIO = 4;
+
+    private final List<ArrayView> released = new ArrayList<ArrayView>();
+    private char[] chars = new char[INITIAL_CAPACITY];
+    private int head;
+    private int tail;
+    private ArrayView current;
+    private int releasedLength;
+    private boolean shared;
+
+    @Override
+    public int length() {
+        return tail - head;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= tail - head) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return chars[head + index];
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        return substring(start, end);
+    }
+
+    @Override
+    public String substring(final int start, final int end) {
+        if (start < 0 || end > tail - head || start > end) {
+            throw new IndexOutOfBoundsException(start + ", " + end);
+        }
+        return new String(chars, head + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, head, tail - head);
+    }
+
+    int capacity() {
+        return chars.length;
+    }
+
+    @Override
+    public void append(final char[] src, final int offset, final int len) {
+        ensureSpace(len);
+        System.arraycopy(src, offset, chars, tail, len);
+        tail += len;
+    }
+
+    @Override
+    public void append(final String string) {
+        ensureSpace(string.length());
+        string.getChars(0, string.length(), chars, tail);
+        tail += string.length();
+    }
+
+    @Override
+    public void consume(final int count) {
+        if (count < 0 || count > tail - head) {
+            throw new IndexOutOfBoundsException(String.valueOf(count));
+        }
+        head += count;
+        if (head == tail && current == null && released.isEmpty() && !shared) {
+            head = 0;
+            tail = 0;
+        }
+        final int length = tail - head;
+        if (chars.length > INITIAL_CAPACITY && length < chars.length / TRIM_RATIO) {
+            resize(Math.max(INITIAL_CAPACITY, length * 2));
+        }
+    }
+
+    private void ensureSpace(final int len) {
+        if (chars.length - tail >= len) {
+            return;
+        }
+        final int length = tail - head;
+        if (length + len <= chars.length && head >= length) {
+            // moving the remaining characters costs no more than consuming them did
+            if (current != null || shared) {
+                // the views keep the current array
+                resize(chars.length);
+                return;
+            }
+            copyReleased();
+            System.arraycopy(chars, head, chars, 0, length);
+            head = 0;
+            tail = length;
+        } else {
+            resize(Math.max(chars.length * 2, length + len));
+        }
+    }
+
+    private void resize(final int capacity) {
+        final int length = tail - head;
+        final char[] newChars = new char[capacity];
+        System.arraycopy(chars, head, newChars, 0, length);
+        chars = newChars;
+        head = 0;
+        tail = length;
+        current = null;
+        released.clear();
+        releasedLength = 0;
+        shared = false;
+    }
+
+    private void copyReleased() {
+        for (ArrayView view : released) {
+            view.copy();
+        }
+        released.clear();
+        releasedLength = 0;
+    }
+
+    private void release(final ArrayView view) {
+        if (view == current) {
+            current = null;
+        }
+        if (shared || view.length == 0 || view.chars != chars) {
+            return;
+        }
+        released.add(view);
+        releasedLength += view.length;
+        if (releasedLength >= chars.length) {
+            released.clear();
+            releasedLength = 0;
+            shared = true;
+        }
+    }
+
+    @Override
+    public InputView view() {
+        current = new ArrayView(this, chars, head, tail - head);
+        return current;
+    }
+
+    /**
+     * The view of a part of the array.
+     */
+    private static final class ArrayView extends InputView {
+        private final int offset;
+        private final int length;
+        private ArrayInputBuffer buffer;
+        private char[] chars;
+        private String string;
+
+        ArrayView(
+                final ArrayInputBuffer buffer,
+                final char[] chars,
+                final int offset,
+                final int length) {
+            this.buffer = buffer;
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        void detach() {
+            if (buffer != null) {
+                buffer.release(this);
+                buffer = null;
+            }
+        }
+
+        /**
+         * Copies the content before the array is reused by the buffer. The copied view no
+         * longer references the buffer and is not modified afterwards.
+         */
+        @Override
+        void copy() {
+            if (buffer != null) {
+                if (buffer.current == this) {
+                    buffer.current = null;
+                }
+                buffer = null;
+            }
+            if (chars != null) {
+                toString();
+                chars = null;
+            }
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+            return string != null ? string.charAt(index) : chars[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException(start + ", " + end);
+            }
+            return string != null
+                    ? string.substring(start, end)
+                    : new String(chars, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            if (string == null) {
+                string = new String(chars, offset, length);
+            }
+            return string;
+        }
+    }
+}
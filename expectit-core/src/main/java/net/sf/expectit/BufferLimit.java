@@ -0,0 +1,47 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The maximum size of the input buffer and the policy applied when the buffer exceeds it.
+ */
+final class BufferLimit {
+    /**
+     * The buffer grows without a limit.
+     */
+    static final BufferLimit UNLIMITED = new BufferLimit(Integer.MAX_VALUE, null);
+
+    private final int maxSize;
+    private final OverflowPolicy policy;
+
+    BufferLimit(final int maxSize, final OverflowPolicy policy) {
+        this.maxSize = maxSize;
+        this.policy = policy;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    OverflowPolicy getPolicy() {
+        return policy;
+    }
+}
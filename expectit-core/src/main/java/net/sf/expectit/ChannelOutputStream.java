@@ -0,0 +1,80 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An output stream which writes to a channel. Unlike the streams created by
+ * {@link java.nio.channels.Channels#newOutputStream(WritableByteChannel)}, the channel may be in
+ * the non-blocking mode, which is the case when the same socket channel is used as an input,
+ * the stream then waits until the channel becomes writable.
+ * <p/>
+ * Closing the stream doesn't close the channel.
+ */
+class ChannelOutputStream extends OutputStream {
+    private final WritableByteChannel channel;
+    private final byte[] single = new byte[1];
+
+    ChannelOutputStream(final WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) == 0) {
+                awaitWritable();
+            }
+        }
+    }
+
+    /**
+     * Blocks until the non-blocking channel can accept more data. Happens only if the output
+     * is sent faster than the network transfers it, so the selector is not kept.
+     */
+    private void awaitWritable() throws IOException {
+        if (!(channel instanceof SelectableChannel)) {
+            Thread.yield();
+            return;
+        }
+        final Selector selector = Selector.open();
+        try {
+            ((SelectableChannel) channel).register(selector, SelectionKey.OP_WRITE);
+            selector.select();
+        } finally {
+            selector.close();
+        }
+    }
+}
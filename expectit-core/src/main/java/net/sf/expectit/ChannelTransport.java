@@ -0,0 +1,132 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.Charset;
+
+/**
+ * A transport which reads a selectable channel, for example, a socket channel, directly in the
+ * thread performing expect operations. Unlike the other transports, there is no background
+ * thread copying the input, so the {@link #sink()} is not supported.
+ * <p/>
+ * The channel is switched to the non-blocking mode. The bytes are decoded and printed to the
+ * echo when they are read. Since the channel is read only while an expect operation is waiting
+ * for data, the unread data stays in the channel and the flow control of the channel, for
+ * example, TCP, applies to the producer.
+ */
+class ChannelTransport extends AbstractDirectTransport {
+    private final SelectableChannel channel;
+    private final ReadableByteChannel readable;
+    private final ByteBuffer bytes;
+    private Selector selector;
+    private boolean closed;
+
+    ChannelTransport(
+            final SelectableChannel channel,
+            final Charset charset,
+            final int bufferSize,
+            final Appendable echo,
+            final boolean autoFlushEcho,
+            final InputMonitor monitor) throws IOException {
+        this(channel, ByteBuffer.allocate(bufferSize), charset, echo, autoFlushEcho, monitor);
+    }
+
+    private ChannelTransport(
+            final SelectableChannel channel,
+            final ByteBuffer bytes,
+            final Charset charset,
+            final Appendable echo,
+            final boolean autoFlushEcho,
+            final InputMonitor monitor) throws IOException {
+        super(bytes.array(), charset, echo, autoFlushEcho, monitor);
+        if (!(channel instanceof ReadableByteChannel)) {
+            throw new IllegalArgumentException("The channel is not readable: " + channel);
+        }
+        this.channel = channel;
+        this.readable = (ReadableByteChannel) channel;
+        this.bytes = bytes;
+        channel.configureBlocking(false);
+    }
+
+    @Override
+    public boolean await(final long timeoutMs) throws IOException {
+        final Selector current = getSelector();
+        if (hasPendingInput()) {
+            return true;
+        }
+        try {
+            int keys = timeoutMs == ExpectImpl.INFINITE_TIMEOUT
+                    ? current.select()
+                    : current.select(timeoutMs);
+            current.selectedKeys().clear();
+            return keys > 0;
+        } catch (ClosedSelectorException e) {
+            // the transport has been closed concurrently
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    int readBytes() throws IOException {
+        bytes.clear();
+        return readable.read(bytes);
+    }
+
+    @Override
+    boolean canRead() {
+        return true;
+    }
+
+    SelectableChannel getChannel() {
+        return channel;
+    }
+
+    private synchronized Selector getSelector() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        if (selector == null) {
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        }
+        return selector;
+    }
+
+    /**
+     * Releases the selector. The channel itself is not closed, as the input streams are not
+     * closed by the other transports.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (selector != null) {
+            selector.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The metrics aggregated over several inputs. The values are computed when they are read.
+ */
+final class CompositeMetrics extends AbstractMetrics {
+    private final Collection<? extends AbstractMetrics> parts;
+
+    CompositeMetrics(final AbstractMetrics... parts) {
+        this(Arrays.asList(parts));
+    }
+
+    CompositeMetrics(final Collection<? extends AbstractMetrics> parts) {
+        this.parts = parts;
+    }
+
+    @Override
+    long get(final int index) {
+        long result = 0;
+        for (AbstractMetrics part : parts) {
+            final long value = part.get(index);
+            result = index == BUFFER_HIGH_WATERMARK ? Math.max(result, value) : result + value;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,41 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Implemented by the {@link Result} classes of the library which report the characters
+ * dropped from the beginning of the input buffer during the expect operation because the
+ * buffer exceeded the maximum size set by
+ * {@link ExpectBuilder#withMaxBufferSize(int, OverflowPolicy)}.
+ * <p/>
+ * The user defined results don't have to implement this interface, so check the result type
+ * before calling the method.
+ */
+public interface DroppedCharsAware {
+    /**
+     * Returns the number of characters dropped from the beginning of the input buffer during
+     * the expect operation. The dropped characters were never passed to the matcher in full,
+     * so the result may miss a match spanning them.
+     *
+     * @return the number of the dropped characters, zero if the input was not truncated.
+     */
+    long getDroppedChars();
+}
@@ -309,4 +309,20 @@ public interface Expect extends Closeable {
      * @return the interact builder.
      */
     InteractBuilder interactWith(int input);
+
+    /**
+     * Returns the metrics of all the inputs of this instance.
+     *
+     * @return the metrics, reflecting the current values.
+     */
+    ExpectMetrics getMetrics();
+
+    /**
+     * Returns the metrics of the given input.
+     *
+     * @param input the index of the input stream.
+     * @return the metrics, reflecting the current values.
+     * @throws java.lang.IllegalArgumentException if the index is out of bounds.
+     */
+    ExpectMetrics getMetrics(int input);
 }
@@ -24,6 +24,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.channels.Pipe;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -45,6 +47,7 @@ public class ExpectBuilder {
     public static final int DEFAULT_BUFFER_SIZE = 1024;
 
     private InputStream[] inputs;
+    private SelectableChannel[] inputChannels;
     private Filter filter;
     private OutputStream output;
     private long timeout = DEFAULT_TIMEOUT_MS;
@@ -61,6 +64,17 @@ public class ExpectBuilder {
     private boolean autoFlushEcho;
     private boolean combineInputs;
     private ExecutorService executor;
+    private int ringBufferCapacity;
+    private BufferLimit bufferLimit = BufferLimit.UNLIMITED;
+    private int highWatermark;
+    private int lowWatermark;
+    private MatchTrigger matchTrigger;
+    private ExpectReactor reactor;
+    private boolean virtualThreads;
+    private Process process;
+    private long maxPollDelay;
+    private boolean inlineReading;
+    private ExpectListener listener;
 
     /**
      * Default constructor.
@@ -89,6 +103,80 @@ public class ExpectBuilder {
      */
     public final ExpectBuilder withInputs(InputStream... inputs) {
         this.inputs = inputs;
+        this.inputChannels = null;
+        this.process = null;
+        return this;
+    }
+
+    /**
+     * Sets the standard output and the standard error streams of the process as the inputs,
+     * and its standard input as the output. The process is also used to detect the end of the
+     * inputs by {@link #withPollingCopier(long, TimeUnit)}.
+     *
+     * @param process the process
+     * @return this
+     */
+    public final ExpectBuilder withProcess(Process process) {
+        withInputs(process.getInputStream(), process.getErrorStream());
+        this.output = process.getOutputStream();
+        this.process = process;
+        return this;
+    }
+
+    /**
+     * Sets the channels, for example, socket channels, as the inputs for expect operations.
+     * Either this or {@link #withInputs(InputStream...)} is required.
+     * <p/>
+     * The channels are switched to the non-blocking mode and read by the expect operations
+     * directly, so no background thread is created for them. The channels must implement
+     * {@link java.nio.channels.ReadableByteChannel}. Since the channels are not read between
+     * expect operations, {@link #withFlowControl(int, int)} and
+     * {@link #withRingBuffer(int)} don't apply to them, and they cannot be combined by
+     * {@link #withCombineInputs(boolean)}. The channels are not closed when the {@link Expect}
+     * instance is closed.
+     * <p/>
+     * A socket channel in the non-blocking mode can't be written through the output stream of
+     * its socket, use {@link #withOutputChannel(WritableByteChannel)} to send data to it.
+     *
+     * @param channels the input channels
+     * @return this
+     */
+    public final ExpectBuilder withInputChannels(SelectableChannel... channels) {
+        this.inputChannels = channels;
+        this.inputs = null;
+        this.process = null;
+        return this;
+    }
+
+    /**
+     * Makes the expect operations of the input channels wait for the data in the threads of the
+     * given reactor instead of the calling threads. The reactor threads read the channels,
+     * decode, filter and match the input, and wake a calling thread when its operation
+     * completes, so any number of {@link Expect} instances can share a few reactor threads.
+     * Requires {@link #withInputChannels(SelectableChannel...)}.
+     * <p/>
+     * The reactor is not closed when the {@link Expect} instance is closed. The matchers and
+     * the filters of the instances run in the reactor threads and must not block.
+     *
+     * @param reactor the reactor, or {@code null} to wait in the calling threads.
+     * @return this
+     */
+    public final ExpectBuilder withReactor(ExpectReactor reactor) {
+        this.reactor = reactor;
+        return this;
+    }
+
+    /**
+     * Sets the channel where {@link Expect} sends commands to. The channel can be in the
+     * non-blocking mode, then sending waits until the channel accepts all the data. Replaces
+     * the output stream set by {@link #withOutput(OutputStream)}. The channel is not closed when
+     * the {@link Expect} instance is closed.
+     *
+     * @param channel the output channel
+     * @return this
+     */
+    public final ExpectBuilder withOutputChannel(WritableByteChannel channel) {
+        this.output = new ChannelOutputStream(channel);
         return this;
     }
 
@@ -264,6 +352,10 @@ public class ExpectBuilder {
 
     /**
      * Sets the size of the input buffer in bytes. Optional, default is 1024.
+     * <p/>
+     * The background threads read the input streams in chunks of this size, and the expect
+     * operations read the received data from the background threads in chunks of the same
+     * number of characters.
      *
      * @param bufferSize the buffer size
      * @return this
@@ -303,8 +395,9 @@ public class ExpectBuilder {
     }
 
     /**
-     * Set the executor used to create internal thread. If not specified, an executor with the
-     * number of threads corresponding to the number of inputs will be created internally.<br/>
+     * Set the executor used to create internal thread. If not specified, the threads are taken
+     * from a process-wide executor of daemon threads which keeps the idle threads for reuse by
+     * the instances created later.<br/>
      * <b>IMPORTANT!</b> Make sure that the given executor has the number of threads greater or
      * equal than the number of input streams. <br/>
      * If the executor is passed form outside it won't be shutdown when the Expect instance is
@@ -318,11 +411,217 @@ public class ExpectBuilder {
         return this;
     }
 
+    /**
+     * Makes a single background thread copy all the input streams instead of a thread per
+     * input. Optional, by default every input stream is read by its own thread.
+     * <p/>
+     * The thread polls the streams for the data which can be read without blocking, as
+     * reported by {@link InputStream#available()}. When there is no data, it sleeps for a
+     * delay which starts at 1 millisecond and doubles up to the given maximum, so the idle
+     * inputs cost little CPU while the data arriving after a pause is received with a latency
+     * of up to the maximum delay.
+     * <p/>
+     * Since {@code available()} can't tell the end of a stream, the end of the inputs is only
+     * detected for a process set by {@link #withProcess(Process)}: once the process has exited,
+     * the streams are read to their ends. Without the process the inputs end when reading them
+     * fails, for example, when they are closed. The streams of the processes and the sockets
+     * report the available data, while other streams may not support it.
+     *
+     * @param maxPollDelay the maximum delay between the polls of the idle inputs.
+     * @param unit         the time unit
+     * @return this
+     * @throws java.lang.IllegalArgumentException if the delay {@code <= 0}
+     */
+    public final ExpectBuilder withPollingCopier(long maxPollDelay, TimeUnit unit) {
+        validateDuration(maxPollDelay);
+        this.maxPollDelay = Math.max(PollingCopier.MIN_DELAY_MS, unit.toMillis(maxPollDelay));
+        return this;
+    }
+
+    /**
+     * Enables reading the input streams in the thread performing the expect operations instead
+     * of the background threads. Optional, by default a background thread copies every input.
+     * <p/>
+     * An instance reading its inputs inline starts no threads, so a large number of instances
+     * can run in parallel in a thread pool, for example, when analysing the recorded sessions.
+     * A stream is read in a blocking manner when an expect operation waits for its data, so
+     * the timeout of the operation is only checked between the reads. This mode is meant for
+     * the inputs which never block, such as the in-memory streams and files. The flow
+     * control is not needed, as the inputs are read only on demand. The input channels set by
+     * {@link #withInputChannels(SelectableChannel...)} are always read inline.
+     *
+     * @return this
+     */
+    public final ExpectBuilder withInlineReading() {
+        this.inlineReading = true;
+        return this;
+    }
+
+    /**
+     * Runs the background threads reading the input streams as virtual threads. Requires Java
+     * 21 or later. Optional, by default a platform thread is created for every input.
+     * <p/>
+     * A virtual thread blocked reading an idle input doesn't occupy an operating system
+     * thread, so a large number of mostly idle sessions needs a few carrier threads only.
+     * Unless {@link #withRingBuffer(int)} is set, the input data is passed through a ring
+     * buffer of the {@link #withBufferSize(int) buffer size} instead of a NIO pipe, since a
+     * thread waiting on the pipe selector would block its carrier thread. An executor set by
+     * {@link #withExecutor(java.util.concurrent.ExecutorService)} takes precedence over the
+     * virtual threads.
+     *
+     * @return this
+     * @throws java.lang.UnsupportedOperationException if the runtime doesn't support virtual
+     *                                                 threads
+     */
+    public final ExpectBuilder withVirtualThreads() {
+        VirtualThreads.getExecutor();
+        this.virtualThreads = true;
+        return this;
+    }
+
+    /**
+     * Enables passing the input data from the background threads to the expect operations
+     * through an in-memory ring buffer of the given capacity instead of NIO pipes. Optional,
+     * by default NIO pipes are used.
+     * <p/>
+     * The ring buffer avoids the system calls and the kernel copy required for each chunk of
+     * data sent through a pipe, which matters when the inputs produce a lot of data. The
+     * background thread blocks when the buffer is full until the data is consumed by the
+     * expect operations.
+     *
+     * @param capacity the buffer capacity in characters, rounded up to the closest power of two.
+     * @return this
+     * @throws java.lang.IllegalArgumentException if {@code capacity} is <= 0 or greater than
+     *                                            2<sup>30</sup>
+     */
+    public final ExpectBuilder withRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > RingBufferTransport.MAX_CAPACITY) {
+            throw new IllegalArgumentException(
+                    "capacity must be > 0 and <= " + RingBufferTransport.MAX_CAPACITY);
+        }
+        this.ringBufferCapacity = capacity;
+        return this;
+    }
+
+    /**
+     * Limits the number of characters kept in the buffer of each input which haven't been
+     * consumed by the successful match operations. Optional, by default the buffer grows
+     * without a limit.
+     * <p/>
+     * A program which produces a lot of output that is never matched makes the buffer grow
+     * until the memory is exhausted. The policy defines how the buffer which reaches the
+     * maximum size is handled, see {@link OverflowPolicy}. The size should be greater than
+     * the longest expected match, otherwise the matches which don't fit the buffer are lost.
+     *
+     * @param maxBufferSize the maximum number of characters in the buffer.
+     * @param policy        the overflow policy.
+     * @return this
+     * @throws java.lang.IllegalArgumentException if {@code maxBufferSize} is <= 0 or
+     *                                            {@code policy} is {@code null}
+     */
+    public final ExpectBuilder withMaxBufferSize(int maxBufferSize, OverflowPolicy policy) {
+        if (maxBufferSize <= 0) {
+            throw new IllegalArgumentException("maxBufferSize must be > 0");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("policy must not be null");
+        }
+        this.bufferLimit = new BufferLimit(maxBufferSize, policy);
+        return this;
+    }
+
+    /**
+     * Enables the flow control of the input data. Optional, by default the background threads
+     * read the inputs as fast as the data arrives.
+     * <p/>
+     * When the input data which has not been consumed by the successful match operations
+     * reaches the high watermark, the background thread stops reading the input stream until
+     * the amount of the unconsumed data falls to the low watermark. The producer of the data,
+     * for example, a remote device connected through TCP, is then slowed down by the flow
+     * control of its channel instead of accumulating the data in memory.
+     * <p/>
+     * The unconsumed data can exceed the high watermark by the size of one chunk read from the
+     * input stream, see {@link #withBufferSize(int)}. An expect operation which needs more
+     * data than the high watermark to succeed fails on timeout.
+     *
+     * @param highWatermark the number of unconsumed characters which pauses the reading.
+     * @param lowWatermark  the number of unconsumed characters which resumes the reading.
+     * @return this
+     * @throws java.lang.IllegalArgumentException if {@code highWatermark} is <= 0 or
+     *                                            {@code lowWatermark} is not within
+     *                                            [0, highWatermark)
+     */
+    public final ExpectBuilder withFlowControl(int highWatermark, int lowWatermark) {
+        if (highWatermark <= 0) {
+            throw new IllegalArgumentException("highWatermark must be > 0");
+        }
+        if (lowWatermark < 0 || lowWatermark >= highWatermark) {
+            throw new IllegalArgumentException(
+                    "lowWatermark must be >= 0 and < highWatermark");
+        }
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        return this;
+    }
+
+    /**
+     * Sets the condition to run the matcher of an expect operation again when new input data
+     * is received. Optional, by default the matcher runs every time the data is received.
+     * <p/>
+     * The data available for reading is always passed to the buffer at once before running the
+     * matcher. With the trigger, the matcher also waits until at least {@code minNewChars}
+     * characters, or a line break if {@code onNewLine} is set, have been received since it has
+     * run last time. The received data never waits longer than {@code maxDelay}, and the
+     * matcher always runs on the end of the input and before the operation times out. This
+     * reduces the number of evaluations of the expensive matchers when the input arrives in
+     * small fragments, at the cost of the match latency.
+     *
+     * @param minNewChars the minimum number of the new characters.
+     * @param onNewLine   whether a line break in the new data runs the matcher.
+     * @param maxDelay    the maximum time the received data waits for the matcher.
+     * @param unit        the time unit of the delay.
+     * @return this
+     * @throws java.lang.IllegalArgumentException if {@code minNewChars} or {@code maxDelay}
+     *                                            is <= 0
+     */
+    public final ExpectBuilder withMatchTrigger(
+            int minNewChars,
+            boolean onNewLine,
+            long maxDelay,
+            TimeUnit unit) {
+        if (minNewChars <= 0) {
+            throw new IllegalArgumentException("minNewChars must be > 0");
+        }
+        validateDuration(maxDelay);
+        this.matchTrigger = new MatchTrigger(
+                minNewChars,
+                onNewLine,
+                Math.max(1, unit.toMillis(maxDelay)));
+        return this;
+    }
+
+    /**
+     * Sets the listener receiving the events of the input processing and the output, for
+     * example to trace the slow operations. Optional, by default no listener is called.
+     * <p/>
+     * The listener is called synchronously by the threads reading the inputs and performing
+     * the operations, see {@link ExpectListener}.
+     *
+     * @param listener the listener
+     * @return this
+     */
+    public final ExpectBuilder withListener(ExpectListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
     /**
      * Creates a ready to use {@link Expect} instance.
      * <p/>
      * This method creates an instance and starts background threads that receive input data
-     * through NIO pipes. The
+     * through NIO pipes, or ring buffers if enabled by {@link #withRingBuffer(int)}. The input
+     * channels set by {@link #withInputChannels(SelectableChannel...)}, as well as the inputs
+     * when {@link #withInlineReading()} is set, are read without background threads. The
      * created instance must be disposed after use by calling the {@link net.sf.expectit
      * .Expect#close()}  method,
      * <p/>
@@ -333,36 +632,86 @@ public class ExpectBuilder {
      * @throws java.lang.IllegalStateException if the {@code inputs} are incorrect
      */
     public final Expect build() throws IOException {
-        if (inputs == null || inputs.length == 0) {
+        final int inputCount = inputs != null
+                ? inputs.length
+                : inputChannels != null ? inputChannels.length : 0;
+        if (inputCount == 0) {
             throw new IllegalStateException("Inputs are null or empty");
         }
+        if (inputChannels != null && combineInputs) {
+            throw new IllegalStateException("Input channels cannot be combined");
+        }
+        if (reactor != null && inputChannels == null) {
+            throw new IllegalStateException("The reactor requires input channels");
+        }
+        final boolean inlineInputs = inlineReading && inputChannels == null;
+        if (inlineInputs && combineInputs) {
+            throw new IllegalStateException("Inputs read inline cannot be combined");
+        }
+        final PollingCopier pollingCopier;
+        if (maxPollDelay > 0) {
+            if (inputChannels != null || inlineInputs) {
+                throw new IllegalStateException("The inputs are not copied");
+            }
+            pollingCopier = new PollingCopier(inputCount, maxPollDelay, process);
+        } else {
+            pollingCopier = null;
+        }
 
         if (echoInputs != null && echoInputs.length != 0
-                && echoInputs.length != inputs.length - 1) {
+                && echoInputs.length != inputCount - 1) {
             throw new IllegalArgumentException(
                     "The number of echo input does not correspond to the total "
                             + "number of the input streams");
         }
 
-        SingleInputExpect[] inputs = new SingleInputExpect[this.inputs.length];
-        Pipe pipe = null;
-        Pipe.SourceChannel source = null;
-        Pipe.SinkChannel sink = null;
+        final ExpectListener logging = LoggingListener.wrap(listener, charset);
+        SingleInputExpect[] inputs = new SingleInputExpect[inputCount];
+        InputTransport transport = null;
+        FlowControl flowControl = null;
         for (int i = 0; i < inputs.length; i++) {
-            if (!combineInputs || pipe == null) {
-                pipe = Pipe.open();
-                source = pipe.source();
-                sink = pipe.sink();
+            final Appendable echo = getEchoInputForIndex(i);
+            final InputMonitor monitor = new InputMonitor(i, new MetricsCounters(), logging);
+            if (inputChannels != null) {
+                transport = new ChannelTransport(
+                        inputChannels[i],
+                        charset,
+                        bufferSize,
+                        echo,
+                        autoFlushEcho,
+                        monitor);
+            } else if (inlineInputs) {
+                transport = new InlineTransport(
+                        this.inputs[i],
+                        charset,
+                        bufferSize,
+                        echo,
+                        autoFlushEcho,
+                        monitor);
+            } else if (!combineInputs || transport == null) {
+                transport = createTransport();
+                flowControl = highWatermark > 0
+                        ? new FlowControl(highWatermark, lowWatermark)
+                        : null;
             }
             inputs[i] = new SingleInputExpect(
-                    source,
-                    sink,
-                    this.inputs[i],
+                    transport,
+                    this.inputs != null && !inlineInputs ? this.inputs[i] : null,
                     charset,
-                    getEchoInputForIndex(i),
+                    echo,
                     filter,
                     bufferSize,
-                    autoFlushEcho);
+                    autoFlushEcho,
+                    bufferLimit,
+                    flowControl,
+                    matchTrigger);
+            inputs[i].setMonitor(monitor);
+            if (reactor != null) {
+                inputs[i].setReactorLoop(reactor.nextLoop());
+            }
+            if (pollingCopier != null) {
+                inputs[i].setPollingCopier(pollingCopier);
+            }
         }
 
         if (echoOutputOld != null) {
@@ -384,11 +733,22 @@ public class ExpectBuilder {
                 lineSeparator,
                 exceptionOnFailure,
                 autoFlushEcho,
-                executor);
+                executor == null && virtualThreads ? VirtualThreads.getExecutor() : executor);
+        instance.setListener(logging);
         instance.start();
         return instance;
     }
 
+    private InputTransport createTransport() throws IOException {
+        if (ringBufferCapacity > 0) {
+            return new RingBufferTransport(ringBufferCapacity);
+        }
+        if (virtualThreads) {
+            return new RingBufferTransport(bufferSize);
+        }
+        return new PipeTransport(Pipe.open());
+    }
+
     private Appendable getEchoInputForIndex(final int i) {
         if (echoOutputOld != null) {
             return new AppendableAdapter() {
@@ -0,0 +1,48 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Receives the outcome of an expect operation performed asynchronously by
+ * {@link ExpectReactor#expectIn(Expect, int, long, net.sf.expectit.matcher.Matcher,
+ * ExpectCallback)}.
+ * <p/>
+ * The methods are called in a reactor thread, or in the thread starting the operation if the
+ * operation completes immediately. They must not block.
+ *
+ * @param <R> the result type.
+ */
+public interface ExpectCallback<R extends Result> {
+    /**
+     * Called when the operation completes, successfully or not.
+     *
+     * @param result the operation result.
+     */
+    void completed(R result);
+
+    /**
+     * Called when the operation fails with an exception, for example, when the input reaches
+     * its end or the instance is closed.
+     *
+     * @param error the exception which the blocking operation would throw.
+     */
+    void failed(Throwable error);
+}
@@ -27,14 +27,31 @@ import java.io.IOException;
  */
 public class ExpectIOException extends IOException {
     private final String inputBuffer;
+    private final long droppedChars;
+
     /**
      * Creates a new exception instance with the given error message.
      * @param message the message.
      * @param inputBuffer the input string buffer.
      */
     public ExpectIOException(final String message, final String inputBuffer) {
+        this(message, inputBuffer, 0);
+    }
+
+    /**
+     * Creates a new exception instance with the given error message and the number of
+     * characters dropped from the input buffer.
+     * @param message the message.
+     * @param inputBuffer the input string buffer.
+     * @param droppedChars the number of dropped characters.
+     */
+    public ExpectIOException(
+            final String message,
+            final String inputBuffer,
+            final long droppedChars) {
         super(message);
         this.inputBuffer = inputBuffer;
+        this.droppedChars = droppedChars;
     }
 
     /**
@@ -44,4 +61,13 @@ public class ExpectIOException extends IOException {
     public String getInputBuffer() {
         return inputBuffer;
     }
+
+    /**
+     * Retrieves the number of characters dropped from the input buffer because it exceeded
+     * the maximum size, see {@link ExpectBuilder#withMaxBufferSize(int, OverflowPolicy)}.
+     * @return the number of dropped characters, zero if the input was not truncated.
+     */
+    public long getDroppedChars() {
+        return droppedChars;
+    }
 }
@@ -21,16 +21,12 @@ package net.sf.expectit;
  */
 
 import static net.sf.expectit.ExpectBuilder.validateDuration;
-import static net.sf.expectit.Utils.toDebugString;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import net.sf.expectit.interact.InteractBuilder;
 import net.sf.expectit.matcher.Matcher;
 
@@ -39,8 +35,6 @@ import net.sf.expectit.matcher.Matcher;
  * objects.
  */
 class ExpectImpl extends AbstractExpectImpl {
-    private static final Logger LOG = Logger.getLogger(ExpectImpl.class.getName());
-
     static final int INFINITE_TIMEOUT = -1; // value representing infinite timeout
 
     private final OutputStream output;
@@ -53,7 +47,7 @@ class ExpectImpl extends AbstractExpectImpl {
     private final String lineSeparator;
     private final boolean exceptionOnFailure;
     private final boolean autoFlushEcho;
-    private final boolean useInternalExecutor;
+    private ExpectListener listener;
 
     ExpectImpl(
             final long timeout,
@@ -75,12 +69,16 @@ class ExpectImpl extends AbstractExpectImpl {
         this.exceptionOnFailure = exceptionOnFailure;
         this.lineSeparator = lineSeparator;
         this.autoFlushEcho = autoFlushEcho;
-        this.executor = executor == null
-                ? Executors.newFixedThreadPool(
-                        inputs.length,
-                        new NamedExecutorThreadFactory("expect-"))
-                : executor;
-        this.useInternalExecutor = executor == null;
+        this.executor = executor == null ? SharedExecutor.get() : executor;
+    }
+
+    /**
+     * Sets the listener receiving the send events. Must be called before {@link #start()}.
+     *
+     * @param listener the listener, or {@code null}.
+     */
+    void setListener(final ExpectListener listener) {
+        this.listener = listener;
     }
 
     void start() {
@@ -92,20 +90,14 @@ class ExpectImpl extends AbstractExpectImpl {
     @Override
     public <R extends Result> R expectIn(int input, long timeoutMs, Matcher<R> matcher)
             throws IOException {
-        if (LOG.isLoggable(Level.FINE)) {
-            LOG.fine(
-                    String.format(
-                            "Expect matcher '%s' with timeout %d (ms) in input #%d",
-                            toDebugString(matcher),
-                            timeoutMs,
-                            input));
-        }
         R result = inputs[input].expect(timeoutMs, matcher);
         if (exceptionOnFailure && !result.isSuccessful()) {
             final String inputBuffer = inputs[input].getBuffer().toString();
             throw new ExpectIOException(
                     "Expect operation fails (timeout: "
-                            + timeoutMs + " ms) for matcher: " + matcher, inputBuffer);
+                            + timeoutMs + " ms) for matcher: " + matcher,
+                    inputBuffer,
+                    getDroppedChars(result));
         }
         if (errorOnTimeout && !result.isSuccessful()) {
             throw new AssertionError(
@@ -114,6 +106,49 @@ class ExpectImpl extends AbstractExpectImpl {
         return result;
     }
 
+    @Override
+    <R extends Result> void expectInAsync(
+            final int input,
+            final long timeoutMs,
+            final Matcher<R> matcher,
+            final ExpectCallback<R> callback) {
+        inputs[input].expectAsync(
+                timeoutMs,
+                matcher,
+                new ExpectCallback<R>() {
+                    @Override
+                    public void completed(final R result) {
+                        if (exceptionOnFailure && !result.isSuccessful()) {
+                            // the buffer may be used by the next operation already
+                            callback.failed(
+                                    new ExpectIOException(
+                                            "Expect operation fails (timeout: "
+                                                    + timeoutMs + " ms) for matcher: " + matcher,
+                                            result.getInput(),
+                                            getDroppedChars(result)));
+                        } else if (errorOnTimeout && !result.isSuccessful()) {
+                            callback.failed(
+                                    new AssertionError(
+                                            "Expect timeout (" + timeoutMs
+                                                    + " ms) for matcher: " + matcher));
+                        } else {
+                            callback.completed(result);
+                        }
+                    }
+
+                    @Override
+                    public void failed(final Throwable error) {
+                        callback.failed(error);
+                    }
+                });
+    }
+
+    private static long getDroppedChars(final Result result) {
+        return result instanceof DroppedCharsAware
+                ? ((DroppedCharsAware) result).getDroppedChars()
+                : 0;
+    }
+
     @Override
     public Expect withTimeout(long duration, TimeUnit unit) {
         validateDuration(duration);
@@ -152,11 +187,14 @@ class ExpectImpl extends AbstractExpectImpl {
     }
 
     private void writeBytes(byte[] bytes) throws IOException {
-        if (LOG.isLoggable(Level.FINE)) {
-            LOG.fine("Writing bytes: " + toDebugString(bytes, bytes.length, charset));
-        }
+        final Object context = listener != null
+                ? listener.sendStarted(bytes, 0, bytes.length)
+                : null;
         output.write(bytes);
         output.flush();
+        if (listener != null) {
+            listener.sendCompleted(context);
+        }
     }
 
     private void echoString(String string) throws IOException {
@@ -174,9 +212,6 @@ class ExpectImpl extends AbstractExpectImpl {
             input.stop();
         }
 
-        if (useInternalExecutor) {
-            executor.shutdown();
-        }
         if (autoFlushEcho) {
             Utils.flushAppendable(echoOutput);
         }
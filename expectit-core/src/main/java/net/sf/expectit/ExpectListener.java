@@ -0,0 +1,162 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import net.sf.expectit.matcher.Matcher;
+
+/**
+ * Receives the events of the input processing and the output of an {@link Expect} instance,
+ * for example to trace the slow operations or to collect the statistics. The listener is
+ * registered by {@link ExpectBuilder#withListener(ExpectListener)}.
+ * <p/>
+ * The methods are called synchronously by the threads doing the work: the events of the
+ * received data by the thread reading the input, the rest by the thread performing the
+ * operation. The implementation must therefore return quickly and must not throw exceptions.
+ * The data is passed as is, without formatting or copying, and must not be kept after the
+ * method returns.
+ * <p/>
+ * The methods starting an operation return an object which is passed back when the operation
+ * completes, so the implementation can time the operation without keeping its own state. The
+ * object may be {@code null}. The {@link ExpectListenerAdapter} class can be used to implement
+ * only some of the methods.
+ */
+public interface ExpectListener {
+    /**
+     * Called when a chunk of data is read from an input and decoded.
+     *
+     * @param input  the input index.
+     * @param chars  the array containing the decoded characters.
+     * @param offset the offset of the first character.
+     * @param length the number of characters.
+     * @param bytes  the number of bytes read.
+     */
+    void chunkReceived(int input, char[] chars, int offset, int length, int bytes);
+
+    /**
+     * Called before the input filter processes the received characters.
+     *
+     * @param input  the input index.
+     * @param length the number of characters passed to the filter.
+     * @return the object passed to {@link #filterCompleted(Object, int)}.
+     */
+    Object filterStarted(int input, int length);
+
+    /**
+     * Called after the input filter has processed the received characters.
+     *
+     * @param context the object returned by {@link #filterStarted(int, int)}.
+     * @param length  the number of characters appended to the input buffer, or {@code -1} if
+     *                the filter has discarded the characters.
+     */
+    void filterCompleted(Object context, int length);
+
+    /**
+     * Called when an expect operation starts.
+     *
+     * @param input     the input index.
+     * @param matcher   the matcher.
+     * @param timeoutMs the timeout in milliseconds, or {@code -1} if the operation waits
+     *                  infinitely.
+     * @return the object passed to the method completing the operation.
+     */
+    Object expectStarted(int input, Matcher<?> matcher, long timeoutMs);
+
+    /**
+     * Called after the matcher of an expect operation has run over the input buffer. The
+     * matcher runs when the operation starts and then as the data arrives.
+     *
+     * @param context the object returned by {@link #expectStarted(int, Matcher, long)}.
+     * @param result  the result of the matcher.
+     * @param length  the number of characters in the input buffer.
+     * @param nanos   the time spent in the matcher in nanoseconds.
+     */
+    void matcherEvaluated(Object context, Result result, int length, long nanos);
+
+    /**
+     * Called when the characters are dropped from the beginning of the input buffer because the
+     * buffer has exceeded its maximum size.
+     *
+     * @param context the object returned by {@link #expectStarted(int, Matcher, long)}.
+     * @param length  the number of dropped characters.
+     */
+    void inputDropped(Object context, int length);
+
+    /**
+     * Called when an expect operation is woken up without reading new data, either because
+     * there is no data available or because the input buffer is full and the data is left to the
+     * transport until the buffer is consumed.
+     *
+     * @param context    the object returned by {@link #expectStarted(int, Matcher, long)}.
+     * @param bufferFull whether the input buffer is full.
+     */
+    void inputIdle(Object context, boolean bufferFull);
+
+    /**
+     * Called when an expect operation completes successfully.
+     *
+     * @param context the object returned by {@link #expectStarted(int, Matcher, long)}.
+     * @param result  the successful result.
+     */
+    void matchSucceeded(Object context, Result result);
+
+    /**
+     * Called when an expect operation completes unsuccessfully because of the timeout.
+     *
+     * @param context the object returned by {@link #expectStarted(int, Matcher, long)}.
+     * @param result  the unsuccessful result.
+     */
+    void timeout(Object context, Result result);
+
+    /**
+     * Called when an expect operation completes unsuccessfully because the input has reached
+     * its end.
+     *
+     * @param context the object returned by {@link #expectStarted(int, Matcher, long)}.
+     * @param result  the unsuccessful result.
+     */
+    void eof(Object context, Result result);
+
+    /**
+     * Called when an expect operation fails with an exception, for example if the reading
+     * thread is interrupted.
+     *
+     * @param context the object returned by {@link #expectStarted(int, Matcher, long)}.
+     * @param error   the exception thrown by the operation.
+     */
+    void expectFailed(Object context, Throwable error);
+
+    /**
+     * Called before the bytes are written to the output.
+     *
+     * @param bytes  the array containing the bytes.
+     * @param offset the offset of the first byte.
+     * @param length the number of bytes.
+     * @return the object passed to {@link #sendCompleted(Object)}.
+     */
+    Object sendStarted(byte[] bytes, int offset, int length);
+
+    /**
+     * Called after the bytes are written to the output and the output is flushed.
+     *
+     * @param context the object returned by {@link #sendStarted(byte[], int, int)}.
+     */
+    void sendCompleted(Object context);
+}
@@ -0,0 +1,90 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import net.sf.expectit.matcher.Matcher;
+
+/**
+ * An {@link ExpectListener} ignoring all the events. It is intended to be used for creating
+ * subclasses.
+ */
+public class ExpectListenerAdapter implements ExpectListener {
+    /**
+     * The protected default constructor.
+     */
+    protected ExpectListenerAdapter() {
+    }
+
+    @Override
+    public void chunkReceived(int input, char[] chars, int offset, int length, int bytes) {
+    }
+
+    @Override
+    public Object filterStarted(int input, int length) {
+        return null;
+    }
+
+    @Override
+    public void filterCompleted(Object context, int length) {
+    }
+
+    @Override
+    public Object expectStarted(int input, Matcher<?> matcher, long timeoutMs) {
+        return null;
+    }
+
+    @Override
+    public void matcherEvaluated(Object context, Result result, int length, long nanos) {
+    }
+
+    @Override
+    public void inputDropped(Object context, int length) {
+    }
+
+    @Override
+    public void inputIdle(Object context, boolean bufferFull) {
+    }
+
+    @Override
+    public void matchSucceeded(Object context, Result result) {
+    }
+
+    @Override
+    public void timeout(Object context, Result result) {
+    }
+
+    @Override
+    public void eof(Object context, Result result) {
+    }
+
+    @Override
+    public void expectFailed(Object context, Throwable error) {
+    }
+
+    @Override
+    public Object sendStarted(byte[] bytes, int offset, int length) {
+        return null;
+    }
+
+    @Override
+    public void sendCompleted(Object context) {
+    }
+}
@@ -0,0 +1,114 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The statistics of the input processing collected by an {@link Expect} instance, see
+ * {@link Expect#getMetrics()}, or by all the instances, see {@link GlobalMetrics}.
+ * <p/>
+ * The values grow as the inputs are processed and can be read from any thread. The values
+ * aggregated over several inputs are summed, except the buffer high watermark which is the
+ * largest one. The times are measured in nanoseconds.
+ */
+public interface ExpectMetrics {
+    /**
+     * Returns the number of bytes read from the inputs.
+     *
+     * @return the number of bytes.
+     */
+    long getBytesReceived();
+
+    /**
+     * Returns the number of chunks read from the inputs. A chunk is the result of a single read
+     * operation, so the average chunk size tells how fragmented the input arrives.
+     *
+     * @return the number of chunks.
+     */
+    long getChunksReceived();
+
+    /**
+     * Returns the time spent decoding the received bytes to characters.
+     *
+     * @return the time in nanoseconds.
+     */
+    long getDecodeTimeNanos();
+
+    /**
+     * Returns the time spent in the input filters.
+     *
+     * @return the time in nanoseconds.
+     */
+    long getFilterTimeNanos();
+
+    /**
+     * Returns the number of times the matchers of the expect operations ran over the input
+     * buffer.
+     *
+     * @return the number of matcher evaluations.
+     */
+    long getMatcherEvaluations();
+
+    /**
+     * Returns the time spent in the matchers of the expect operations.
+     *
+     * @return the time in nanoseconds.
+     */
+    long getMatcherTimeNanos();
+
+    /**
+     * Returns the number of completed expect operations, including the failed ones.
+     *
+     * @return the number of expect operations.
+     */
+    long getExpectCalls();
+
+    /**
+     * Returns the total duration of the expect operations, from the start of an operation
+     * until its result is available.
+     *
+     * @return the time in nanoseconds.
+     */
+    long getExpectTimeNanos();
+
+    /**
+     * Returns the number of expect operations which have completed without a match before the
+     * input has reached its end, because the timeout has elapsed or the matcher has given up.
+     *
+     * @return the number of unsuccessful operations.
+     */
+    long getTimeouts();
+
+    /**
+     * Returns the number of expect operations which have completed without a match because the
+     * input has reached its end, including the ones failed with an
+     * {@link java.io.EOFException}.
+     *
+     * @return the number of operations.
+     */
+    long getEofs();
+
+    /**
+     * Returns the largest number of characters the input buffer has held.
+     *
+     * @return the number of characters.
+     */
+    long getBufferHighWatermark();
+}
@@ -0,0 +1,162 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.expectit.matcher.Matcher;
+
+/**
+ * A set of threads which perform the expect operations of many {@link Expect} instances
+ * reading the input channels. Each thread waits for the data of all its channels on a single
+ * selector, so the number of threads doesn't grow with the number of the instances.
+ * <p/>
+ * The instances are attached to the reactor by {@link ExpectBuilder#withReactor(ExpectReactor)}
+ * and distributed between the threads in the round-robin manner. The threads are daemons. The
+ * reactor must be closed after use, the expect operations of the attached instances fail with
+ * {@link java.nio.channels.ClosedChannelException} then.
+ * <p/>
+ * The class is thread safe.
+ */
+public final class ExpectReactor implements Closeable {
+    private final ReactorLoop[] loops;
+    private final ExecutorService executor;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Creates a reactor with a single thread.
+     *
+     * @throws IOException if a selector cannot be opened.
+     */
+    public ExpectReactor() throws IOException {
+        this(1);
+    }
+
+    /**
+     * Creates a reactor with the given number of threads.
+     *
+     * @param threads the number of threads.
+     * @throws IOException if a selector cannot be opened.
+     */
+    public ExpectReactor(final int threads) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive");
+        }
+        loops = new ReactorLoop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new ReactorLoop();
+        }
+        executor = Executors.newFixedThreadPool(
+                threads,
+                new NamedExecutorThreadFactory("expect-reactor-", true));
+        for (ReactorLoop loop : loops) {
+            executor.execute(loop);
+        }
+    }
+
+    /**
+     * Starts an expect operation in the first input of the given instance with the default
+     * timeout of the instance. The method doesn't block, the outcome is passed to the callback.
+     *
+     * @param expect   the instance attached to this reactor.
+     * @param matcher  the matcher.
+     * @param callback the callback receiving the outcome.
+     * @param <R>      the result type.
+     * @throws IllegalArgumentException if the instance is not attached to this reactor.
+     * @throws IllegalStateException    if another operation is in progress for the input.
+     * @see #expectIn(Expect, int, long, Matcher, ExpectCallback)
+     */
+    public <R extends Result> void expect(
+            final Expect expect,
+            final Matcher<R> matcher,
+            final ExpectCallback<R> callback) {
+        expectIn(expect, 0, getImpl(expect).getTimeout(), matcher, callback);
+    }
+
+    /**
+     * Starts an expect operation in the given input of the instance. The method doesn't block:
+     * the reactor thread waits for the input and passes the result to the callback when the
+     * matcher succeeds or the timeout expires, the same way as
+     * {@link Expect#expectIn(int, long, Matcher)} returns it. The exceptions which the
+     * blocking operation throws are passed to {@link ExpectCallback#failed(Throwable)}.
+     * <p/>
+     * Only one operation can be in progress for an input. The callback may start the next one.
+     *
+     * @param expect    the instance attached to this reactor.
+     * @param input     the input index.
+     * @param timeoutMs the timeout in milliseconds, or {@code -1} for no timeout.
+     * @param matcher   the matcher.
+     * @param callback  the callback receiving the outcome.
+     * @param <R>       the result type.
+     * @throws IllegalArgumentException if the instance is not attached to this reactor.
+     * @throws IllegalStateException    if another operation is in progress for the input.
+     */
+    public <R extends Result> void expectIn(
+            final Expect expect,
+            final int input,
+            final long timeoutMs,
+            final Matcher<R> matcher,
+            final ExpectCallback<R> callback) {
+        final AbstractExpectImpl impl = getImpl(expect);
+        final SingleInputExpect[] inputs = impl.getInputs();
+        if (input < 0 || input >= inputs.length) {
+            throw new IllegalArgumentException("Input index is out of bounds: " + input);
+        }
+        if (!isOwnLoop(inputs[input].getReactorLoop())) {
+            throw new IllegalArgumentException("The instance is not attached to the reactor");
+        }
+        impl.expectInAsync(input, timeoutMs, matcher, callback);
+    }
+
+    private static AbstractExpectImpl getImpl(final Expect expect) {
+        if (!(expect instanceof AbstractExpectImpl)) {
+            throw new IllegalArgumentException("The instance is not attached to the reactor");
+        }
+        return (AbstractExpectImpl) expect;
+    }
+
+    private boolean isOwnLoop(final ReactorLoop loop) {
+        for (ReactorLoop own : loops) {
+            if (own == loop) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    ReactorLoop nextLoop() {
+        return loops[(next.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+    }
+
+    /**
+     * Stops the reactor threads.
+     */
+    @Override
+    public void close() {
+        for (ReactorLoop loop : loops) {
+            loop.close();
+        }
+        executor.shutdown();
+    }
+}
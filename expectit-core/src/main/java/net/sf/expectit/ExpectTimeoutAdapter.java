@@ -92,4 +92,13 @@ class ExpectTimeoutAdapter extends AbstractExpectImpl {
     SingleInputExpect[] getInputs() {
         return delegate.getInputs();
     }
+
+    @Override
+    <R extends Result> void expectInAsync(
+            final int input,
+            final long timeoutMs,
+            final Matcher<R> matcher,
+            final ExpectCallback<R> callback) {
+        delegate.expectInAsync(input, timeoutMs, matcher, callback);
+    }
 }
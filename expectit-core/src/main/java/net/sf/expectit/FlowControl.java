@@ -0,0 +1,141 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the amount of the input data which has been read by the background thread but not
+ * consumed by the expect operations yet.
+ * <p/>
+ * The background thread reports the characters it has passed to the transport and blocks
+ * once the unconsumed data reaches the high watermark. The expect operations report the
+ * characters which left the transport and the input buffer, the background thread resumes
+ * when the unconsumed data falls to the low watermark. While the background thread is
+ * blocked it doesn't read from the input stream, so the producer of the input is blocked
+ * by the flow control of the underlying channel, for example, TCP.
+ * <p/>
+ * The instance is shared by all the inputs writing to the same transport. It waits on a
+ * {@link Condition} rather than a monitor, so that a blocked virtual thread releases its
+ * carrier thread.
+ */
+final class FlowControl {
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition belowLowWatermark = lock.newCondition();
+    private long unconsumed;
+    private boolean paused;
+    private boolean closed;
+
+    FlowControl(final int highWatermark, final int lowWatermark) {
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+    }
+
+    /**
+     * Registers the characters written to the transport and blocks while the unconsumed data
+     * is above the low watermark after it has reached the high watermark.
+     *
+     * @param count the number of characters written.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    void produced(final int count) throws InterruptedException {
+        lock.lock();
+        try {
+            add(count);
+            while (paused && !closed) {
+                belowLowWatermark.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers the characters written to the transport without blocking. The writer must not
+     * read the input while {@link #isPaused()} returns {@code true}.
+     *
+     * @param count the number of characters written.
+     */
+    void producedNoWait(final int count) {
+        lock.lock();
+        try {
+            add(count);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether the unconsumed data has reached the high watermark and hasn't fallen to
+     * the low watermark yet.
+     */
+    boolean isPaused() {
+        lock.lock();
+        try {
+            return paused && !closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void add(final int count) {
+        unconsumed += count;
+        if (unconsumed >= highWatermark) {
+            paused = true;
+        }
+    }
+
+    /**
+     * Registers the characters consumed by the expect operations. The count is negative if the
+     * input buffer has grown more than the amount of data read from the transport, for example,
+     * by a filter.
+     *
+     * @param count the number of characters consumed.
+     */
+    void consumed(final int count) {
+        lock.lock();
+        try {
+            unconsumed -= count;
+            if (unconsumed <= lowWatermark) {
+                paused = false;
+                belowLowWatermark.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the blocked background threads permanently.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            belowLowWatermark.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * The metrics aggregated over all the {@link Expect} instances of the JVM.
+ * <p/>
+ * The metrics of the open instances are summed when the values are read, and the metrics of
+ * an instance are added to the totals when it is closed, so collecting the global metrics
+ * doesn't slow down the input processing. The instances which are garbage collected without
+ * being closed are not counted.
+ * <p/>
+ * The metrics can be exposed as a JMX MBean named {@value #OBJECT_NAME}:
+ * <pre>
+ * GlobalMetrics.registerMBean();
+ * </pre>
+ */
+public final class GlobalMetrics {
+    /**
+     * The name of the MBean registered by {@link #registerMBean()}.
+     */
+    public static final String OBJECT_NAME = "net.sf.expectit:type=ExpectMetrics";
+
+    private static final Set<MetricsCounters> OPEN = Collections.newSetFromMap(
+            new WeakHashMap<MetricsCounters, Boolean>());
+    private static final MetricsCounters CLOSED = new MetricsCounters();
+    private static final CompositeMetrics ALL = new CompositeMetrics(
+            new CompositeMetrics(OPEN),
+            CLOSED);
+    private static final AbstractMetrics METRICS = new AbstractMetrics() {
+        @Override
+        long get(final int index) {
+            // the metrics of an instance move to the closed ones under the same lock
+            synchronized (OPEN) {
+                return ALL.get(index);
+            }
+        }
+    };
+
+    private GlobalMetrics() {
+    }
+
+    /**
+     * Returns the metrics aggregated over all the instances.
+     *
+     * @return the metrics, reflecting the current values.
+     */
+    public static ExpectMetrics get() {
+        return METRICS;
+    }
+
+    /**
+     * Registers the global metrics as an MBean named {@value #OBJECT_NAME} in the platform
+     * MBean server, unless it is registered already.
+     *
+     * @throws JMException if the registration fails.
+     */
+    public static void registerMBean() throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(OBJECT_NAME);
+        synchronized (GlobalMetrics.class) {
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new StandardMBean(get(), ExpectMetrics.class), name);
+            }
+        }
+    }
+
+    /**
+     * Removes the MBean registered by {@link #registerMBean()} from the platform MBean
+     * server, if it is registered.
+     *
+     * @throws JMException if the removal fails.
+     */
+    public static void unregisterMBean() throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(OBJECT_NAME);
+        synchronized (GlobalMetrics.class) {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+    }
+
+    static void opened(final MetricsCounters metrics) {
+        synchronized (OPEN) {
+            OPEN.add(metrics);
+        }
+    }
+
+    static void closed(final MetricsCounters metrics) {
+        synchronized (OPEN) {
+            if (OPEN.remove(metrics)) {
+                CLOSED.add(metrics);
+            }
+        }
+    }
+}
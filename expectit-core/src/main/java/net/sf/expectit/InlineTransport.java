@@ -0,0 +1,125 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.Charset;
+
+/**
+ * A transport which reads an input stream directly in the thread performing expect operations,
+ * so no background thread is involved. Like the {@link ChannelTransport}, the
+ * {@link #sink()} is not supported.
+ * <p/>
+ * The stream is read in a blocking manner when an expect operation waits for data, so the
+ * timeout of the operation is only checked between the reads. The transport is intended for
+ * the streams which never block, for example, the in-memory streams and the recorded
+ * transcripts. The data reported by {@link InputStream#available()} is read without waiting.
+ * A stream which returns no data without blocking is polled with a delay doubling up to
+ * {@link #MAX_POLL_DELAY_MS} until the timeout.
+ */
+class InlineTransport extends AbstractDirectTransport {
+    /**
+     * The maximum delay between the reads of a stream which returns no data.
+     */
+    static final long MAX_POLL_DELAY_MS = 50;
+
+    private final InputStream input;
+    private final byte[] bytes;
+    private volatile boolean closed;
+
+    InlineTransport(
+            final InputStream input,
+            final Charset charset,
+            final int bufferSize,
+            final Appendable echo,
+            final boolean autoFlushEcho,
+            final InputMonitor monitor) {
+        this(input, new byte[bufferSize], charset, echo, autoFlushEcho, monitor);
+    }
+
+    private InlineTransport(
+            final InputStream input,
+            final byte[] bytes,
+            final Charset charset,
+            final Appendable echo,
+            final boolean autoFlushEcho,
+            final InputMonitor monitor) {
+        super(bytes, charset, echo, autoFlushEcho, monitor);
+        this.input = input;
+        this.bytes = bytes;
+    }
+
+    @Override
+    public boolean await(final long timeoutMs) throws IOException {
+        final long deadline = timeoutMs == ExpectImpl.INFINITE_TIMEOUT
+                ? Long.MAX_VALUE
+                : System.currentTimeMillis() + timeoutMs;
+        long delay = 0;
+        while (true) {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            if (!hasPendingInput()) {
+                readInput();
+            }
+            if (hasPendingInput()) {
+                return true;
+            }
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            delay = delay == 0
+                    ? PollingCopier.MIN_DELAY_MS
+                    : Math.min(delay * 2, MAX_POLL_DELAY_MS);
+            try {
+                Thread.sleep(Math.min(delay, remaining));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    @Override
+    int readBytes() throws IOException {
+        return input.read(bytes);
+    }
+
+    @Override
+    boolean canRead() throws IOException {
+        return input.available() > 0;
+    }
+
+    /**
+     * Makes the further reads fail. The input stream is not closed, as the input streams are
+     * not closed by the other transports.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
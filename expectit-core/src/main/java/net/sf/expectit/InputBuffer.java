@@ -0,0 +1,67 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The buffer holding the characters received from an input which have not been consumed by
+ * the successful expect operations yet. The characters are appended to the end of the buffer
+ * and consumed from its beginning.
+ */
+interface InputBuffer extends CharSequence {
+    /**
+     * Appends the given characters.
+     *
+     * @param chars  the array of characters
+     * @param offset the offset of the first character
+     * @param len    the number of characters
+     */
+    void append(char[] chars, int offset, int len);
+
+    /**
+     * Appends the given string.
+     *
+     * @param string the string
+     */
+    void append(String string);
+
+    /**
+     * Removes the given number of characters from the beginning of the buffer.
+     *
+     * @param count the number of characters
+     */
+    void consume(int count);
+
+    /**
+     * Returns a copy of the given part of the buffer.
+     *
+     * @param start the start index, inclusive
+     * @param end   the end index, exclusive
+     * @return the string
+     */
+    String substring(int start, int end);
+
+    /**
+     * Creates a view of the current content.
+     *
+     * @return the view
+     */
+    InputView view();
+}
@@ -0,0 +1,274 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A stateful decoder which converts chunks of bytes read from an input to characters.
+ * <p/>
+ * Unlike creating a string for every chunk, the decoder keeps the bytes of a multi-byte
+ * character which is split between two chunks until the rest of the character arrives. The
+ * decoded characters are written to a buffer which is reused between the calls. The
+ * ISO-8859-1 and US-ASCII charsets, as well as the ASCII characters in UTF-8, are converted
+ * without involving the charset decoder.
+ * <p/>
+ * Malformed and unmappable input is replaced the same way as the {@link String} constructor
+ * does. The class is not thread safe.
+ */
+class InputDecoder {
+    private static final char REPLACEMENT = '\uFFFD';
+    private static final int BYTE_MASK = 0xff;
+    private static final int ISO_8859_1 = 1;
+    private static final int US_ASCII = 2;
+    private static final int UTF_8 = 3;
+
+    private final CharsetDecoder decoder;
+    private final int fastPath;
+    private final InputMonitor monitor;
+    private CharBuffer out;
+    private ByteBuffer pending;
+    private ByteBuffer wrapper;
+
+    InputDecoder(final Charset charset, final int bufferSize) {
+        this(charset, bufferSize, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param charset    the charset.
+     * @param bufferSize the initial size of the buffers.
+     * @param monitor    the monitor receiving the decoded chunks and the decoding time, or
+     *                   {@code null}.
+     */
+    InputDecoder(final Charset charset, final int bufferSize, final InputMonitor monitor) {
+        this.monitor = monitor;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.fastPath = getFastPath(charset.name());
+        this.out = CharBuffer.allocate(bufferSize);
+        this.pending = ByteBuffer.allocate(bufferSize);
+    }
+
+    private static int getFastPath(final String name) {
+        if ("ISO-8859-1".equals(name)) {
+            return ISO_8859_1;
+        }
+        if ("US-ASCII".equals(name)) {
+            return US_ASCII;
+        }
+        if ("UTF-8".equals(name)) {
+            return UTF_8;
+        }
+        return 0;
+    }
+
+    /**
+     * Decodes the given bytes. The bytes of an incomplete character at the end of the chunk are
+     * kept until the next call.
+     *
+     * @param bytes  the byte array
+     * @param offset the offset of the first byte
+     * @param length the number of bytes to decode
+     * @return the buffer containing the decoded characters between its position and limit,
+     * valid until the next call of this object.
+     */
+    CharBuffer decode(final byte[] bytes, final int offset, final int length) {
+        if (monitor == null) {
+            return decodeChunk(bytes, offset, length);
+        }
+        final long start = System.nanoTime();
+        final CharBuffer result = decodeChunk(bytes, offset, length);
+        monitor.received(
+                result.array(),
+                result.position(),
+                result.remaining(),
+                length,
+                System.nanoTime() - start);
+        return result;
+    }
+
+    private CharBuffer decodeChunk(final byte[] bytes, final int offset, final int length) {
+        out.clear();
+        int start = offset;
+        final int end = offset + length;
+        if (pending.position() == 0 && fastPath != 0) {
+            ensureCapacity(length);
+            start = decodeFast(bytes, start, end);
+            if (start == end) {
+                out.flip();
+                return out;
+            }
+        }
+        final ByteBuffer in;
+        if (pending.position() > 0) {
+            ensurePendingCapacity(end - start);
+            pending.put(bytes, start, end - start);
+            pending.flip();
+            in = pending;
+        } else {
+            if (wrapper == null || wrapper.array() != bytes) {
+                wrapper = ByteBuffer.wrap(bytes);
+            }
+            wrapper.limit(end).position(start);
+            in = wrapper;
+        }
+        decode(in, false);
+        if (in == pending) {
+            pending.compact();
+        } else {
+            pending.clear();
+            ensurePendingCapacity(in.remaining());
+            pending.put(in);
+        }
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Returns the number of bytes which can be passed to {@link #decode} without producing more
+     * than the given number of characters, taking into account the bytes kept from the previous
+     * chunk.
+     *
+     * @param maxChars the maximum number of characters.
+     * @return the number of bytes, never negative.
+     */
+    int maxBytes(final int maxChars) {
+        final int bytes = (int) (maxChars / decoder.maxCharsPerByte()) - pending.position();
+        return Math.max(0, bytes);
+    }
+
+    /**
+     * Decodes the bytes kept from the previous chunk when the input reaches its end and resets
+     * the decoder.
+     *
+     * @return the buffer containing the remaining characters, possibly empty.
+     */
+    CharBuffer finish() {
+        if (monitor == null) {
+            return finishChunk();
+        }
+        final long start = System.nanoTime();
+        final CharBuffer result = finishChunk();
+        if (result.hasRemaining()) {
+            // the bytes have been counted when they were passed to decode
+            monitor.received(
+                    result.array(),
+                    result.position(),
+                    result.remaining(),
+                    0,
+                    System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    private CharBuffer finishChunk() {
+        out.clear();
+        pending.flip();
+        decode(pending, true);
+        CoderResult result = decoder.flush(out);
+        while (result.isOverflow()) {
+            grow();
+            result = decoder.flush(out);
+        }
+        decoder.reset();
+        pending.clear();
+        out.flip();
+        return out;
+    }
+
+    private void decode(final ByteBuffer in, final boolean endOfInput) {
+        ensureCapacity((int) (in.remaining() * decoder.maxCharsPerByte()) + 1);
+        CoderResult result = decoder.decode(in, out, endOfInput);
+        while (result.isOverflow()) {
+            grow();
+            result = decoder.decode(in, out, endOfInput);
+        }
+        if (result.isError()) {
+            // never happens since the decoder replaces errors
+            try {
+                result.throwException();
+            } catch (CharacterCodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Converts the bytes which can be decoded without the charset decoder.
+     *
+     * @return the index of the first byte which requires the charset decoder.
+     */
+    private int decodeFast(final byte[] bytes, final int start, final int end) {
+        final char[] chars = out.array();
+        int pos = out.position();
+        int i = start;
+        switch (fastPath) {
+            case ISO_8859_1:
+                for (; i < end; i++) {
+                    chars[pos++] = (char) (bytes[i] & BYTE_MASK);
+                }
+                break;
+            case US_ASCII:
+                for (; i < end; i++) {
+                    final byte b = bytes[i];
+                    chars[pos++] = b >= 0 ? (char) b : REPLACEMENT;
+                }
+                break;
+            default:
+                for (; i < end && bytes[i] >= 0; i++) {
+                    chars[pos++] = (char) bytes[i];
+                }
+        }
+        out.position(pos);
+        return i;
+    }
+
+    private void ensureCapacity(final int length) {
+        if (out.remaining() < length) {
+            final CharBuffer newOut = CharBuffer.allocate(out.position() + length);
+            out.flip();
+            newOut.put(out);
+            out = newOut;
+        }
+    }
+
+    private void grow() {
+        ensureCapacity(out.capacity() + 1);
+    }
+
+    private void ensurePendingCapacity(final int length) {
+        if (pending.remaining() < length) {
+            final ByteBuffer newPending = ByteBuffer.allocate(pending.position() + length);
+            pending.flip();
+            newPending.put(pending);
+            pending = newPending;
+        }
+    }
+}
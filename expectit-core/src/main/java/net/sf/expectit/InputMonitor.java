@@ -0,0 +1,134 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import net.sf.expectit.matcher.Matcher;
+
+/**
+ * Reports the input processing to the metrics of the input and to the listener, if any. The
+ * listener is called only if it is set, so the processing costs nothing extra otherwise.
+ */
+final class InputMonitor {
+    private final int input;
+    private final MetricsCounters metrics;
+    private final ExpectListener listener;
+
+    /**
+     * Constructor.
+     *
+     * @param input    the input index.
+     * @param metrics  the metrics of the input.
+     * @param listener the listener, or {@code null}.
+     */
+    InputMonitor(final int input, final MetricsCounters metrics, final ExpectListener listener) {
+        this.input = input;
+        this.metrics = metrics;
+        this.listener = listener;
+    }
+
+    MetricsCounters getMetrics() {
+        return metrics;
+    }
+
+    void received(
+            final char[] chars,
+            final int offset,
+            final int length,
+            final int bytes,
+            final long decodeNanos) {
+        metrics.received(bytes, decodeNanos);
+        if (listener != null) {
+            listener.chunkReceived(input, chars, offset, length, bytes);
+        }
+    }
+
+    Object filterStarted(final int length) {
+        return listener != null ? listener.filterStarted(input, length) : null;
+    }
+
+    void filterCompleted(final Object context, final int length, final long nanos) {
+        metrics.filtered(nanos);
+        if (listener != null) {
+            listener.filterCompleted(context, length);
+        }
+    }
+
+    void evaluated(
+            final Object context,
+            final Result result,
+            final int length,
+            final long nanos) {
+        metrics.evaluated(nanos);
+        if (listener != null) {
+            listener.matcherEvaluated(context, result, length, nanos);
+        }
+    }
+
+    void dropped(final Object context, final int length) {
+        if (listener != null) {
+            listener.inputDropped(context, length);
+        }
+    }
+
+    void idle(final Object context, final boolean bufferFull) {
+        if (listener != null) {
+            listener.inputIdle(context, bufferFull);
+        }
+    }
+
+    void bufferLength(final int length) {
+        metrics.bufferLength(length);
+    }
+
+    Object expectStarted(final Matcher<?> matcher, final long timeoutMs) {
+        return listener != null ? listener.expectStarted(input, matcher, timeoutMs) : null;
+    }
+
+    void matchSucceeded(final Object context, final Result result, final long nanos) {
+        metrics.expectCompleted(nanos);
+        if (listener != null) {
+            listener.matchSucceeded(context, result);
+        }
+    }
+
+    void timeout(final Object context, final Result result, final long nanos) {
+        metrics.expectCompleted(nanos);
+        metrics.timeout();
+        if (listener != null) {
+            listener.timeout(context, result);
+        }
+    }
+
+    void eof(final Object context, final Result result, final long nanos) {
+        metrics.expectCompleted(nanos);
+        metrics.eof();
+        if (listener != null) {
+            listener.eof(context, result);
+        }
+    }
+
+    void expectFailed(final Object context, final Throwable error, final long nanos) {
+        metrics.expectCompleted(nanos);
+        if (listener != null) {
+            listener.expectFailed(context, error);
+        }
+    }
+}
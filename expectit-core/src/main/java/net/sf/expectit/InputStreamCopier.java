@@ -20,83 +20,183 @@ package net.sf.expectit;
  * #L%
  */
 
-import static net.sf.expectit.Utils.toDebugString;
-
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.ByteBuffer;
-import java.nio.channels.WritableByteChannel;
+import java.io.Writer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.concurrent.Callable;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
- * Performs copy from an input stream to a WritableByteChannel.
+ * Performs copy from an input stream to a Writer. The bytes are decoded once and the resulting
+ * characters are used both for the writer and for the echo.
  */
 class InputStreamCopier implements Callable<Object> {
-    private static final Logger LOG = Logger.getLogger(InputStreamCopier.class.getName());
-
     private final InputStream from;
-    private final WritableByteChannel to;
+    private final Writer to;
     private final int bufferSize;
     private final Appendable echo;
     private final Charset charset;
     private final boolean autoFlushEcho;
+    private final FlowControl flowControl;
+    private final byte[] buffer;
+    private final InputDecoder decoder;
 
     InputStreamCopier(
-            final WritableByteChannel to,
+            final Writer to,
             final InputStream from,
             final int bufferSize,
             final Appendable echo,
             final Charset charset,
-            final boolean autoFlushEcho) {
+            final boolean autoFlushEcho,
+            final FlowControl flowControl,
+            final InputMonitor monitor) {
         this.from = from;
         this.to = to;
         this.bufferSize = bufferSize;
         this.echo = echo;
         this.charset = charset;
         this.autoFlushEcho = autoFlushEcho;
+        this.flowControl = flowControl;
+        this.buffer = new byte[bufferSize];
+        this.decoder = new InputDecoder(
+                charset == null ? Charset.defaultCharset() : charset,
+                bufferSize,
+                monitor);
     }
 
     @Override
     public Object call() throws Exception {
-        byte[] buffer = new byte[bufferSize];
         int bytesRead;
         try {
             while ((bytesRead = from.read(buffer)) != -1) {
-                to.write(ByteBuffer.wrap(buffer, 0, bytesRead));
-                if (LOG.isLoggable(Level.FINE) && bytesRead > 0) {
-                    LOG.fine(
-                            String.format(
-                                    "Received from %s: %s",
-                                    from,
-                                    toDebugString(buffer, bytesRead, charset)));
-                }
-                if (echo != null && bytesRead > 0) {
-                    printEcho(buffer, bytesRead);
+                if (bytesRead > 0) {
+                    final CharBuffer chars = decoder.decode(buffer, 0, bytesRead);
+                    copy(chars, buffer, bytesRead);
+                    if (flowControl != null) {
+                        // stops reading the input until the data is consumed
+                        flowControl.produced(chars.remaining());
+                    }
                 }
             }
+            copyRest();
         } finally {
             to.close();
         }
         return null;
     }
 
-    private void printEcho(final byte[] buffer, final int bytesRead) throws IOException {
-        if (charset == null) {
-            if (echo instanceof OutputStream) {
-                ((OutputStream) echo).write(buffer, 0, bytesRead);
-            } else {
-                echo.append(new String(buffer, 0, bytesRead, Charset.defaultCharset()));
+    /**
+     * Copies the data which can be read from the input without blocking, as reported by
+     * {@link InputStream#available()}. Doesn't read the input while the flow control is paused
+     * or while the writer can't take the decoded characters without blocking.
+     *
+     * @return the number of bytes copied, or {@code -1} if the input has reached its end.
+     * @throws IOException if the input can't be read, for example, when it is closed.
+     */
+    int copyAvailable() throws IOException {
+        if (flowControl != null && flowControl.isPaused()) {
+            return 0;
+        }
+        final int available = from.available();
+        if (available <= 0) {
+            return 0;
+        }
+        final int maxBytes = writableBytes(Math.min(available, bufferSize));
+        if (maxBytes == 0) {
+            // nobody reads the transport, the other inputs are copied meanwhile
+            return 0;
+        }
+        final int bytesRead = from.read(buffer, 0, maxBytes);
+        if (bytesRead > 0) {
+            final CharBuffer chars = decoder.decode(buffer, 0, bytesRead);
+            copy(chars, buffer, bytesRead);
+            if (flowControl != null) {
+                flowControl.producedNoWait(chars.remaining());
             }
-        } else {
-            echo.append(new String(buffer, 0, bytesRead, charset));
         }
-        if (autoFlushEcho) {
-            Utils.flushAppendable(echo);
+        return bytesRead;
+    }
+
+    /**
+     * Copies the rest of the input until its end, blocking if the data isn't available yet.
+     * Stops when the writer can't take the decoded characters without blocking.
+     *
+     * @return {@code true} if the input has reached its end, {@code false} if the writer is
+     * full.
+     */
+    boolean copyToEnd() throws IOException {
+        while (true) {
+            final int maxBytes = writableBytes(bufferSize);
+            if (maxBytes == 0) {
+                return false;
+            }
+            final int bytesRead = from.read(buffer, 0, maxBytes);
+            if (bytesRead == -1) {
+                return true;
+            }
+            if (bytesRead > 0) {
+                final CharBuffer chars = decoder.decode(buffer, 0, bytesRead);
+                copy(chars, buffer, bytesRead);
+                if (flowControl != null) {
+                    // the input is read to its end regardless of the flow control
+                    flowControl.producedNoWait(chars.remaining());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes which can be copied without blocking on the writer.
+     */
+    private int writableBytes(final int maxBytes) throws IOException {
+        if (!(to instanceof TransportSink)) {
+            return maxBytes;
         }
+        final TransportSink sink = (TransportSink) to;
+        final int writable = decoder.maxBytes(sink.writable());
+        // a transport smaller than a character still takes it once drained
+        return Math.min(maxBytes, writable == 0 && sink.isEmpty() ? 1 : writable);
     }
 
+    /**
+     * Closes the writer without copying the characters left in the decoder.
+     */
+    void closeOutput() throws IOException {
+        to.close();
+    }
+
+    /**
+     * Copies the characters left in the decoder and closes the writer.
+     */
+    void finish() throws IOException {
+        try {
+            copyRest();
+        } finally {
+            to.close();
+        }
+    }
+
+    /**
+     * Copies the characters left in the decoder at the end of the input.
+     */
+    private void copyRest() throws IOException {
+        final CharBuffer chars = decoder.finish();
+        copy(chars, null, 0);
+        if (flowControl != null) {
+            flowControl.producedNoWait(chars.remaining());
+        }
+    }
+
+    private void copy(
+            final CharBuffer chars,
+            final byte[] bytes,
+            final int bytesRead) throws IOException {
+        if (chars.hasRemaining()) {
+            to.write(chars.array(), chars.position(), chars.remaining());
+        }
+        if (echo != null) {
+            Utils.printEcho(echo, charset, autoFlushEcho, chars, bytes, 0, bytesRead);
+        }
+    }
 }
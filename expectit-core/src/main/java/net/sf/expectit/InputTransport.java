@@ -0,0 +1,66 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * Transfers the characters decoded from an input stream by a background thread to the thread
+ * performing expect operations.
+ */
+interface InputTransport {
+    /**
+     * Returns the writer where the background thread writes the decoded input to. Closing the
+     * writer signals the end of the input.
+     *
+     * @return the sink writer
+     */
+    Writer sink();
+
+    /**
+     * Blocks until there is data available for reading, or the sink is closed, or the timeout
+     * elapses. Returns immediately if the calling thread has been interrupted.
+     *
+     * @param timeoutMs the timeout in milliseconds, or {@link ExpectImpl#INFINITE_TIMEOUT}
+     * @return {@code true} if the data is available or the input reached its end
+     * @throws IOException if I/O error occurs
+     */
+    boolean await(long timeoutMs) throws IOException;
+
+    /**
+     * Reads the available data without blocking.
+     *
+     * @param buffer the buffer to read to
+     * @return the number of characters read, or {@code -1} if the input reached its end
+     * @throws IOException if I/O error occurs
+     */
+    int read(CharBuffer buffer) throws IOException;
+
+    /**
+     * Closes both ends of the transport and releases the resources acquired by the
+     * {@link #await(long)} method.
+     *
+     * @throws IOException if I/O error occurs
+     */
+    void close() throws IOException;
+}
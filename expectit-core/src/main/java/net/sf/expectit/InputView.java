@@ -0,0 +1,61 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A read-only view of the input buffer content passed to the matchers. The length of the view
+ * is fixed when it is created, the data appended later is not visible.
+ * <p/>
+ * The view must be detached before the beginning of the buffer is modified, so the results
+ * referencing the view stay valid. The class cannot be extended outside of this package.
+ */
+public abstract class InputView implements CharSequence {
+    private long droppedChars;
+
+    InputView() {
+    }
+
+    /**
+     * Makes the view independent of the subsequent modifications of the buffer.
+     */
+    abstract void detach();
+
+    /**
+     * Detaches the view by copying its content to a string, so the view can be read by other
+     * threads while the buffer is modified.
+     */
+    abstract void copy();
+
+    /**
+     * Returns the number of characters dropped from the beginning of the input buffer since
+     * the expect operation started because the buffer exceeded its maximum size.
+     *
+     * @return the number of the dropped characters, zero if nothing was dropped.
+     * @see ExpectBuilder#withMaxBufferSize(int, OverflowPolicy)
+     */
+    public long getDroppedChars() {
+        return droppedChars;
+    }
+
+    void setDroppedChars(final long droppedChars) {
+        this.droppedChars = droppedChars;
+    }
+}
@@ -29,8 +29,11 @@ import java.util.logging.Logger;
 import net.sf.expectit.interact.Action;
 import net.sf.expectit.interact.InteractBuilder;
 import net.sf.expectit.interact.OngoingResult;
+import net.sf.expectit.matcher.CharSequenceMatcher;
 import net.sf.expectit.matcher.Matcher;
+import net.sf.expectit.matcher.MatcherState;
 import net.sf.expectit.matcher.SimpleResult;
+import net.sf.expectit.matcher.StatefulMatcher;
 
 class InteractBuilderImpl implements InteractBuilder {
     private static final Logger LOG = Logger.getLogger(SingleInputExpect.class.getName());
@@ -69,10 +72,12 @@ class InteractBuilderImpl implements InteractBuilder {
             array[i + 1] = matchers.get(i);
         }
         array[0] = new ResultMatcher((Matcher<Result>) matcher);
+        // created once since the substring conditions are compiled to a single automaton
+        final Matcher<MultiResult> anyOf = anyOf(array);
 
         while (true) {
             final long time = System.currentTimeMillis();
-            final MultiResult multiResult = expect.expectIn(input, anyOf(array));
+            final MultiResult multiResult = expect.expectIn(input, anyOf);
             final String inputBuffer = expect.getInputs()[this.input].getBuffer().toString();
             if (System.currentTimeMillis() - time > expect.getTimeout()) {
                 LOG.fine("Until matching operation timeout");
@@ -100,12 +105,12 @@ class InteractBuilderImpl implements InteractBuilder {
     private static class InternalResult extends SimpleResult {
         private final Result result;
 
-        public InternalResult(final Result result, final String input) {
+        public InternalResult(final Result result, final CharSequence input) {
             super(
                     result.isSuccessful(),
                     input,
-                    "",
-                    "",
+                    0,
+                    0,
                     result.canStopMatching());
             this.result = result;
         }
@@ -113,7 +118,7 @@ class InteractBuilderImpl implements InteractBuilder {
         public Result getResult() { return result; }
     }
 
-    private static class ResultMatcher implements Matcher<Result> {
+    private static class ResultMatcher implements StatefulMatcher<Result> {
         private final Matcher<Result> matcher;
 
         public ResultMatcher(final Matcher<Result> matcher) {
@@ -122,10 +127,36 @@ class InteractBuilderImpl implements InteractBuilder {
 
         @Override
         public Result matches(final String input, final boolean isEof) {
-            final Result result = matcher.matches(input, isEof);
+            return matches((CharSequence) input, isEof);
+        }
+
+        @Override
+        public Result matches(final CharSequence input, final boolean isEof) {
+            final Result result = matcher instanceof CharSequenceMatcher
+                    ? ((CharSequenceMatcher<Result>) matcher).matches(input, isEof)
+                    : matcher.matches(input.toString(), isEof);
             return new InternalResult(result, input);
         }
 
+        @Override
+        public MatcherState<Result> createState() {
+            final MatcherState<Result> state = matcher instanceof StatefulMatcher
+                    ? ((StatefulMatcher<Result>) matcher).createState()
+                    : null;
+            return new MatcherState<Result>() {
+                @Override
+                public Result matches(
+                        final CharSequence input,
+                        final int stable,
+                        final boolean isEof) {
+                    if (state == null) {
+                        return ResultMatcher.this.matches(input, isEof);
+                    }
+                    return new InternalResult(state.matches(input, stable, isEof), input);
+                }
+            };
+        }
+
         @Override
         public String toString() {
             return matcher.toString();
@@ -0,0 +1,249 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.Utils.appendDebugString;
+import static net.sf.expectit.Utils.toDebugString;
+
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.expectit.matcher.Matcher;
+
+/**
+ * Logs the events at the {@link Level#FINE} level and passes them to the listener set by
+ * {@link ExpectBuilder#withListener(ExpectListener)}, if any.
+ * <p/>
+ * The listener is set only for the instances built while the level is enabled, so the
+ * instances built otherwise call no listener unless one is set by the user. The messages are
+ * created only if the level is still enabled when an event occurs.
+ */
+final class LoggingListener implements ExpectListener {
+    private static final Logger INPUT_LOG = Logger.getLogger(SingleInputExpect.class.getName());
+    private static final Logger OUTPUT_LOG = Logger.getLogger(ExpectImpl.class.getName());
+
+    private final ExpectListener delegate;
+    private final Charset charset;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate the listener receiving the events, or {@code null}.
+     * @param charset  the charset of the output.
+     */
+    LoggingListener(final ExpectListener delegate, final Charset charset) {
+        this.delegate = delegate;
+        this.charset = charset;
+    }
+
+    /**
+     * Wraps the listener with the logging if the {@link Level#FINE} level is enabled.
+     *
+     * @param delegate the listener set by the user, or {@code null}.
+     * @param charset  the charset of the output.
+     * @return the listener to be called by the instance, or {@code null} if none.
+     */
+    static ExpectListener wrap(final ExpectListener delegate, final Charset charset) {
+        if (INPUT_LOG.isLoggable(Level.FINE) || OUTPUT_LOG.isLoggable(Level.FINE)) {
+            return new LoggingListener(delegate, charset);
+        }
+        return delegate;
+    }
+
+    @Override
+    public void chunkReceived(
+            final int input,
+            final char[] chars,
+            final int offset,
+            final int length,
+            final int bytes) {
+        if (INPUT_LOG.isLoggable(Level.FINE)) {
+            final StringBuilder message = new StringBuilder("Received from input #")
+                    .append(input)
+                    .append(": ");
+            INPUT_LOG.fine(
+                    appendDebugString(message, CharBuffer.wrap(chars, offset, length))
+                            .toString());
+        }
+        if (delegate != null) {
+            delegate.chunkReceived(input, chars, offset, length, bytes);
+        }
+    }
+
+    @Override
+    public Object filterStarted(final int input, final int length) {
+        if (INPUT_LOG.isLoggable(Level.FINE)) {
+            INPUT_LOG.fine("Filtering " + length + " chars in input #" + input);
+        }
+        return delegate != null ? delegate.filterStarted(input, length) : null;
+    }
+
+    @Override
+    public void filterCompleted(final Object context, final int length) {
+        if (INPUT_LOG.isLoggable(Level.FINE)) {
+            INPUT_LOG.fine(
+                    length == -1
+                            ? "Filter discarded the chars"
+                            : "Filter appended " + length + " chars");
+        }
+        if (delegate != null) {
+            delegate.filterCompleted(context, length);
+        }
+    }
+
+    @Override
+    public Object expectStarted(final int input, final Matcher<?> matcher, final long timeoutMs) {
+        final Object context = delegate != null
+                ? delegate.expectStarted(input, matcher, timeoutMs)
+                : null;
+        if (!INPUT_LOG.isLoggable(Level.FINE)) {
+            return context;
+        }
+        INPUT_LOG.fine(
+                "Expect matcher '" + toDebugString(matcher) + "' with timeout " + timeoutMs
+                        + " (ms) in input #" + input);
+        return new Operation(context, matcher);
+    }
+
+    @Override
+    public void matcherEvaluated(
+            final Object context,
+            final Result result,
+            final int length,
+            final long nanos) {
+        if (context instanceof Operation && INPUT_LOG.isLoggable(Level.FINE)) {
+            INPUT_LOG.fine(
+                    "Matcher " + toDebugString(((Operation) context).matcher) + " result: "
+                            + toDebugString(result) + ". Buffer length: " + length
+                            + ". Operation time: " + ((Operation) context).getTime() + " ms");
+        }
+        if (delegate != null) {
+            delegate.matcherEvaluated(unwrap(context), result, length, nanos);
+        }
+    }
+
+    @Override
+    public void inputDropped(final Object context, final int length) {
+        if (INPUT_LOG.isLoggable(Level.FINE)) {
+            INPUT_LOG.fine("Input buffer overflow, dropping " + length + " chars");
+        }
+        if (delegate != null) {
+            delegate.inputDropped(unwrap(context), length);
+        }
+    }
+
+    @Override
+    public void inputIdle(final Object context, final boolean bufferFull) {
+        if (INPUT_LOG.isLoggable(Level.FINE)) {
+            INPUT_LOG.fine(bufferFull ? "Input buffer is full" : "No data available");
+        }
+        if (delegate != null) {
+            delegate.inputIdle(unwrap(context), bufferFull);
+        }
+    }
+
+    @Override
+    public void matchSucceeded(final Object context, final Result result) {
+        log(context, "succeeded", null);
+        if (delegate != null) {
+            delegate.matchSucceeded(unwrap(context), result);
+        }
+    }
+
+    @Override
+    public void timeout(final Object context, final Result result) {
+        log(context, "timed out", null);
+        if (delegate != null) {
+            delegate.timeout(unwrap(context), result);
+        }
+    }
+
+    @Override
+    public void eof(final Object context, final Result result) {
+        log(context, "reached the end of input", null);
+        if (delegate != null) {
+            delegate.eof(unwrap(context), result);
+        }
+    }
+
+    @Override
+    public void expectFailed(final Object context, final Throwable error) {
+        log(context, "failed", error);
+        if (delegate != null) {
+            delegate.expectFailed(unwrap(context), error);
+        }
+    }
+
+    @Override
+    public Object sendStarted(final byte[] bytes, final int offset, final int length) {
+        if (OUTPUT_LOG.isLoggable(Level.FINE)) {
+            OUTPUT_LOG.fine(
+                    appendDebugString(
+                            new StringBuilder("Writing bytes: "),
+                            new String(bytes, offset, length, charset)).toString());
+        }
+        return delegate != null ? delegate.sendStarted(bytes, offset, length) : null;
+    }
+
+    @Override
+    public void sendCompleted(final Object context) {
+        if (delegate != null) {
+            delegate.sendCompleted(context);
+        }
+    }
+
+    private static void log(final Object context, final String outcome, final Throwable error) {
+        if (context instanceof Operation && INPUT_LOG.isLoggable(Level.FINE)) {
+            INPUT_LOG.log(
+                    Level.FINE,
+                    "Matcher " + toDebugString(((Operation) context).matcher) + " " + outcome
+                            + ". Operation time: " + ((Operation) context).getTime() + " ms",
+                    error);
+        }
+    }
+
+    /**
+     * Returns the context of the delegate. The operations started while the logging was
+     * disabled use the context of the delegate directly.
+     */
+    private static Object unwrap(final Object context) {
+        return context instanceof Operation ? ((Operation) context).context : context;
+    }
+
+    /**
+     * The logged expect operation.
+     */
+    private static final class Operation {
+        private final Object context;
+        private final Matcher<?> matcher;
+        private final long startTime = System.currentTimeMillis();
+
+        Operation(final Object context, final Matcher<?> matcher) {
+            this.context = context;
+            this.matcher = matcher;
+        }
+
+        long getTime() {
+            return System.currentTimeMillis() - startTime;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Decides when the data received by an expect operation is enough to run the matcher again.
+ * The matcher runs when at least the minimum number of characters has been received, or a line
+ * break has been received if enabled, or the oldest data not seen by the matcher has been
+ * waiting for the maximum delay.
+ */
+final class MatchTrigger {
+    private final int minNewChars;
+    private final boolean onNewLine;
+    private final long maxDelayMs;
+
+    MatchTrigger(final int minNewChars, final boolean onNewLine, final long maxDelayMs) {
+        this.minNewChars = minNewChars;
+        this.onNewLine = onNewLine;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    boolean isOnNewLine() {
+        return onNewLine;
+    }
+
+    long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    /**
+     * Checks whether the matcher should run.
+     *
+     * @param newChars  the number of characters received since the matcher has run.
+     * @param newLine   whether the received characters contain a line break.
+     * @param waitingMs the time elapsed since the first of the characters has been received.
+     * @return {@code true} if the matcher should run.
+     */
+    boolean isTriggered(final int newChars, final boolean newLine, final long waitingMs) {
+        return newChars >= minNewChars || onNewLine && newLine || waitingMs >= maxDelayMs;
+    }
+
+    @Override
+    public String toString() {
+        return "MatchTrigger{minNewChars=" + minNewChars
+                + ", onNewLine=" + onNewLine
+                + ", maxDelayMs=" + maxDelayMs + '}';
+    }
+}
@@ -0,0 +1,100 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The metrics of a single input.
+ * <p/>
+ * Every counter is updated by one thread at a time: the received data by the thread reading
+ * the input, the rest by the thread performing the expect operations. The updates are
+ * therefore never contended, and the counters of many inputs are only summed when the
+ * aggregated metrics are read, see {@link CompositeMetrics}.
+ */
+final class MetricsCounters extends AbstractMetrics {
+    private final AtomicLongArray values = new AtomicLongArray(COUNT);
+
+    @Override
+    long get(final int index) {
+        return values.get(index);
+    }
+
+    /**
+     * Registers a chunk of data read from the input.
+     *
+     * @param bytes       the number of bytes.
+     * @param decodeNanos the time spent decoding the bytes.
+     */
+    void received(final int bytes, final long decodeNanos) {
+        values.addAndGet(BYTES_RECEIVED, bytes);
+        values.incrementAndGet(CHUNKS_RECEIVED);
+        values.addAndGet(DECODE_TIME, decodeNanos);
+    }
+
+    void filtered(final long nanos) {
+        values.addAndGet(FILTER_TIME, nanos);
+    }
+
+    void evaluated(final long nanos) {
+        values.incrementAndGet(MATCHER_EVALUATIONS);
+        values.addAndGet(MATCHER_TIME, nanos);
+    }
+
+    void expectCompleted(final long nanos) {
+        values.incrementAndGet(EXPECT_CALLS);
+        values.addAndGet(EXPECT_TIME, nanos);
+    }
+
+    void timeout() {
+        values.incrementAndGet(TIMEOUTS);
+    }
+
+    void eof() {
+        values.incrementAndGet(EOFS);
+    }
+
+    void bufferLength(final int length) {
+        if (length > values.get(BUFFER_HIGH_WATERMARK)) {
+            values.set(BUFFER_HIGH_WATERMARK, length);
+        }
+    }
+
+    /**
+     * Adds the values of other metrics to this one.
+     *
+     * @param other the metrics to add.
+     */
+    void add(final AbstractMetrics other) {
+        for (int i = 0; i < COUNT; i++) {
+            final long value = other.get(i);
+            if (i == BUFFER_HIGH_WATERMARK) {
+                // the concurrent updates of the global metrics may race
+                long current;
+                do {
+                    current = values.get(i);
+                } while (value > current && !values.compareAndSet(i, current, value));
+            } else {
+                values.addAndGet(i, value);
+            }
+        }
+    }
+}
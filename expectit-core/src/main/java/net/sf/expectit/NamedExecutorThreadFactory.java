@@ -30,6 +30,7 @@ import java.util.concurrent.ThreadFactory;
 final class NamedExecutorThreadFactory implements ThreadFactory {
     private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
     private final String prefix;
+    private final boolean daemon;
 
     /**
      * Constructor.
@@ -37,13 +38,27 @@ final class NamedExecutorThreadFactory implements ThreadFactory {
      * @param prefix the string to prepend to the default thread name.
      */
     NamedExecutorThreadFactory(String prefix) {
+        this(prefix, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param prefix the string to prepend to the default thread name.
+     * @param daemon whether the threads are daemons.
+     */
+    NamedExecutorThreadFactory(String prefix, boolean daemon) {
         this.prefix = prefix;
+        this.daemon = daemon;
     }
 
     @Override
     public Thread newThread(Runnable target) {
         Thread thread = defaultFactory.newThread(target);
         thread.setName(prefix + thread.getName());
+        if (daemon) {
+            thread.setDaemon(true);
+        }
         return thread;
     }
 }
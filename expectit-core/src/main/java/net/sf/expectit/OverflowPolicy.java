@@ -0,0 +1,48 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Defines what happens when the input buffer of an {@link Expect} instance reaches its maximum
+ * size set by {@link ExpectBuilder#withMaxBufferSize(int, OverflowPolicy)}.
+ */
+public enum OverflowPolicy {
+    /**
+     * Drops the oldest characters from the beginning of the buffer to make room for the new
+     * input. The number of the dropped characters is reported by
+     * {@link DroppedCharsAware#getDroppedChars()}.
+     */
+    DROP_OLDEST,
+    /**
+     * Fails the expect operation with an {@link ExpectIOException} as soon as the buffer
+     * exceeds the maximum size. The buffer content is passed to the exception and the buffer is
+     * cleared, so the subsequent operations start matching the new input.
+     */
+    FAIL_FAST,
+    /**
+     * Stops reading the input while the buffer is full. The expect operation which cannot
+     * match the full buffer returns the unsuccessful result immediately, and the unread data
+     * is kept in the transport until the buffer content is consumed by a successful match. The
+     * background thread blocks when the transport is full, so the producer of the input is
+     * eventually blocked as well.
+     */
+    BLOCK_READER
+}
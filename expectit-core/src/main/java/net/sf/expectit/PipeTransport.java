@@ -0,0 +1,217 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * An input transport based on a NIO pipe with the non-blocking source channel. The characters
+ * are passed through the pipe as UTF-16 code units, two bytes each.
+ * <p/>
+ * The source channel is registered with a selector on the first wait for the data. The selector
+ * is kept for the lifetime of the transport, so the expect operations don't create and destroy
+ * the underlying OS resources every time.
+ * <p/>
+ * The sink channel blocks when the pipe is full. When the free space is checked, which is done
+ * by the polling copier, the sink channel is switched to the non-blocking mode and the bytes
+ * the pipe doesn't take are kept until the next write or check.
+ */
+class PipeTransport implements InputTransport {
+    private static final int SINK_BUFFER_SIZE = 8192;
+
+    private final Pipe.SourceChannel source;
+    private final Pipe.SinkChannel sink;
+    private final Sink writer = new Sink();
+    private ByteBuffer readBuffer = ByteBuffer.allocate(0);
+    private Selector selector;
+    private boolean closed;
+    private volatile long charsWritten;
+    private volatile long charsRead;
+
+    PipeTransport(final Pipe pipe) throws IOException {
+        this.source = pipe.source();
+        this.sink = pipe.sink();
+        source.configureBlocking(false);
+    }
+
+    @Override
+    public Writer sink() {
+        return writer;
+    }
+
+    @Override
+    public boolean await(final long timeoutMs) throws IOException {
+        final Selector current = getSelector();
+        try {
+            int keys = timeoutMs == ExpectImpl.INFINITE_TIMEOUT
+                    ? current.select()
+                    : current.select(timeoutMs);
+            current.selectedKeys().clear();
+            return keys > 0;
+        } catch (ClosedSelectorException e) {
+            // the transport has been closed concurrently
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    public int read(final CharBuffer buffer) throws IOException {
+        final int maxBytes = buffer.remaining() * 2;
+        if (readBuffer.capacity() < maxBytes) {
+            // keeps a byte of the incomplete character left from the previous read
+            readBuffer.flip();
+            readBuffer = ByteBuffer.allocate(maxBytes).put(readBuffer);
+        }
+        readBuffer.limit(maxBytes);
+        final int bytesRead = source.read(readBuffer);
+        readBuffer.flip();
+        int len = 0;
+        while (readBuffer.remaining() >= 2) {
+            buffer.put(readBuffer.getChar());
+            len++;
+        }
+        readBuffer.compact();
+        charsRead += len;
+        return bytesRead == -1 && len == 0 ? -1 : len;
+    }
+
+    private synchronized Selector getSelector() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        if (selector == null) {
+            selector = Selector.open();
+            source.register(selector, SelectionKey.OP_READ);
+        }
+        return selector;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            if (selector != null) {
+                selector.close();
+            }
+        }
+        sink.close();
+        source.close();
+    }
+
+    /**
+     * Encodes the characters to the pipe sink channel.
+     */
+    private class Sink extends TransportSink {
+        private final ByteBuffer bytes = ByteBuffer.allocate(SINK_BUFFER_SIZE);
+        private ByteBuffer overflow = ByteBuffer.allocate(0);
+
+        @Override
+        public void write(final char[] chars, final int offset, final int length)
+                throws IOException {
+            synchronized (lock) {
+                if (sink.isBlocking()) {
+                    writeBlocking(chars, offset, length);
+                } else {
+                    writeNonBlocking(chars, offset, length);
+                }
+                charsWritten += length;
+            }
+        }
+
+        private void writeBlocking(final char[] chars, final int offset, final int length)
+                throws IOException {
+            final int end = offset + length;
+            int pos = offset;
+            while (pos < end) {
+                bytes.clear();
+                while (pos < end && bytes.hasRemaining()) {
+                    bytes.putChar(chars[pos++]);
+                }
+                bytes.flip();
+                while (bytes.hasRemaining()) {
+                    sink.write(bytes);
+                }
+            }
+        }
+
+        private void writeNonBlocking(final char[] chars, final int offset, final int length)
+                throws IOException {
+            final int size = overflow.remaining() + length * 2;
+            if (overflow.capacity() < size) {
+                overflow = ByteBuffer.allocate(size).put(overflow);
+            } else {
+                overflow.compact();
+            }
+            for (int i = offset; i < offset + length; i++) {
+                overflow.putChar(chars[i]);
+            }
+            overflow.flip();
+            sink.write(overflow);
+        }
+
+        /**
+         * Returns no limit once the bytes kept from the previous writes have been flushed to
+         * the pipe, since the bytes the pipe doesn't take are kept in memory.
+         */
+        @Override
+        int writable() throws IOException {
+            synchronized (lock) {
+                if (sink.isBlocking()) {
+                    sink.configureBlocking(false);
+                }
+                if (overflow.hasRemaining()) {
+                    sink.write(overflow);
+                }
+                return overflow.hasRemaining() ? 0 : Integer.MAX_VALUE;
+            }
+        }
+
+        @Override
+        boolean isEmpty() {
+            return charsWritten == charsRead;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (lock) {
+                if (overflow.hasRemaining()) {
+                    // waits until the kept bytes are read
+                    sink.configureBlocking(true);
+                    while (overflow.hasRemaining()) {
+                        sink.write(overflow);
+                    }
+                }
+            }
+            sink.close();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Copies all the input streams of an {@link Expect} instance in a single background thread.
+ * <p/>
+ * The streams are polled for the data which can be read without blocking as reported by
+ * {@link java.io.InputStream#available()}. When none of the streams has data, the thread
+ * sleeps for a delay which doubles after every idle round up to the maximum and is reset when
+ * the data arrives. Since {@code available()} doesn't report the end of a stream, the streams
+ * are read to their ends once the process producing them has exited. A stream which fails
+ * with an exception is considered ended.
+ * <p/>
+ * A stream is skipped while its transport can't take the data without blocking, so a stream
+ * which is never read by the expect operations doesn't stall the other streams.
+ */
+final class PollingCopier implements Callable<Object> {
+    private static final Logger LOG = Logger.getLogger(PollingCopier.class.getName());
+
+    /**
+     * The first delay after an idle round.
+     */
+    static final long MIN_DELAY_MS = 1;
+
+    private final int inputCount;
+    private final long maxDelayMs;
+    private final Process process;
+    private final List<InputStreamCopier> copiers = new ArrayList<InputStreamCopier>();
+    private final FutureTask<Object> task = new FutureTask<Object>(this);
+
+    /**
+     * Constructor.
+     *
+     * @param inputCount the number of the inputs to copy.
+     * @param maxDelayMs the maximum delay between the polling rounds.
+     * @param process    the process producing the inputs, or {@code null} if unknown.
+     */
+    PollingCopier(final int inputCount, final long maxDelayMs, final Process process) {
+        this.inputCount = inputCount;
+        this.maxDelayMs = maxDelayMs;
+        this.process = process;
+    }
+
+    /**
+     * Adds the copier of an input. The polling starts when the copiers of all the inputs have
+     * been added.
+     *
+     * @param copier   the copier.
+     * @param executor the executor running the polling thread.
+     * @return the future of the polling task shared by all the inputs.
+     */
+    synchronized Future<Object> add(
+            final InputStreamCopier copier,
+            final ExecutorService executor) {
+        copiers.add(copier);
+        if (copiers.size() == inputCount) {
+            executor.execute(task);
+        }
+        return task;
+    }
+
+    @Override
+    public Object call() throws Exception {
+        final List<InputStreamCopier> active;
+        synchronized (this) {
+            active = new ArrayList<InputStreamCopier>(copiers);
+        }
+        long delay = 0;
+        try {
+            while (!active.isEmpty()) {
+                if (copyAvailable(active)) {
+                    delay = 0;
+                } else if (process != null && hasExited(process) && copyToEnd(active)) {
+                    delay = 0;
+                } else {
+                    delay = delay == 0 ? MIN_DELAY_MS : Math.min(delay * 2, maxDelayMs);
+                    Thread.sleep(delay);
+                }
+            }
+        } finally {
+            for (InputStreamCopier copier : active) {
+                copier.closeOutput();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies the available data of every input.
+     *
+     * @return {@code true} if any data has been copied or any input has ended.
+     */
+    private static boolean copyAvailable(final List<InputStreamCopier> active)
+            throws IOException {
+        boolean progress = false;
+        for (Iterator<InputStreamCopier> i = active.iterator(); i.hasNext();) {
+            final InputStreamCopier copier = i.next();
+            int len;
+            try {
+                len = copier.copyAvailable();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Failed to read the input", e);
+                len = -1;
+            }
+            if (len == -1) {
+                i.remove();
+                copier.finish();
+            }
+            progress = progress || len != 0;
+        }
+        return progress;
+    }
+
+    /**
+     * Reads the inputs to their ends. An input whose transport is full is left until its data
+     * is consumed.
+     *
+     * @return {@code true} if any input has ended.
+     */
+    private static boolean copyToEnd(final List<InputStreamCopier> active) throws IOException {
+        LOG.fine("The process has exited, reading the inputs to their ends");
+        boolean progress = false;
+        for (Iterator<InputStreamCopier> i = active.iterator(); i.hasNext();) {
+            final InputStreamCopier copier = i.next();
+            boolean ended;
+            try {
+                ended = copier.copyToEnd();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Failed to read the input", e);
+                ended = true;
+            }
+            if (ended) {
+                i.remove();
+                copier.finish();
+                progress = true;
+            }
+        }
+        return progress;
+    }
+
+    private static boolean hasExited(final Process process) {
+        try {
+            process.exitValue();
+            return true;
+        } catch (IllegalThreadStateException e) {
+            return false;
+        }
+    }
+}
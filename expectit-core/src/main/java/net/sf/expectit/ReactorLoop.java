@@ -0,0 +1,294 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A thread of {@link ExpectReactor} which waits for the data of the registered channels and
+ * the scheduled times on a single selector, and calls the handlers.
+ * <p/>
+ * The tasks submitted from other threads and the handlers run in the loop thread, so the
+ * state accessed by them only needs to be published through {@link #execute(Runnable)}.
+ */
+final class ReactorLoop implements Runnable {
+    private static final Logger LOG = Logger.getLogger(ReactorLoop.class.getName());
+
+    private static final Comparator<Timer> TIMER_ORDER = new Comparator<Timer>() {
+        @Override
+        public int compare(final Timer o1, final Timer o2) {
+            return o1.time < o2.time ? -1 : o1.time == o2.time ? 0 : 1;
+        }
+    };
+
+    /**
+     * Receives the events of a registered channel.
+     */
+    interface Handler {
+        /**
+         * Called when the channel is ready for reading.
+         */
+        void ready();
+
+        /**
+         * Called when the time scheduled by {@link #schedule(Handler, long)} has come. The
+         * handler must ignore the calls for the times which it doesn't wait for anymore.
+         *
+         * @param time the scheduled time.
+         */
+        void timer(long time);
+
+        /**
+         * Called when the loop stops, or when a call of the handler has thrown an exception.
+         *
+         * @param e the exception to report to the waiting callers.
+         */
+        void closed(IOException e);
+    }
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<Timer>(16, TIMER_ORDER);
+    private int cancelledTimers;
+    private boolean terminated;
+    private volatile boolean closed;
+
+    ReactorLoop() throws IOException {
+        selector = Selector.open();
+    }
+
+    /**
+     * Submits a task to the loop thread.
+     *
+     * @param task the task.
+     * @return {@code false} if the loop has stopped and the task won't run.
+     */
+    boolean execute(final Runnable task) {
+        synchronized (tasks) {
+            if (terminated) {
+                return false;
+            }
+            tasks.add(task);
+        }
+        selector.wakeup();
+        return true;
+    }
+
+    /**
+     * Schedules the {@link Handler#timer(long)} call. Must be called in the loop thread.
+     *
+     * @param handler the handler.
+     * @param time    the time in milliseconds as returned by
+     *                {@link System#currentTimeMillis()}.
+     * @return the timer which can be cancelled by {@link #cancel(Timer)}.
+     */
+    Timer schedule(final Handler handler, final long time) {
+        final Timer timer = new Timer(handler, time);
+        timers.add(timer);
+        return timer;
+    }
+
+    /**
+     * Cancels the scheduled call which is not needed anymore. The cancelled timers are skipped
+     * when they come, and removed from the queue once they make up half of it, so the
+     * operations which complete before their timeouts don't fill the queue. Must be called in
+     * the loop thread.
+     *
+     * @param timer the timer returned by {@link #schedule(Handler, long)}.
+     */
+    void cancel(final Timer timer) {
+        if (timer.cancelled) {
+            return;
+        }
+        timer.cancelled = true;
+        cancelledTimers++;
+        if (cancelledTimers > timers.size() / 2) {
+            final List<Timer> active = new ArrayList<Timer>(timers.size() - cancelledTimers);
+            for (Timer t : timers) {
+                if (!t.cancelled) {
+                    active.add(t);
+                }
+            }
+            timers.clear();
+            timers.addAll(active);
+            cancelledTimers = 0;
+        }
+    }
+
+    /**
+     * Returns the number of the timers in the queue, including the cancelled ones which are
+     * not removed yet. Must be called in the loop thread.
+     */
+    int getQueuedTimers() {
+        return timers.size();
+    }
+
+    Selector getSelector() {
+        return selector;
+    }
+
+    void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                final Timer first = peekTimer();
+                if (first == null) {
+                    selector.select();
+                } else {
+                    final long timeout = first.time - System.currentTimeMillis();
+                    if (timeout > 0) {
+                        selector.select(timeout);
+                    } else {
+                        selector.selectNow();
+                    }
+                }
+                runTasks();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (key.isValid() && key.attachment() != null) {
+                        final Handler handler = (Handler) key.attachment();
+                        try {
+                            handler.ready();
+                        } catch (RuntimeException e) {
+                            failed(handler, e);
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+                runTimers();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Reactor loop failed", e);
+        } finally {
+            terminate();
+        }
+    }
+
+    private void runTasks() {
+        while (true) {
+            final Runnable task;
+            synchronized (tasks) {
+                task = tasks.poll();
+            }
+            if (task == null) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Reactor task failed", e);
+            }
+        }
+    }
+
+    private void runTimers() {
+        final long now = System.currentTimeMillis();
+        while (peekTimer() != null && timers.peek().time <= now) {
+            final Timer timer = timers.poll();
+            timer.cancelled = true;
+            try {
+                timer.handler.timer(timer.time);
+            } catch (RuntimeException e) {
+                failed(timer.handler, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the first timer which is not cancelled, removing the cancelled ones before it.
+     */
+    private Timer peekTimer() {
+        Timer first = timers.peek();
+        while (first != null && first.cancelled) {
+            timers.poll();
+            cancelledTimers--;
+            first = timers.peek();
+        }
+        return first;
+    }
+
+    /**
+     * Closes the handler which has thrown an exception, so only its own operation fails and
+     * the loop goes on with the other handlers.
+     */
+    private static void failed(final Handler handler, final RuntimeException e) {
+        LOG.log(Level.WARNING, "Reactor handler failed", e);
+        try {
+            handler.closed(new IOException("Reactor handler failed", e));
+        } catch (RuntimeException closeFailure) {
+            LOG.log(Level.WARNING, "Failed to close the reactor handler", closeFailure);
+        }
+    }
+
+    /**
+     * Notifies the handlers of the registered channels and runs the remaining tasks, which
+     * find the selector closed.
+     */
+    private void terminate() {
+        synchronized (tasks) {
+            terminated = true;
+        }
+        final List<Handler> handlers = new ArrayList<Handler>();
+        try {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() != null) {
+                    handlers.add((Handler) key.attachment());
+                }
+            }
+            selector.close();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to close the selector", e);
+        }
+        for (Handler handler : handlers) {
+            handler.closed(new ClosedChannelException());
+        }
+        runTasks();
+    }
+
+    /**
+     * A scheduled handler call.
+     */
+    static final class Timer {
+        private final Handler handler;
+        private final long time;
+        private boolean cancelled;
+
+        Timer(final Handler handler, final long time) {
+            this.handler = handler;
+            this.time = time;
+        }
+    }
+}
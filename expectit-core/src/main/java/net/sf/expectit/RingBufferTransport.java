@@ -0,0 +1,237 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An in-memory input transport based on a lock-free single-producer/single-consumer ring
+ * buffer.
+ * <p/>
+ * The producer and the consumer own their positions and publish them through volatile writes.
+ * A thread which has to wait for the other side advertises itself in a volatile field and parks,
+ * the other side unparks it after publishing its position. Writes are serialized by a lock to
+ * support several producers when the inputs are combined, the lock is uncontended otherwise.
+ */
+class RingBufferTransport implements InputTransport {
+    /**
+     * The largest power of two an int can hold, 2<sup>30</sup>.
+     */
+    static final int MAX_CAPACITY = Integer.highestOneBit(Integer.MAX_VALUE);
+
+    private final char[] buffer;
+    private final int mask;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Sink sink = new Sink();
+
+    private volatile long readPosition;
+    private volatile long writePosition;
+    private volatile boolean sinkClosed;
+    private volatile boolean closed;
+    private volatile Thread waitingReader;
+    private volatile Thread waitingWriter;
+
+    /**
+     * Creates a ring buffer transport.
+     *
+     * @param capacity the minimal capacity of the buffer in characters. Rounded up to the closest
+     *                 power of two.
+     * @throws IllegalArgumentException if {@code capacity} is <= 0 or greater than
+     *                                  {@link #MAX_CAPACITY}
+     */
+    RingBufferTransport(final int capacity) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity must be > 0 and <= " + MAX_CAPACITY);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        buffer = new char[size];
+        mask = size - 1;
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    @Override
+    public Writer sink() {
+        return sink;
+    }
+
+    @Override
+    public boolean await(final long timeoutMs) throws IOException {
+        if (isReadable()) {
+            return true;
+        }
+        final boolean isInfiniteTimeout = timeoutMs == ExpectImpl.INFINITE_TIMEOUT;
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        final Thread thread = Thread.currentThread();
+        waitingReader = thread;
+        try {
+            while (!isReadable()) {
+                if (thread.isInterrupted() || closed) {
+                    return false;
+                }
+                if (isInfiniteTimeout) {
+                    LockSupport.park(this);
+                } else {
+                    final long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, left);
+                }
+            }
+            return true;
+        } finally {
+            waitingReader = null;
+        }
+    }
+
+    private boolean isReadable() {
+        return sinkClosed || writePosition != readPosition;
+    }
+
+    @Override
+    public int read(final CharBuffer dst) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        // the flag must be read before the position to see all the data written before close
+        final boolean eof = sinkClosed;
+        final long read = readPosition;
+        final int available = (int) (writePosition - read);
+        if (available == 0) {
+            return eof ? -1 : 0;
+        }
+        final int len = Math.min(available, dst.remaining());
+        final int offset = (int) (read & mask);
+        final int first = Math.min(len, buffer.length - offset);
+        dst.put(buffer, offset, first);
+        if (len > first) {
+            dst.put(buffer, 0, len - first);
+        }
+        readPosition = read + len;
+        unpark(waitingWriter);
+        return len;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        sinkClosed = true;
+        unpark(waitingWriter);
+        unpark(waitingReader);
+    }
+
+    private void write(final char[] src, final int offset, final int length) throws IOException {
+        // not a monitor, so that a virtual thread waiting for free space doesn't pin its carrier
+        writeLock.lock();
+        try {
+            int pos = offset;
+            final int end = offset + length;
+            while (pos < end) {
+                if (sinkClosed) {
+                    throw new ClosedChannelException();
+                }
+                final long write = writePosition;
+                final int free = buffer.length - (int) (write - readPosition);
+                if (free == 0) {
+                    awaitFreeSpace();
+                    continue;
+                }
+                final int len = Math.min(free, end - pos);
+                final int index = (int) (write & mask);
+                final int first = Math.min(len, buffer.length - index);
+                System.arraycopy(src, pos, buffer, index, first);
+                if (len > first) {
+                    System.arraycopy(src, pos + first, buffer, 0, len - first);
+                }
+                pos += len;
+                writePosition = write + len;
+                unpark(waitingReader);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void awaitFreeSpace() throws IOException {
+        final Thread thread = Thread.currentThread();
+        waitingWriter = thread;
+        try {
+            while (writePosition - readPosition == buffer.length && !closed) {
+                if (thread.isInterrupted()) {
+                    throw new ClosedByInterruptException();
+                }
+                LockSupport.park(this);
+            }
+        } finally {
+            waitingWriter = null;
+        }
+    }
+
+    private static void unpark(final Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * The producer side of the transport.
+     */
+    private class Sink extends TransportSink {
+        @Override
+        public void write(final char[] chars, final int offset, final int length)
+                throws IOException {
+            RingBufferTransport.this.write(chars, offset, length);
+        }
+
+        @Override
+        int writable() {
+            return buffer.length - (int) (writePosition - readPosition);
+        }
+
+        @Override
+        boolean isEmpty() {
+            return writePosition == readPosition;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            sinkClosed = true;
+            unpark(waitingReader);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The executor running the background threads of the {@link Expect} instances which are built
+ * without an executor. It is created on first use and shared by all the instances in the
+ * process.
+ * <p/>
+ * Every background thread copies an input stream until the stream ends or the instance is
+ * closed, so the number of threads can't be limited without stalling the inputs. Instead, the
+ * idle threads are reused by the instances built later and terminated after
+ * {@link #KEEP_ALIVE_SECONDS}, so the short-lived sessions don't create a thread each. The
+ * threads are daemons, so the executor is never shut down. Each instance cancels its own
+ * tasks when it is closed.
+ */
+final class SharedExecutor {
+    /**
+     * The time an idle thread waits for a new task.
+     */
+    static final long KEEP_ALIVE_SECONDS = 60;
+
+    private SharedExecutor() {
+    }
+
+    static ExecutorService get() {
+        return Holder.EXECUTOR;
+    }
+
+    /**
+     * Creates the executor lazily.
+     */
+    private static final class Holder {
+        private static final ExecutorService EXECUTOR = new ThreadPoolExecutor(
+                0,
+                Integer.MAX_VALUE,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                new NamedExecutorThreadFactory("expect-", true));
+    }
+}
@@ -20,23 +20,27 @@ package net.sf.expectit;
  * #L%
  */
 
-import static net.sf.expectit.Utils.toDebugString;
-
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.channels.ClosedByInterruptException;
-import java.nio.channels.Pipe;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.expectit.filter.Filter;
+import net.sf.expectit.matcher.CharSequenceMatcher;
 import net.sf.expectit.matcher.Matcher;
+import net.sf.expectit.matcher.MatcherState;
+import net.sf.expectit.matcher.StatefulMatcher;
 
 /**
  * Represents a single inputs.
@@ -44,38 +48,69 @@ import net.sf.expectit.matcher.Matcher;
 class SingleInputExpect {
     private static final Logger LOG = Logger.getLogger(SingleInputExpect.class.getName());
 
-    public static final int BUFFER_SIZE = 1024;
+    /**
+     * The maximum number of characters read from the transport before running the matcher.
+     */
+    private static final int MAX_DRAIN_SIZE = 64 * 1024;
 
     private final InputStream input;
-    private final StringBuilder buffer;
+    private final InputBuffer buffer;
+    private final StringBuilder filterBuffer;
+    private final CharBuffer readBuffer;
     private final Charset charset;
     private final Appendable echoInput;
     private final Filter filter;
     private Future<Object> copierFuture;
-    private final Pipe.SourceChannel source;
-    private final Pipe.SinkChannel sink;
+    private boolean started;
+    private boolean endOfInput;
+    private final InputTransport transport;
     private final int bufferSize;
     private final boolean autoFlushEcho;
+    private final int maxBufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final FlowControl flowControl;
+    private final MatchTrigger matchTrigger;
+    private int reportedLength;
+    private ReactorLoop reactorLoop;
+    private PollingCopier pollingCopier;
+    // accessed in the reactor thread only
+    private ReactorHandler reactorHandler;
+    private IOException reactorFailure;
+    private final AtomicBoolean operationInProgress = new AtomicBoolean();
+    private InputMonitor monitor = new InputMonitor(0, new MetricsCounters(), null);
 
     protected SingleInputExpect(
-            final Pipe.SourceChannel source,
-            final Pipe.SinkChannel sink,
+            final InputTransport transport,
             final InputStream input,
             final Charset charset,
             final Appendable echoInput,
             final Filter filter,
             final int bufferSize,
-            final boolean autoFlushEcho) throws IOException {
+            final boolean autoFlushEcho,
+            final BufferLimit bufferLimit,
+            final FlowControl flowControl,
+            final MatchTrigger matchTrigger) throws IOException {
         this.input = input;
         this.charset = charset;
         this.echoInput = echoInput;
         this.filter = filter;
         this.bufferSize = bufferSize;
         this.autoFlushEcho = autoFlushEcho;
-        this.source = source;
-        this.sink = sink;
-        source.configureBlocking(false);
-        buffer = new StringBuilder();
+        this.transport = transport;
+        this.maxBufferSize = bufferLimit.getMaxSize();
+        this.overflowPolicy = bufferLimit.getPolicy();
+        this.flowControl = flowControl;
+        this.matchTrigger = matchTrigger;
+        this.readBuffer = CharBuffer.allocate(bufferSize);
+        if (filter != null) {
+            // the filters modify the buffer through the StringBuilder API
+            final StringBuilderInputBuffer builderBuffer = new StringBuilderInputBuffer();
+            filterBuffer = builderBuffer.getBuilder();
+            buffer = builderBuffer;
+        } else {
+            filterBuffer = null;
+            buffer = new ArrayInputBuffer();
+        }
     }
 
     public void start(ExecutorService executor) {
@@ -83,134 +118,756 @@ class SingleInputExpect {
             LOG.fine(
                     String.format(
                             "Starting expect thread: input=%s, charset=%s, echoInput=%s, "
-                                    + "filter=%s, bufferSize=%d",
+                                    + "filter=%s, bufferSize=%d, transport=%s",
                             input,
                             charset,
                             echoInput,
                             filter,
-                            bufferSize
+                            bufferSize,
+                            transport.getClass().getSimpleName()
                     )
             );
         }
-        copierFuture = executor.submit(
-                new InputStreamCopier(
-                        sink,
-                        input,
-                        bufferSize,
-                        echoInput,
-                        charset,
-                        autoFlushEcho));
+        started = true;
+        GlobalMetrics.opened(monitor.getMetrics());
+        if (reactorLoop != null) {
+            reactorLoop.execute(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            register(((ChannelTransport) transport).getChannel());
+                        }
+                    });
+            return;
+        }
+        if (input == null) {
+            // the transport reads the input directly
+            return;
+        }
+        final InputStreamCopier copier = new InputStreamCopier(
+                transport.sink(),
+                input,
+                bufferSize,
+                echoInput,
+                charset,
+                autoFlushEcho,
+                flowControl,
+                monitor);
+        copierFuture = pollingCopier != null
+                ? pollingCopier.add(copier, executor)
+                : executor.submit(copier);
     }
 
     public <R extends Result> R expect(long timeoutMs, Matcher<R> matcher) throws IOException {
-        if (copierFuture == null) {
+        if (!started) {
             throw new IllegalStateException("Not started");
         }
-
-        final long timeToStop = System.currentTimeMillis() + timeoutMs;
-        final boolean isInfiniteTimeout = timeoutMs == ExpectImpl.INFINITE_TIMEOUT;
-        long timeElapsed = timeoutMs;
-        ByteBuffer byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
-        Selector selector = Selector.open();
-
+        if (reactorLoop != null) {
+            return expectInReactor(timeoutMs, matcher);
+        }
+        final Operation<R> operation = new Operation<R>(timeoutMs, matcher);
         try {
-            source.register(selector, SelectionKey.OP_READ);
-            R result = matcher.matches(buffer.toString(), copierFuture.isDone());
-            if (LOG.isLoggable(Level.FINE)) {
-                LOG.fine(
-                        String.format(
-                                "Initial matcher %s result: %s",
-                                toDebugString(matcher),
-                                toDebugString(result)));
-            }
-            while (!(result.isSuccessful() || result.canStopMatching())
-                    && (isInfiniteTimeout || timeElapsed > 0)) {
-                int keys = isInfiniteTimeout ? selector.select() : selector.select(timeElapsed);
-                // if thread was interrupted the selector returns immediately
-                // and keep the thread status, so we need to check it
-                if (Thread.currentThread().isInterrupted()) {
-                    LOG.fine("Thread was interrupted");
-                    throw new ClosedByInterruptException();
+            while (!operation.isComplete()) {
+                boolean ready = false;
+                if (!operation.isBufferFull()) {
+                    final long wakeTime = operation.getWakeTime();
+                    ready = transport.await(
+                            wakeTime == Long.MAX_VALUE
+                                    ? ExpectImpl.INFINITE_TIMEOUT
+                                    : Math.max(1, wakeTime - System.currentTimeMillis()));
+                    // if thread was interrupted the transport returns immediately
+                    // and keep the thread status, so we need to check it
+                    if (Thread.currentThread().isInterrupted()) {
+                        LOG.fine("Thread was interrupted");
+                        throw new ClosedByInterruptException();
+                    }
                 }
+                operation.step(ready);
+            }
+        } catch (IOException e) {
+            operation.failed(e);
+            throw e;
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+        return operation.finish();
+    }
 
-                if (!isInfiniteTimeout) {
-                    timeElapsed = timeToStop - System.currentTimeMillis();
-                }
+    /**
+     * Starts an expect operation which is performed by the reactor thread and reports the
+     * outcome to the callback without blocking the calling thread.
+     */
+    <R extends Result> void expectAsync(
+            final long timeoutMs,
+            final Matcher<R> matcher,
+            final ExpectCallback<R> callback) {
+        if (!started) {
+            throw new IllegalStateException("Not started");
+        }
+        if (reactorLoop == null) {
+            throw new IllegalStateException("The input is not attached to a reactor");
+        }
+        if (!operationInProgress.compareAndSet(false, true)) {
+            throw new IllegalStateException("Another expect operation is in progress");
+        }
+        final Operation<R> operation;
+        try {
+            operation = new Operation<R>(timeoutMs, matcher);
+        } catch (RuntimeException e) {
+            operationInProgress.set(false);
+            throw e;
+        }
+        operation.callback = callback;
+        if (operation.isComplete()) {
+            operation.signal(null);
+        } else if (!reactorLoop.execute(new Activation(operation))) {
+            operation.signal(new ClosedChannelException());
+        }
+    }
 
-                if (keys == 0) {
-                    LOG.fine("Selector returns 0 key");
-                    continue;
+    /**
+     * Passes the operation to the reactor thread and waits until it completes.
+     */
+    private <R extends Result> R expectInReactor(final long timeoutMs, final Matcher<R> matcher)
+            throws IOException {
+        if (!operationInProgress.compareAndSet(false, true)) {
+            throw new IllegalStateException("Another expect operation is in progress");
+        }
+        try {
+            return awaitInReactor(new Operation<R>(timeoutMs, matcher));
+        } finally {
+            operationInProgress.set(false);
+        }
+    }
+
+    private <R extends Result> R awaitInReactor(final Operation<R> operation)
+            throws IOException {
+        if (operation.isComplete()) {
+            return operation.finish();
+        }
+        if (!reactorLoop.execute(new Activation(operation))) {
+            final ClosedChannelException e = new ClosedChannelException();
+            operation.failed(e);
+            throw e;
+        }
+        try {
+            operation.completion.await();
+        } catch (InterruptedException e) {
+            LOG.fine("Thread was interrupted");
+            reactorLoop.execute(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            if (reactorHandler != null) {
+                                reactorHandler.cancel(operation);
+                            }
+                        }
+                    });
+            // the reactor thread must leave the buffer before it can be used again
+            while (operation.completion.getCount() > 0) {
+                try {
+                    operation.completion.await();
+                } catch (InterruptedException ignore) {
+                    LOG.fine("Waiting for the operation to be cancelled");
                 }
+            }
+            Thread.currentThread().interrupt();
+            final ClosedByInterruptException error = new ClosedByInterruptException();
+            operation.failed(error);
+            throw error;
+        }
+        return operation.finish();
+    }
 
-                selector.selectedKeys().clear();
-                int len = source.read(byteBuffer);
+    /**
+     * Registers the input channel in the reactor thread.
+     */
+    private void register(final SelectableChannel channel) {
+        try {
+            final SelectionKey key = channel.register(reactorLoop.getSelector(), 0);
+            reactorHandler = new ReactorHandler(key);
+            key.attach(reactorHandler);
+        } catch (IOException e) {
+            reactorFailure = e;
+        } catch (ClosedSelectorException e) {
+            // the reactor has been closed
+            reactorFailure = new ClosedChannelException();
+        }
+    }
 
-                if (len > 0) {
-                    String string = new String(byteBuffer.array(), 0, len, charset);
-                    processString(string);
-                    byteBuffer.clear();
-                }
+    /**
+     * Checks whether the input has been read to its end, or the background thread copying it
+     * has finished. The background thread may copy several inputs, so the end of the input is
+     * checked first.
+     */
+    private boolean isInputDone() {
+        return endOfInput || copierFuture != null && copierFuture.isDone();
+    }
 
-                final boolean isEof = len == -1;
-                result = matcher.matches(buffer.toString(), isEof);
-                if (LOG.isLoggable(Level.FINE)) {
-                    LOG.fine(
-                            String.format(
-                                    "Matcher %s result: %s. Operation time: %d ms",
-                                    toDebugString(matcher),
-                                    toDebugString(result),
-                                    timeoutMs - timeElapsed));
-                }
-                if (isEof) {
+    /**
+     * Reads the data available in the transport without blocking. The reading stops when the
+     * transport has no more data, or the buffer is full, or {@link #MAX_DRAIN_SIZE} characters
+     * have been read, so the matcher runs even if the data arrives faster than it is read.
+     *
+     * @return the number of characters read, or {@code -1} if the input reached its end.
+     */
+    private int readAvailable() throws IOException {
+        int total = 0;
+        while (total < MAX_DRAIN_SIZE) {
+            readBuffer.clear();
+            if (overflowPolicy == OverflowPolicy.BLOCK_READER) {
+                final int free = maxBufferSize - buffer.length();
+                if (free == 0) {
                     break;
                 }
+                readBuffer.limit(Math.min(readBuffer.capacity(), free));
             }
-            if (result.isSuccessful()) {
-                buffer.delete(0, result.end());
-            } else if (copierFuture.isDone() && buffer.length() == 0) {
-                throw new EOFException("Input closed");
+            final int requested = readBuffer.remaining();
+            final int len = transport.read(readBuffer);
+            if (len == -1) {
+                return total == 0 ? -1 : total;
+            }
+            if (len > 0) {
+                processChars(readBuffer.array(), len);
+                updateFlowControl(len);
+                total += len;
+            }
+            if (len < requested) {
+                break;
             }
-            return result;
-        } finally {
-            selector.close();
         }
+        return total;
     }
 
-    private void processString(String string) throws IOException {
-        if (LOG.isLoggable(Level.FINE)) {
-            LOG.fine("Processing string: " + toDebugString(string));
+    private boolean containsNewLine(final int from) {
+        for (int i = from; i < buffer.length(); i++) {
+            if (buffer.charAt(i) == '\n') {
+                return true;
+            }
         }
+        return false;
+    }
+
+    /**
+     * Handles the buffer exceeding its maximum size according to the overflow policy.
+     *
+     * @return the number of characters dropped from the beginning of the buffer.
+     */
+    private int dropOverflow(final InputView view) throws ExpectIOException {
+        final int excess = buffer.length() - maxBufferSize;
+        // the beginning of the buffer is about to change
+        view.detach();
+        if (overflowPolicy == OverflowPolicy.FAIL_FAST) {
+            final String content = buffer.toString();
+            buffer.consume(content.length());
+            updateFlowControl(0);
+            throw new ExpectIOException(
+                    "Input buffer overflow (max buffer size: " + maxBufferSize + " chars)",
+                    content,
+                    content.length());
+        }
+        buffer.consume(excess);
+        return excess;
+    }
+
+    /**
+     * Reports the characters which left the transport and the input buffer to the flow
+     * control.
+     *
+     * @param charsRead the number of characters read from the transport.
+     */
+    private void updateFlowControl(final int charsRead) {
+        if (flowControl == null) {
+            return;
+        }
+        final int length = buffer.length();
+        flowControl.consumed(charsRead - length + reportedLength);
+        reportedLength = length;
+    }
+
+    private <R extends Result> R matches(
+            final Object context,
+            final Matcher<R> matcher,
+            final MatcherState<R> state,
+            final InputView view,
+            final int stable,
+            final boolean isEof) {
+        final long start = System.nanoTime();
+        final R result = matches0(matcher, state, view, stable, isEof);
+        monitor.evaluated(context, result, view.length(), System.nanoTime() - start);
+        return result;
+    }
+
+    private static <R extends Result> R matches0(
+            final Matcher<R> matcher,
+            final MatcherState<R> state,
+            final InputView view,
+            final int stable,
+            final boolean isEof) {
+        if (state != null) {
+            return state.matches(view, stable, isEof);
+        }
+        if (matcher instanceof CharSequenceMatcher) {
+            return ((CharSequenceMatcher<R>) matcher).matches(view, isEof);
+        }
+        return matcher.matches(view.toString(), isEof);
+    }
+
+    private void processChars(final char[] chars, final int len) throws IOException {
         if (filter != null) {
-            if (LOG.isLoggable(Level.FINE)) {
-                LOG.fine("Before append filter: " + toDebugString(filter));
-            }
-            string = filter.beforeAppend(string, buffer);
+            processString(new String(chars, 0, len));
+            return;
+        }
+        buffer.append(chars, 0, len);
+    }
+
+    private void processString(String string) throws IOException {
+        final long start = System.nanoTime();
+        Object context = null;
+        if (filter != null) {
+            context = monitor.filterStarted(string.length());
+            string = filter.beforeAppend(string, filterBuffer);
         }
 
         if (string != null) {
             buffer.append(string);
             if (filter != null) {
-                LOG.fine("After append filter: " + toDebugString(filter));
-                filter.afterAppend(buffer);
+                filter.afterAppend(filterBuffer);
             }
         }
+        if (filter != null) {
+            monitor.filterCompleted(
+                    context,
+                    string != null ? string.length() : -1,
+                    System.nanoTime() - start);
+        }
     }
 
     public void stop() throws IOException {
         if (LOG.isLoggable(Level.FINE)) {
             LOG.fine("Releasing resources for input: " + this.input);
         }
+        GlobalMetrics.closed(monitor.getMetrics());
         if (copierFuture != null) {
             copierFuture.cancel(true);
         }
-        sink.close();
-        source.close();
+        if (reactorLoop != null) {
+            reactorLoop.execute(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            if (reactorHandler != null) {
+                                reactorHandler.closed(new ClosedChannelException());
+                            }
+                        }
+                    });
+        }
+        transport.close();
+        if (flowControl != null) {
+            flowControl.close();
+        }
         if (autoFlushEcho) {
             Utils.flushAppendable(echoInput);
         }
     }
 
-    StringBuilder getBuffer() {
+    InputBuffer getBuffer() {
         return buffer;
     }
+
+    /**
+     * Makes the input copied by the given background thread shared with the other inputs.
+     * Must be called before {@link #start(ExecutorService)}.
+     *
+     * @param copier the polling copier.
+     */
+    void setPollingCopier(final PollingCopier copier) {
+        this.pollingCopier = copier;
+    }
+
+    /**
+     * Sets the monitor shared with the transport reading the input. Must be called before
+     * {@link #start(ExecutorService)}.
+     *
+     * @param monitor the monitor.
+     */
+    void setMonitor(final InputMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    MetricsCounters getMetrics() {
+        return monitor.getMetrics();
+    }
+
+    ReactorLoop getReactorLoop() {
+        return reactorLoop;
+    }
+
+    /**
+     * Makes the expect operations wait for the input in the reactor thread instead of the
+     * calling thread. Must be called before {@link #start(ExecutorService)}.
+     *
+     * @param loop the reactor thread.
+     */
+    void setReactorLoop(final ReactorLoop loop) {
+        if (!(transport instanceof ChannelTransport)) {
+            throw new IllegalStateException("The reactor requires an input channel");
+        }
+        this.reactorLoop = loop;
+    }
+
+    /**
+     * The state of an expect operation. In the reactor mode, the operation is created in the
+     * calling thread, stepped in the reactor thread and finished in the calling thread again.
+     * The completion latch passes the state between the threads.
+     */
+    private final class Operation<R extends Result> {
+        private final Matcher<R> matcher;
+        private final MatcherState<R> state;
+        private final long startTime;
+        private final long startNanos;
+        private final Object context;
+        private final long timeToStop;
+        private final boolean isInfiniteTimeout;
+        private final CountDownLatch completion = new CountDownLatch(1);
+        private long timeElapsed;
+        private long droppedChars;
+        private InputView view;
+        private R result;
+        // the data received since the matcher has seen the buffer
+        private int newChars;
+        private boolean newLine;
+        private long pendingSince;
+        private boolean isShifted;
+        private boolean complete;
+        private Throwable failure;
+        private ExpectCallback<R> callback;
+
+        Operation(final long timeoutMs, final Matcher<R> matcher) {
+            this.matcher = matcher;
+            this.startTime = System.currentTimeMillis();
+            this.startNanos = System.nanoTime();
+            this.context = monitor.expectStarted(matcher, timeoutMs);
+            this.timeToStop = startTime + timeoutMs;
+            this.isInfiniteTimeout = timeoutMs == ExpectImpl.INFINITE_TIMEOUT;
+            this.timeElapsed = timeoutMs;
+            this.state = matcher instanceof StatefulMatcher
+                    ? ((StatefulMatcher<R>) matcher).createState()
+                    : null;
+            view = buffer.view();
+            result = matches(context, matcher, state, view, 0, isInputDone());
+            complete = result.isSuccessful() || result.canStopMatching()
+                    || !isInfiniteTimeout && timeElapsed <= 0;
+        }
+
+        boolean isComplete() {
+            return complete;
+        }
+
+        boolean isBufferFull() {
+            return overflowPolicy == OverflowPolicy.BLOCK_READER
+                    && buffer.length() >= maxBufferSize;
+        }
+
+        /**
+         * Returns the time when the operation times out or the received data must be passed
+         * to the matcher because of the match trigger delay, or {@link Long#MAX_VALUE} if the
+         * operation waits for the data only.
+         */
+        long getWakeTime() {
+            long wakeTime = isInfiniteTimeout ? Long.MAX_VALUE : timeToStop;
+            if (newChars > 0 && matchTrigger != null) {
+                wakeTime = Math.min(wakeTime, pendingSince + matchTrigger.getMaxDelayMs());
+            }
+            return wakeTime;
+        }
+
+        /**
+         * Reads the available input and runs the matcher if the data is enough to trigger it.
+         *
+         * @param ready whether the transport has signaled the data.
+         */
+        void step(final boolean ready) throws IOException {
+            final boolean isFull = isBufferFull();
+            boolean isEof = false;
+            if (isFull) {
+                // the matcher result can't change until the buffer is consumed
+                monitor.idle(context, true);
+            } else {
+                if (ready) {
+                    final int length = buffer.length();
+                    final int len = readAvailable();
+                    isEof = len == -1;
+                    endOfInput = endOfInput || isEof;
+                    if (len > 0) {
+                        if (newChars == 0) {
+                            pendingSince = System.currentTimeMillis();
+                        }
+                        newChars += len;
+                        newLine = newLine || matchTrigger != null && matchTrigger.isOnNewLine()
+                                && containsNewLine(length);
+                    }
+                    monitor.bufferLength(buffer.length());
+                    if (buffer.length() > maxBufferSize
+                            && overflowPolicy != OverflowPolicy.BLOCK_READER) {
+                        final int dropped = dropOverflow(view);
+                        monitor.dropped(context, dropped);
+                        droppedChars += dropped;
+                        updateFlowControl(0);
+                        isShifted = true;
+                    }
+                } else {
+                    monitor.idle(context, false);
+                }
+
+                if (!isInfiniteTimeout) {
+                    timeElapsed = timeToStop - System.currentTimeMillis();
+                }
+            }
+
+            final boolean isLast = isFull || !isInfiniteTimeout && timeElapsed <= 0;
+            if (isEof || newChars > 0 && (isLast || matchTrigger == null
+                    || matchTrigger.isTriggered(
+                            newChars,
+                            newLine,
+                            System.currentTimeMillis() - pendingSince))) {
+                evaluate(isEof);
+            }
+            complete = isEof || isLast || result.isSuccessful() || result.canStopMatching();
+        }
+
+        private void evaluate(final boolean isEof) {
+            // a filter may modify the entire buffer, otherwise the data is only appended
+            final int stable = filter == null && !isShifted ? view.length() : 0;
+            view = buffer.view();
+            view.setDroppedChars(droppedChars);
+            result = matches(context, matcher, state, view, stable, isEof);
+            newChars = 0;
+            newLine = false;
+            isShifted = false;
+        }
+
+        /**
+         * Completes the operation in the reactor thread.
+         *
+         * @param error the error to rethrow in the calling thread, or {@code null}.
+         */
+        void signal(final Throwable error) {
+            complete = true;
+            failure = error;
+            if (callback == null) {
+                completion.countDown();
+            } else {
+                deliver();
+            }
+        }
+
+        /**
+         * Finishes the asynchronous operation and calls the callback. The input is released
+         * first, so the callback can start the next operation. The result is copied from the
+         * buffer, since the callback may pass it to a thread which reads it while the next
+         * operation modifies the buffer.
+         */
+        private void deliver() {
+            view.copy();
+            R finished = null;
+            Throwable error = null;
+            try {
+                finished = finish();
+            } catch (Throwable e) {
+                error = e;
+            }
+            operationInProgress.set(false);
+            try {
+                if (error == null) {
+                    callback.completed(finished);
+                } else {
+                    callback.failed(error);
+                }
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Expect callback failed", e);
+            }
+        }
+
+        /**
+         * Reports the failure of the operation which is not finished by {@link #finish()}.
+         *
+         * @param error the exception thrown to the caller.
+         */
+        void failed(final Throwable error) {
+            monitor.expectFailed(context, error, System.nanoTime() - startNanos);
+        }
+
+        R finish() throws IOException {
+            final long nanos = System.nanoTime() - startNanos;
+            if (failure != null) {
+                monitor.expectFailed(context, failure, nanos);
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            // the result may keep referencing the view
+            view.detach();
+            if (result.isSuccessful()) {
+                monitor.matchSucceeded(context, result, nanos);
+                buffer.consume(result.end());
+                updateFlowControl(0);
+            } else if (isInputDone()) {
+                monitor.eof(context, result, nanos);
+                if (buffer.length() == 0) {
+                    throw new EOFException("Input closed");
+                }
+            } else {
+                monitor.timeout(context, result, nanos);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Passes an operation to the reactor thread.
+     */
+    private final class Activation implements Runnable {
+        private final Operation<?> operation;
+
+        Activation(final Operation<?> operation) {
+            this.operation = operation;
+        }
+
+        @Override
+        public void run() {
+            if (reactorHandler == null) {
+                operation.signal(reactorFailure);
+            } else {
+                reactorHandler.activate(operation);
+            }
+        }
+    }
+
+    /**
+     * Receives the events of the input channel in the reactor thread and steps the active
+     * operation. All the methods run in the reactor thread.
+     */
+    private final class ReactorHandler implements ReactorLoop.Handler {
+        private final SelectionKey key;
+        private IOException failure;
+        private Operation<?> active;
+        private long wakeTime = Long.MAX_VALUE;
+        private ReactorLoop.Timer timer;
+
+        ReactorHandler(final SelectionKey key) {
+            this.key = key;
+        }
+
+        void activate(final Operation<?> operation) {
+            if (failure != null) {
+                operation.signal(failure);
+                return;
+            }
+            if (!key.isValid()) {
+                operation.signal(new ClosedChannelException());
+                return;
+            }
+            active = operation;
+            // the data may have arrived before the operation started
+            step(true);
+        }
+
+        void cancel(final Operation<?> operation) {
+            if (active == operation) {
+                complete(new ClosedByInterruptException());
+            }
+        }
+
+        @Override
+        public void ready() {
+            if (active != null) {
+                step(true);
+            }
+        }
+
+        @Override
+        public void timer(final long time) {
+            if (active != null && time == wakeTime) {
+                timer = null;
+                wakeTime = Long.MAX_VALUE;
+                step(false);
+            }
+        }
+
+        @Override
+        public void closed(final IOException e) {
+            failure = e;
+            key.cancel();
+            if (active != null) {
+                complete(e);
+            }
+        }
+
+        private void step(final boolean ready) {
+            final Operation<?> operation = active;
+            try {
+                operation.step(ready);
+            } catch (Throwable e) {
+                complete(e);
+                return;
+            }
+            if (operation.isComplete()) {
+                complete(null);
+                return;
+            }
+            if (!key.isValid()) {
+                // the channel has been closed outside the reactor
+                complete(new ClosedChannelException());
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            final long time = operation.getWakeTime();
+            if (time < wakeTime || wakeTime <= System.currentTimeMillis()) {
+                cancelTimer();
+                wakeTime = time;
+                if (time != Long.MAX_VALUE) {
+                    timer = reactorLoop.schedule(this, time);
+                }
+            }
+            if (((ChannelTransport) transport).hasPendingInput()) {
+                // the read has stopped at the drain limit, let the other channels go first
+                reactorLoop.execute(
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                ready();
+                            }
+                        });
+            }
+        }
+
+        private void complete(final Throwable error) {
+            final Operation<?> operation = active;
+            active = null;
+            cancelTimer();
+            wakeTime = Long.MAX_VALUE;
+            if (key.isValid()) {
+                key.interestOps(0);
+            }
+            operation.signal(error);
+        }
+
+        /**
+         * Removes the timer of the operation which doesn't wait for it anymore.
+         */
+        private void cancelTimer() {
+            if (timer != null) {
+                reactorLoop.cancel(timer);
+                timer = null;
+            }
+        }
+    }
 }
@@ -0,0 +1,135 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The input buffer backed by a {@link StringBuilder}, which the input filters receive to
+ * modify the buffer contents.
+ */
+final class StringBuilderInputBuffer implements InputBuffer {
+    private final StringBuilder builder = new StringBuilder();
+
+    StringBuilder getBuilder() {
+        return builder;
+    }
+
+    @Override
+    public int length() {
+        return builder.length();
+    }
+
+    @Override
+    public char charAt(final int index) {
+        return builder.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        return builder.substring(start, end);
+    }
+
+    @Override
+    public String substring(final int start, final int end) {
+        return builder.substring(start, end);
+    }
+
+    @Override
+    public void append(final char[] chars, final int offset, final int len) {
+        builder.append(chars, offset, len);
+    }
+
+    @Override
+    public void append(final String string) {
+        builder.append(string);
+    }
+
+    @Override
+    public void consume(final int count) {
+        builder.delete(0, count);
+    }
+
+    @Override
+    public InputView view() {
+        return new BuilderView(builder);
+    }
+
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+
+    /**
+     * The view which reads the builder directly until it is detached. Detaching copies the
+     * content, the copy is made only once, and not at all if the view has already been
+     * converted to a string.
+     */
+    private static final class BuilderView extends InputView {
+        private final StringBuilder builder;
+        private final int length;
+        private String string;
+
+        BuilderView(final StringBuilder builder) {
+            this.builder = builder;
+            this.length = builder.length();
+        }
+
+        @Override
+        void detach() {
+            toString();
+        }
+
+        @Override
+        void copy() {
+            toString();
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index >= length) {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+            return string != null ? string.charAt(index) : builder.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            if (end > length) {
+                throw new IndexOutOfBoundsException(String.valueOf(end));
+            }
+            return string != null
+                    ? string.substring(start, end)
+                    : builder.substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            if (string == null) {
+                string = builder.substring(0, length);
+            }
+            return string;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The writer of an input transport which reports how many characters it accepts without
+ * blocking. Used by the polling copier to skip the inputs nobody reads, so that a full
+ * transport doesn't stall the other inputs copied by the same thread.
+ */
+abstract class TransportSink extends Writer {
+    /**
+     * Returns the number of characters which can be written without blocking, assuming that
+     * there is no other concurrent writer.
+     *
+     * @return the number of characters, never negative.
+     * @throws IOException if an I/O error occurs.
+     */
+    abstract int writable() throws IOException;
+
+    /**
+     * Checks whether all the characters written have been read.
+     *
+     * @return {@code true} if the transport is empty.
+     */
+    abstract boolean isEmpty();
+}
@@ -22,6 +22,8 @@ package net.sf.expectit;
 
 import java.io.Flushable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 
 /**
@@ -45,9 +47,20 @@ final class Utils {
         if (string == null) {
             return "null";
         }
-        final StringBuilder builder = new StringBuilder(string.length());
-        for (int i = 0; i < string.length(); i++) {
-            final char c = string.charAt(i);
+        return appendDebugString(new StringBuilder(string.length()), string).toString();
+    }
+
+    /**
+     * Appends the characters to the builder escaping the line breaks. The characters beyond
+     * the {@link #MAX_STRING_LENGTH} are replaced by their count.
+     *
+     * @param builder the builder.
+     * @param chars   the characters.
+     * @return the builder.
+     */
+    static StringBuilder appendDebugString(final StringBuilder builder, final CharSequence chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            final char c = chars.charAt(i);
             switch (c) {
                 case '\n': builder.append("\\n"); break;
                 case '\r': builder.append("\\r"); break;
@@ -56,18 +69,46 @@ final class Utils {
             }
             if (i > MAX_STRING_LENGTH) {
                 builder.append(" ... (");
-                builder.append(string.length() - i);
+                builder.append(chars.length() - i);
                 builder.append(" char more)");
                 break;
             }
         }
-        return builder.toString();
+        return builder;
     }
 
     static String toDebugString(final Object object) {
         return toDebugString(String.valueOf(object));
     }
 
+    /**
+     * Prints the received input to the echo. If the charset is not set and the echo is an
+     * output stream, the bytes are printed as they are, otherwise the characters are.
+     */
+    static void printEcho(
+            final Appendable echo,
+            final Charset charset,
+            final boolean autoFlushEcho,
+            final CharBuffer chars,
+            final byte[] bytes,
+            final int offset,
+            final int length) throws IOException {
+        if (charset == null && echo instanceof OutputStream) {
+            if (length == 0) {
+                return;
+            }
+            ((OutputStream) echo).write(bytes, offset, length);
+        } else {
+            if (!chars.hasRemaining()) {
+                return;
+            }
+            echo.append(chars.toString());
+        }
+        if (autoFlushEcho) {
+            flushAppendable(echo);
+        }
+    }
+
     static void flushAppendable(final Appendable appendable) throws IOException {
         if (appendable instanceof Flushable) {
             ((Flushable) appendable).flush();
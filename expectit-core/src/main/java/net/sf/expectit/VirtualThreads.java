@@ -0,0 +1,87 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads on Java 21 and later through reflection, since the library is
+ * compiled for older Java versions.
+ * <p/>
+ * A single executor starting a new virtual thread per task is shared by all the
+ * {@link Expect} instances. It is never shut down, as it doesn't keep any threads when the
+ * tasks are finished.
+ */
+final class VirtualThreads {
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Checks whether the runtime supports virtual threads.
+     */
+    static boolean isSupported() {
+        return EXECUTOR != null;
+    }
+
+    /**
+     * Returns the shared executor.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not supported.
+     */
+    static ExecutorService getExecutor() {
+        if (EXECUTOR == null) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads require Java 21 or later, the runtime version is "
+                            + System.getProperty("java.version"));
+        }
+        return EXECUTOR;
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, "expect-virtual-", 0L);
+            final ThreadFactory factory =
+                    (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            final Method newExecutor = Executors.class.getMethod(
+                    "newThreadPerTaskExecutor",
+                    ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // preview features disabled on Java 19 and 20
+            return null;
+        }
+    }
+}
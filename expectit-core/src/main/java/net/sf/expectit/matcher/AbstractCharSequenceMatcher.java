@@ -0,0 +1,36 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import net.sf.expectit.Result;
+
+/**
+ * A base class for the character sequence matchers which delegates the string matching to the
+ * sequence matching.
+ *
+ * @param <R> the result type
+ */
+abstract class AbstractCharSequenceMatcher<R extends Result> implements CharSequenceMatcher<R> {
+    @Override
+    public final R matches(final String input, final boolean isEof) {
+        return matches((CharSequence) input, isEof);
+    }
+}
@@ -0,0 +1,158 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * An Aho-Corasick automaton which finds the occurrences of several strings in a single pass
+ * over the input.
+ * <p/>
+ * The states are numbered from {@code 0}, which is the initial state. The transitions of every
+ * state are kept in sorted arrays and looked up by binary search, the failure transitions are
+ * followed until a state with a matching transition is found.
+ */
+final class AhoCorasick {
+    private static final int[] NONE = new int[0];
+
+    private final int[] lengths;
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] failures;
+    private final int[][] outputs;
+
+    /**
+     * Builds the automaton.
+     *
+     * @param strings the strings to search for, not {@code null} and not empty
+     */
+    AhoCorasick(final String[] strings) {
+        lengths = new int[strings.length];
+        final List<Map<Character, Integer>> trie = new ArrayList<Map<Character, Integer>>();
+        final List<List<Integer>> ends = new ArrayList<List<Integer>>();
+        trie.add(new HashMap<Character, Integer>());
+        ends.add(new ArrayList<Integer>());
+        for (int i = 0; i < strings.length; i++) {
+            final String string = strings[i];
+            lengths[i] = string.length();
+            int state = 0;
+            for (int j = 0; j < string.length(); j++) {
+                final Character c = string.charAt(j);
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new HashMap<Character, Integer>());
+                    ends.add(new ArrayList<Integer>());
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            ends.get(state).add(i);
+        }
+
+        final int size = trie.size();
+        keys = new char[size][];
+        targets = new int[size][];
+        for (int state = 0; state < size; state++) {
+            final Map<Character, Integer> transitions = trie.get(state);
+            final char[] chars = new char[transitions.size()];
+            int k = 0;
+            for (Character c : transitions.keySet()) {
+                chars[k++] = c;
+            }
+            Arrays.sort(chars);
+            final int[] next = new int[chars.length];
+            for (k = 0; k < chars.length; k++) {
+                next[k] = transitions.get(chars[k]);
+            }
+            keys[state] = chars;
+            targets[state] = next;
+        }
+
+        // breadth first traversal to compute the failure transitions and to merge the outputs
+        // of the longest proper suffixes
+        failures = new int[size];
+        outputs = new int[size][];
+        outputs[0] = toArray(ends.get(0), NONE);
+        final Queue<Integer> queue = new LinkedList<Integer>();
+        for (int child : targets[0]) {
+            failures[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            outputs[state] = toArray(ends.get(state), outputs[failures[state]]);
+            for (int k = 0; k < keys[state].length; k++) {
+                final int child = targets[state][k];
+                failures[child] = next(failures[state], keys[state][k]);
+                queue.add(child);
+            }
+        }
+    }
+
+    private static int[] toArray(final List<Integer> own, final int[] inherited) {
+        if (own.isEmpty()) {
+            return inherited;
+        }
+        final int[] result = Arrays.copyOf(inherited, inherited.length + own.size());
+        for (int i = 0; i < own.size(); i++) {
+            result[inherited.length + i] = own.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the state after consuming the given character.
+     */
+    int next(final int state, final char c) {
+        int current = state;
+        while (true) {
+            final int k = Arrays.binarySearch(keys[current], c);
+            if (k >= 0) {
+                return targets[current][k];
+            }
+            if (current == 0) {
+                return 0;
+            }
+            current = failures[current];
+        }
+    }
+
+    /**
+     * Returns the indexes of the strings which end at the given state.
+     */
+    int[] outputs(final int state) {
+        return outputs[state];
+    }
+
+    /**
+     * Returns the length of the string with the given index.
+     */
+    int length(final int index) {
+        return lengths[index];
+    }
+}
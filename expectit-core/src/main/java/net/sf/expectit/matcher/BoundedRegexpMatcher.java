@@ -0,0 +1,129 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+import net.sf.expectit.Result;
+
+/**
+ * A regular expression matcher for the patterns whose matches are no longer than the given
+ * number of characters. When used as a stateful matcher, it searches only the new data and the
+ * preceding {@code maxMatchLength} characters since a match can't start earlier. A match found
+ * by the previous attempt is kept once the {@code maxMatchLength} characters from its start are
+ * unchanged, otherwise the search resumes from its start.
+ */
+class BoundedRegexpMatcher extends AbstractCharSequenceMatcher<Result>
+        implements StatefulMatcher<Result> {
+    private final Pattern pattern;
+    private final int maxMatchLength;
+
+    /**
+     * The constructor.
+     *
+     * @param pattern        the pattern
+     * @param maxMatchLength the maximum length of a match including the characters examined by
+     *                       the lookahead constructs
+     */
+    BoundedRegexpMatcher(final Pattern pattern, final int maxMatchLength) {
+        if (maxMatchLength <= 0) {
+            throw new IllegalArgumentException("maxMatchLength must be greater than zero");
+        }
+        this.pattern = pattern;
+        this.maxMatchLength = maxMatchLength;
+    }
+
+    @Override
+    public Result matches(final CharSequence input, final boolean isEof) {
+        return find(pattern.matcher(input), input, 0);
+    }
+
+    @Override
+    public MatcherState<Result> createState() {
+        return new MatcherState<Result>() {
+            private java.util.regex.Matcher matcher;
+            private MatchResult found;
+            private int foundScanned;
+            private int scanned;
+
+            @Override
+            public Result matches(
+                    final CharSequence input,
+                    final int stable,
+                    final boolean isEof) {
+                final int unchanged = Math.min(stable, scanned);
+                scanned = input.length();
+                if (found != null
+                        && found.start() + maxMatchLength <= Math.min(unchanged, foundScanned)) {
+                    // the match has examined the characters which haven't changed since
+                    return new RegexpResult(input, found);
+                }
+                int from = Math.max(0, unchanged - maxMatchLength);
+                if (found != null && found.start() < from) {
+                    // the match may depend on the data appended after it was found
+                    from = found.start();
+                }
+                if (matcher == null) {
+                    matcher = pattern.matcher(input);
+                } else {
+                    matcher.reset(input);
+                }
+                if (!search(matcher, input, from)) {
+                    found = null;
+                    return SimpleResult.failure(input, false);
+                }
+                // the matcher is reset by the next attempt
+                found = matcher.toMatchResult();
+                foundScanned = scanned;
+                return new RegexpResult(input, found);
+            }
+        };
+    }
+
+    /**
+     * Searches for the pattern in the given region of the input.
+     */
+    static Result find(
+            final java.util.regex.Matcher matcher,
+            final CharSequence input,
+            final int from) {
+        if (search(matcher, input, from)) {
+            return new RegexpResult(input, matcher);
+        }
+        return SimpleResult.failure(input, false);
+    }
+
+    private static boolean search(
+            final java.util.regex.Matcher matcher,
+            final CharSequence input,
+            final int from) {
+        // the region must not affect the boundaries and the lookbehind constructs
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+        matcher.region(from, input.length());
+        return matcher.find();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("regexp('%s', %d)", pattern, maxMatchLength);
+    }
+}
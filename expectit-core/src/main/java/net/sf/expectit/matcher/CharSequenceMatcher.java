@@ -0,0 +1,49 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import net.sf.expectit.Result;
+
+/**
+ * A matcher which examines the input buffer through a {@link CharSequence} view instead of a
+ * string copy of the buffer.
+ * <p/>
+ * The expect operations call {@link #matches(CharSequence, boolean)} for the matchers
+ * implementing this interface, so the buffer is not copied every time new data arrives.
+ * The {@link Matcher#matches(String, boolean)} method should be implemented by delegating to
+ * the {@code CharSequence} variant.
+ * <p/>
+ * The content of the input sequence does not change after the method is called, so the
+ * returning result may keep a reference to it and create the strings lazily. The input must
+ * not be modified by the matcher.
+ *
+ * @param <R> the result type
+ */
+public interface CharSequenceMatcher<R extends Result> extends Matcher<R> {
+    /**
+     * Matches the input character sequence.
+     *
+     * @param input the current state of the input buffer
+     * @param isEof indicates the input has reached the end, or closed.
+     * @return the match result
+     */
+    R matches(CharSequence input, boolean isEof);
+}
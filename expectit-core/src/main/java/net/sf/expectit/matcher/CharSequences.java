@@ -0,0 +1,152 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import net.sf.expectit.Result;
+
+/**
+ * Helper methods to work with the character sequences without converting them to strings.
+ */
+final class CharSequences {
+    private CharSequences() {
+    }
+
+    /**
+     * Calls the character sequence variant of the matcher if it is supported, otherwise
+     * matches the string representation of the input.
+     */
+    static <R extends Result> R matches(
+            final Matcher<R> matcher,
+            final CharSequence input,
+            final boolean isEof) {
+        if (matcher instanceof CharSequenceMatcher) {
+            return ((CharSequenceMatcher<R>) matcher).matches(input, isEof);
+        }
+        return matcher.matches(input.toString(), isEof);
+    }
+
+    /**
+     * Creates a matching state for the given matcher. If the matcher is not stateful, the state
+     * matches the entire input every time.
+     */
+    static <R extends Result> MatcherState<R> createState(final Matcher<R> matcher) {
+        if (matcher instanceof StatefulMatcher) {
+            return ((StatefulMatcher<R>) matcher).createState();
+        }
+        return new MatcherState<R>() {
+            @Override
+            public R matches(final CharSequence input, final int stable, final boolean isEof) {
+                return CharSequences.matches(matcher, input, isEof);
+            }
+        };
+    }
+
+    static int indexOf(final CharSequence input, final String string, final int from) {
+        if (input instanceof String) {
+            return ((String) input).indexOf(string, from);
+        }
+        final int length = string.length();
+        final int last = input.length() - length;
+        if (length == 0) {
+            return from <= input.length() ? from : -1;
+        }
+        final char first = string.charAt(0);
+        for (int i = from; i <= last; i++) {
+            if (input.charAt(i) == first && regionMatches(input, i, string)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static boolean startsWith(final CharSequence input, final String prefix) {
+        return input.length() >= prefix.length() && regionMatches(input, 0, prefix);
+    }
+
+    static boolean endsWith(final CharSequence input, final String suffix) {
+        final int offset = input.length() - suffix.length();
+        return offset >= 0 && regionMatches(input, offset, suffix);
+    }
+
+    private static boolean regionMatches(
+            final CharSequence input,
+            final int offset,
+            final String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (input.charAt(offset + i) != string.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a view of the input starting from the given position without copying the
+     * characters.
+     */
+    static CharSequence tail(final CharSequence input, final int offset) {
+        if (offset == 0) {
+            return input;
+        }
+        return new SubSequence(input, offset, input.length());
+    }
+
+    /**
+     * A read-only view of a part of a character sequence.
+     */
+    private static final class SubSequence implements CharSequence {
+        private final CharSequence sequence;
+        private final int start;
+        private final int end;
+
+        SubSequence(final CharSequence sequence, final int start, final int end) {
+            this.sequence = sequence;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+            return sequence.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int from, final int to) {
+            if (from < 0 || from > to || to > length()) {
+                throw new IndexOutOfBoundsException();
+            }
+            return new SubSequence(sequence, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return sequence.subSequence(start, end).toString();
+        }
+    }
+}
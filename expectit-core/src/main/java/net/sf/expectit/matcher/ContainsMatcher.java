@@ -0,0 +1,84 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.generateToString;
+import static net.sf.expectit.matcher.SimpleResult.failure;
+import static net.sf.expectit.matcher.SimpleResult.success;
+
+import net.sf.expectit.Result;
+
+/**
+ * A matcher which searches for a substring. When used as a stateful matcher it resumes the
+ * search from the end of the already examined input minus the length of the substring.
+ */
+class ContainsMatcher extends AbstractCharSequenceMatcher<Result>
+        implements StatefulMatcher<Result> {
+    private final String string;
+
+    ContainsMatcher(final String string) {
+        this.string = string;
+    }
+
+    String getString() {
+        return string;
+    }
+
+    @Override
+    public Result matches(final CharSequence input, final boolean isEof) {
+        return result(input, CharSequences.indexOf(input, string, 0));
+    }
+
+    @Override
+    public MatcherState<Result> createState() {
+        return new MatcherState<Result>() {
+            private int scanned;
+            private int found = -1;
+
+            @Override
+            public Result matches(
+                    final CharSequence input,
+                    final int stable,
+                    final boolean isEof) {
+                final int unchanged = Math.min(stable, scanned);
+                if (found == -1 || found + string.length() > unchanged) {
+                    // a match can't start at the positions examined in the previous attempt
+                    // unless it ends in the new data
+                    final int from = Math.max(0, unchanged - Math.max(string.length(), 1) + 1);
+                    found = CharSequences.indexOf(input, string, from);
+                }
+                scanned = input.length();
+                return result(input, found);
+            }
+        };
+    }
+
+    private Result result(final CharSequence input, final int pos) {
+        return pos != -1
+                ? success(input, pos, pos + string.length())
+                : failure(input, false);
+    }
+
+    @Override
+    public String toString() {
+        return generateToString("contains", string);
+    }
+}
@@ -0,0 +1,143 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.SimpleResult.failure;
+import static net.sf.expectit.matcher.SimpleResult.success;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.sf.expectit.Result;
+
+/**
+ * Evaluates several {@link Matchers#contains(String)} matchers in a single pass over the input
+ * using the Aho-Corasick automaton. The results are the same as if the matchers were evaluated
+ * one by one.
+ */
+final class LiteralGroup {
+    private static final int MIN_SIZE = 2;
+
+    private final int[] indexes;
+    private final boolean[] members;
+    private final AhoCorasick automaton;
+
+    private LiteralGroup(final int[] indexes, final String[] strings, final int size) {
+        this.indexes = indexes;
+        this.members = new boolean[size];
+        for (int index : indexes) {
+            members[index] = true;
+        }
+        this.automaton = new AhoCorasick(strings);
+    }
+
+    /**
+     * Creates a group of the substring matchers found among the given matchers.
+     *
+     * @return the group, or {@code null} if there are not enough substring matchers.
+     */
+    static LiteralGroup create(final Matcher<?>[] matchers) {
+        final List<Integer> indexes = new ArrayList<Integer>();
+        final List<String> strings = new ArrayList<String>();
+        for (int i = 0; i < matchers.length; i++) {
+            if (matchers[i] instanceof ContainsMatcher) {
+                final String string = ((ContainsMatcher) matchers[i]).getString();
+                // the empty and null strings keep their own behaviour
+                if (string != null && !string.isEmpty()) {
+                    indexes.add(i);
+                    strings.add(string);
+                }
+            }
+        }
+        if (indexes.size() < MIN_SIZE) {
+            return null;
+        }
+        final int[] array = new int[indexes.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = indexes.get(i);
+        }
+        return new LiteralGroup(
+                array,
+                strings.toArray(new String[strings.size()]),
+                matchers.length);
+    }
+
+    /**
+     * Checks whether the matcher with the given index belongs to the group.
+     */
+    boolean contains(final int index) {
+        return members[index];
+    }
+
+    State createState() {
+        return new State();
+    }
+
+    /**
+     * The position of the automaton in the input and the first occurrences found so far.
+     */
+    final class State {
+        private final int[] found = new int[indexes.length];
+        private int remaining;
+        private int node;
+        private int scanned;
+
+        State() {
+            reset();
+        }
+
+        private void reset() {
+            Arrays.fill(found, -1);
+            remaining = found.length;
+            node = 0;
+            scanned = 0;
+        }
+
+        /**
+         * Scans the new input and stores the results of the matchers of the group to the
+         * corresponding positions of the given array.
+         */
+        void matches(final CharSequence input, final int stable, final Result[] results) {
+            if (stable < scanned) {
+                reset();
+            }
+            final int length = input.length();
+            int pos = scanned;
+            while (remaining > 0 && pos < length) {
+                node = automaton.next(node, input.charAt(pos++));
+                for (int string : automaton.outputs(node)) {
+                    if (found[string] == -1) {
+                        // the first occurrence to end is also the first one to start
+                        found[string] = pos - automaton.length(string);
+                        remaining--;
+                    }
+                }
+            }
+            scanned = pos;
+            for (int i = 0; i < indexes.length; i++) {
+                final int start = found[i];
+                results[indexes[i]] = start != -1
+                        ? success(input, start, start + automaton.length(i))
+                        : failure(input, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import net.sf.expectit.Result;
+
+/**
+ * The state of a {@link StatefulMatcher} kept between the matching attempts of a single expect
+ * operation. The state remembers how much of the input has been examined, so the subsequent
+ * attempts only scan the newly arrived data.
+ *
+ * @param <R> the result type
+ */
+public interface MatcherState<R extends Result> {
+    /**
+     * Matches the input character sequence.
+     * <p/>
+     * The {@code stable} parameter is the length of the input prefix which has not changed since
+     * the previous call of this method. The value is never greater than the length of the input
+     * passed in the previous call. It is {@code 0} if the beginning of the input buffer may have
+     * been modified, for example by a filter.
+     *
+     * @param input  the current state of the input buffer
+     * @param stable the length of the unchanged input prefix
+     * @param isEof  indicates the input has reached the end, or closed.
+     * @return the match result
+     */
+    R matches(CharSequence input, int stable, boolean isEof);
+}
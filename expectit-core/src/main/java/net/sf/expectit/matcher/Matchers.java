@@ -24,7 +24,6 @@ import static net.sf.expectit.matcher.SimpleResult.failure;
 import static net.sf.expectit.matcher.SimpleResult.success;
 
 import java.util.Arrays;
-import java.util.List;
 import java.util.regex.Pattern;
 import net.sf.expectit.MultiResult;
 import net.sf.expectit.Result;
@@ -81,6 +80,23 @@ public final class Matchers {
         return new RegexpMatcher(pattern, false);
     }
 
+    /**
+     * Creates a matcher of {@code Pattern} that matches when examined input fully <b>matches</b>
+     * the given regular expression using the given engine. The result is the same as the
+     * {@link #matches(java.util.regex.Pattern)} result.
+     * <p/>
+     * The {@link RegexEngine#STREAMING} engine reports the failure which can't be changed by more
+     * input as the one which stops the expect operation.
+     *
+     * @param pattern the representation of a regular expression
+     * @param engine  the regular expression engine
+     * @return the match result
+     * @throws IllegalArgumentException if the pattern is not supported by the engine
+     */
+    public static Matcher<Result> matches(Pattern pattern, RegexEngine engine) {
+        return regexp(pattern, false, engine);
+    }
+
     /**
      * Creates a matcher of {@code String} that matches when examined input <b>contains</b> the
      * given regular
@@ -118,6 +134,133 @@ public final class Matchers {
         return new RegexpMatcher(pattern, true);
     }
 
+    /**
+     * Creates a matcher of {@code String} that matches when examined input <b>contains</b> the
+     * given regular expression using the given engine.
+     *
+     * @param pattern the string that represents regular expression
+     * @param engine  the regular expression engine
+     * @return the match result
+     * @throws IllegalArgumentException if the pattern is not supported by the engine
+     * @see #regexp(java.util.regex.Pattern, RegexEngine)
+     */
+    public static Matcher<Result> regexp(String pattern, RegexEngine engine) {
+        return regexp(Pattern.compile(pattern), engine);
+    }
+
+    /**
+     * Creates a matcher of {@code Pattern} that matches when examined input <b>contains</b> the
+     * given regular expression using the given engine. The result is the same as the
+     * {@link #regexp(java.util.regex.Pattern)} result.
+     * <p/>
+     * The {@link RegexEngine#STREAMING} engine examines only the data which has arrived since
+     * the previous matching attempt.
+     *
+     * @param pattern the representation of a regular expression
+     * @param engine  the regular expression engine
+     * @return the match result
+     * @throws IllegalArgumentException if the pattern is not supported by the engine
+     */
+    public static Matcher<Result> regexp(Pattern pattern, RegexEngine engine) {
+        return regexp(pattern, true, engine);
+    }
+
+    /**
+     * Creates a matcher of {@code String} that matches when examined input <b>contains</b> the
+     * given regular expression whose matches are not longer than the given number of
+     * characters.
+     *
+     * @param pattern        the string that represents regular expression
+     * @param maxMatchLength the maximum length of a match
+     * @return the match result
+     * @see #regexp(java.util.regex.Pattern, int)
+     */
+    public static Matcher<Result> regexp(String pattern, int maxMatchLength) {
+        return regexp(Pattern.compile(pattern), maxMatchLength);
+    }
+
+    /**
+     * Creates a matcher of {@code Pattern} that matches when examined input <b>contains</b> the
+     * given regular expression whose matches are not longer than the given number of
+     * characters, for example a shell prompt. The result is the same as the
+     * {@link #regexp(java.util.regex.Pattern)} result as long as the matches fit the given
+     * length.
+     * <p/>
+     * When new data arrives, the matcher searches only the new data and the preceding
+     * {@code maxMatchLength} characters instead of the entire input buffer. The length must
+     * include the characters examined by the lookahead constructs and the boundaries after the
+     * match.
+     *
+     * @param pattern        the representation of a regular expression
+     * @param maxMatchLength the maximum length of a match
+     * @return the match result
+     * @throws IllegalArgumentException if {@code maxMatchLength} is not positive
+     */
+    public static Matcher<Result> regexp(Pattern pattern, int maxMatchLength) {
+        return new BoundedRegexpMatcher(pattern, maxMatchLength);
+    }
+
+    /**
+     * Creates a matcher of {@code String} that matches when the given regular expression is
+     * found within the last {@code window} characters of the input.
+     *
+     * @param pattern the string that represents regular expression
+     * @param window  the number of the characters at the end of input to search
+     * @return the match result
+     * @see #promptRegexp(java.util.regex.Pattern, int)
+     */
+    public static Matcher<Result> promptRegexp(String pattern, int window) {
+        return promptRegexp(Pattern.compile(pattern), window);
+    }
+
+    /**
+     * Creates a matcher of {@code Pattern} that matches when the given regular expression is
+     * found within the last {@code window} characters of the input, for example a shell prompt
+     * at the end of a command output. Every matching attempt costs the same regardless of the
+     * amount of the preceding output.
+     * <p/>
+     * The boundaries and the lookbehind constructs see the input before the window, so
+     * {@code ^} matches only at the beginning of a line.
+     * <p/>
+     * If the match succeeded, the input buffer is updated: the input part from the beginning
+     * until the end position of the match is removed.
+     *
+     * @param pattern the representation of a regular expression
+     * @param window  the number of the characters at the end of input to search
+     * @return the match result
+     * @throws IllegalArgumentException if {@code window} is not positive
+     */
+    public static Matcher<Result> promptRegexp(final Pattern pattern, final int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be greater than zero");
+        }
+        return new AbstractCharSequenceMatcher<Result>() {
+            @Override
+            public Result matches(CharSequence input, boolean isEof) {
+                return BoundedRegexpMatcher.find(
+                        pattern.matcher(input),
+                        input,
+                        Math.max(0, input.length() - window));
+            }
+
+            @Override
+            public String toString() {
+                return String.format("promptRegexp('%s', %d)", pattern, window);
+            }
+        };
+    }
+
+    private static Matcher<Result> regexp(Pattern pattern, boolean useFind, RegexEngine engine) {
+        switch (engine) {
+            case JDK:
+                return new RegexpMatcher(pattern, useFind);
+            case STREAMING:
+                return new StreamingRegexpMatcher(pattern, useFind);
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+
     /**
      * Creates a matcher of {@code String} that matches when examined input contains the given
      * substring.
@@ -134,20 +277,7 @@ public final class Matchers {
      * @return the match result
      */
     public static Matcher<Result> contains(final String string) {
-        return new Matcher<Result>() {
-            @Override
-            public Result matches(String input, boolean isEof) {
-                int pos = input.indexOf(string);
-                return pos != -1
-                        ? success(input, input.substring(0, pos), string)
-                        : failure(input, false);
-            }
-
-            @Override
-            public String toString() {
-                return generateToString("contains", string);
-            }
-        };
+        return new ContainsMatcher(string);
     }
 
     /**
@@ -204,10 +334,12 @@ public final class Matchers {
      * @return the matcher
      */
     public static Matcher<Result> eof() {
-        return new Matcher<Result>() {
+        return new AbstractCharSequenceMatcher<Result>() {
             @Override
-            public Result matches(String input, boolean isEof) {
-                return isEof ? success(input, input, "") : failure(input, false);
+            public Result matches(CharSequence input, boolean isEof) {
+                return isEof
+                        ? success(input, input.length(), input.length())
+                        : failure(input, false);
             }
 
             @Override
@@ -246,42 +378,7 @@ public final class Matchers {
      */
     public static Matcher<MultiResult> sequence(final Matcher<?>... matchers) {
         checkNotEmpty(matchers);
-        return new Matcher<MultiResult>() {
-            @Override
-            public MultiResult matches(String input, boolean isEof) {
-                int matchCount = 0;
-                Result[] results = new Result[matchers.length];
-                Arrays.fill(results, failure(input, false));
-                int beginIndex = 0;
-                for (int i = 0; i < matchers.length; i++) {
-                    Result result = matchers[i].matches(input.substring(beginIndex), isEof);
-                    if (result.isSuccessful()) {
-                        beginIndex += result.end();
-                        results[i] = result;
-                        if (++matchCount == matchers.length) {
-                            String group = result.group();
-                            Result finalResult = new SimpleResult(
-                                    true,
-                                    input,
-                                    input.substring(0, beginIndex - group.length()),
-                                    group,
-                                    result.canStopMatching());
-                            return new MultiResultImpl(finalResult, Arrays.asList(results));
-                        }
-                    } else {
-                        break;
-                    }
-                }
-                final List<Result> resultList = Arrays.asList(results);
-                boolean canStopMatching = MultiResultImpl.canStopMatching(resultList);
-                return new MultiResultImpl(failure(input, canStopMatching), resultList);
-            }
-
-            @Override
-            public String toString() {
-                return String.format("sequence(%s)", MultiMatcher.matchersToString(matchers));
-            }
-        };
+        return new SequenceMatcher(matchers);
     }
 
     /**
@@ -294,10 +391,12 @@ public final class Matchers {
      * @return the result
      */
     public static Matcher<Result> anyString() {
-        return new Matcher<Result>() {
+        return new AbstractCharSequenceMatcher<Result>() {
             @Override
-            public Result matches(String input, boolean isEof) {
-                return input.length() > 0 ? success(input, "", input) : failure(input, false);
+            public Result matches(CharSequence input, boolean isEof) {
+                return input.length() > 0
+                        ? success(input, 0, input.length())
+                        : failure(input, false);
             }
 
             @Override
@@ -329,11 +428,11 @@ public final class Matchers {
      * @return the result.
      */
     public static Matcher<Result> exact(final String exact) {
-        return new Matcher<Result>() {
+        return new AbstractCharSequenceMatcher<Result>() {
             @Override
-            public Result matches(String input, boolean isEof) {
-                return exact.equals(input)
-                        ? success(input, "", input)
+            public Result matches(CharSequence input, boolean isEof) {
+                return exact.contentEquals(input)
+                        ? success(input, 0, input.length())
                         : failure(input, input.length() > exact.length());
             }
 
@@ -354,11 +453,11 @@ public final class Matchers {
      * @return the result.
      */
     public static Matcher<Result> startsWith(final String prefix) {
-        return new Matcher<Result>() {
+        return new AbstractCharSequenceMatcher<Result>() {
             @Override
-            public Result matches(String input, boolean isEof) {
-                return input.startsWith(prefix)
-                        ? success(input, "", prefix)
+            public Result matches(CharSequence input, boolean isEof) {
+                return CharSequences.startsWith(input, prefix)
+                        ? success(input, 0, prefix.length())
                         : failure(input, input.length() > prefix.length());
             }
 
@@ -369,4 +468,32 @@ public final class Matchers {
         };
     }
 
+    /**
+     * Creates a matcher that matches when the input buffer ends with the given string. Only the
+     * end of the input is examined regardless of its size.
+     * <p/>
+     * If the result is successful, the {@link net.sf.expectit.Result#getBefore()} returns the
+     * input preceding the given string, the {@link net.sf.expectit.Result#group()} returns the
+     * given string.
+     *
+     * @param suffix the suffix string to match.
+     * @return the result.
+     */
+    public static Matcher<Result> endsWith(final String suffix) {
+        return new AbstractCharSequenceMatcher<Result>() {
+            @Override
+            public Result matches(CharSequence input, boolean isEof) {
+                final int length = input.length();
+                return CharSequences.endsWith(input, suffix)
+                        ? success(input, length - suffix.length(), length)
+                        : failure(input, false);
+            }
+
+            @Override
+            public String toString() {
+                return generateToString("endsWith", suffix);
+            }
+        };
+    }
+
 }
@@ -21,6 +21,7 @@ package net.sf.expectit.matcher;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -32,28 +33,59 @@ import net.sf.expectit.Result;
  *
  * @author Alexey Gavrilov
  */
-class MultiMatcher implements Matcher<MultiResult> {
+class MultiMatcher extends AbstractCharSequenceMatcher<MultiResult>
+        implements StatefulMatcher<MultiResult> {
     private final Matcher<?>[] matchers;
     private final boolean allOperation;
+    private final LiteralGroup literals;
 
     public MultiMatcher(boolean allOperation, Matcher<?>... matchers) {
         this.matchers = matchers;
         this.allOperation = allOperation;
+        this.literals = LiteralGroup.create(matchers);
     }
 
     @Override
-    public MultiResult matches(String input, boolean isEof) {
-        List<Result> results = new ArrayList<Result>();
+    public MultiResult matches(CharSequence input, boolean isEof) {
+        return createState().matches(input, 0, isEof);
+    }
+
+    @Override
+    public MatcherState<MultiResult> createState() {
+        // the literal matchers are evaluated together by the group
+        final MatcherState<?>[] states = new MatcherState<?>[matchers.length];
+        for (int i = 0; i < matchers.length; i++) {
+            if (literals == null || !literals.contains(i)) {
+                states[i] = CharSequences.createState(matchers[i]);
+            }
+        }
+        final LiteralGroup.State literalState = literals == null ? null : literals.createState();
+        return new MatcherState<MultiResult>() {
+            @Override
+            public MultiResult matches(CharSequence input, int stable, boolean isEof) {
+                Result[] results = new Result[matchers.length];
+                if (literalState != null) {
+                    literalState.matches(input, stable, results);
+                }
+                for (int i = 0; i < states.length; i++) {
+                    if (states[i] != null) {
+                        results[i] = states[i].matches(input, stable, isEof);
+                    }
+                }
+                return MultiMatcher.this.matches(Arrays.asList(results));
+            }
+        };
+    }
+
+    private MultiResult matches(List<Result> results) {
         List<Result> successResults = new ArrayList<Result>();
         Result firstFailResult = null;
-        for (Matcher<?> matcher : matchers) {
-            Result result = matcher.matches(input, isEof);
+        for (Result result : results) {
             if (result.isSuccessful()) {
                 successResults.add(result);
             } else if (firstFailResult == null) {
                 firstFailResult = result;
             }
-            results.add(result);
         }
 
         Result delegate;
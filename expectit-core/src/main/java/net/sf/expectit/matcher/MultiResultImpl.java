@@ -22,6 +22,7 @@ package net.sf.expectit.matcher;
 
 import java.util.Collections;
 import java.util.List;
+import net.sf.expectit.DroppedCharsAware;
 import net.sf.expectit.MultiResult;
 import net.sf.expectit.Result;
 
@@ -30,7 +31,7 @@ import net.sf.expectit.Result;
  *
  * @author Alexey Gavrilov
  */
-class MultiResultImpl implements MultiResult {
+class MultiResultImpl implements MultiResult, DroppedCharsAware {
     private final List<Result> results;
     private final Result delegate;
     private final boolean canStopMatching;
@@ -61,6 +62,13 @@ class MultiResultImpl implements MultiResult {
         return canStopMatching;
     }
 
+    @Override
+    public long getDroppedChars() {
+        return delegate instanceof DroppedCharsAware
+                ? ((DroppedCharsAware) delegate).getDroppedChars()
+                : 0;
+    }
+
     @Override
     public int start() {
         return delegate.start();
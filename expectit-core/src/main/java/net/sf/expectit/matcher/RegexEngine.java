@@ -0,0 +1,52 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The regular expression engines available for the {@link Matchers#regexp(java.util.regex
+ * .Pattern, RegexEngine)} and {@link Matchers#matches(java.util.regex.Pattern, RegexEngine)}
+ * matchers.
+ */
+public enum RegexEngine {
+    /**
+     * The {@link java.util.regex} engine. The pattern is applied to the entire input buffer
+     * every time new data arrives.
+     */
+    JDK,
+
+    /**
+     * An automaton based engine which runs in linear time without backtracking. The engine
+     * keeps its state between the matching attempts and examines only the newly arrived data.
+     * When the input must match the pattern entirely, the matching stops as soon as the input
+     * can no longer match regardless of the data which arrives later.
+     * <p/>
+     * The engine supports a subset of the {@link java.util.regex.Pattern} syntax: characters,
+     * escapes, character classes without intersections, the {@code .} and the predefined
+     * classes, the capturing and non-capturing groups, the alternation, the greedy and
+     * reluctant quantifiers, the {@code ^ $ \b \B \A \z} boundaries and the {@code i m s d u}
+     * flags. Unlike {@link java.util.regex}, the {@code $} boundary without the multiline flag
+     * matches only at the end of input, the input is examined char by char rather than by code
+     * points, and the matches of the repeated constructs which can match the empty string, such
+     * as {@code (a*)*}, may differ. The unsupported constructs are reported by
+     * {@link IllegalArgumentException} when the matcher is created.
+     */
+    STREAMING
+}
@@ -31,7 +31,7 @@ import net.sf.expectit.Result;
  *
  * @author Alexey Gavrilov
  */
-class RegexpMatcher implements Matcher<Result> {
+class RegexpMatcher extends AbstractCharSequenceMatcher<Result> {
     private final Pattern pattern;
     private final boolean useFind;
 
@@ -49,7 +49,7 @@ class RegexpMatcher implements Matcher<Result> {
     }
 
     @Override
-    public Result matches(String input, boolean isEof) {
+    public Result matches(CharSequence input, boolean isEof) {
         java.util.regex.Matcher matcher = pattern.matcher(input);
         boolean result;
         if (useFind) {
@@ -58,7 +58,7 @@ class RegexpMatcher implements Matcher<Result> {
             result = matcher.matches();
         }
         if (result) {
-            return new RegexpResult(true, input, input.substring(0, matcher.start()), matcher);
+            return new RegexpResult(input, matcher);
         } else {
             return SimpleResult.failure(input, false);
         }
@@ -28,8 +28,14 @@ import java.util.regex.MatchResult;
 class RegexpResult extends SimpleResult {
     private final MatchResult delegate;
 
-    RegexpResult(boolean succeeded, String input, String before, MatchResult regexpResult) {
-        super(succeeded, input, before, null, false);
+    /**
+     * Creates a successful result. The groups are extracted from the input when requested.
+     *
+     * @param input        the input sequence, its content must not change
+     * @param regexpResult the regular expression match
+     */
+    RegexpResult(CharSequence input, MatchResult regexpResult) {
+        super(true, input, regexpResult.start(), regexpResult.end(), false);
         delegate = regexpResult;
     }
 
@@ -0,0 +1,116 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.SimpleResult.failure;
+
+import java.util.Arrays;
+import java.util.List;
+import net.sf.expectit.MultiResult;
+import net.sf.expectit.Result;
+
+/**
+ * A matcher which applies the given matchers one by one, every next matcher examines the input
+ * after the end of the previous match.
+ */
+class SequenceMatcher extends AbstractCharSequenceMatcher<MultiResult>
+        implements StatefulMatcher<MultiResult> {
+    private final Matcher<?>[] matchers;
+
+    SequenceMatcher(final Matcher<?>... matchers) {
+        this.matchers = matchers;
+    }
+
+    @Override
+    public MultiResult matches(final CharSequence input, final boolean isEof) {
+        return createState().matches(input, 0, isEof);
+    }
+
+    @Override
+    public MatcherState<MultiResult> createState() {
+        return new SequenceState();
+    }
+
+    /**
+     * Keeps the states of the matchers together with the input offsets they have been used
+     * with.
+     */
+    private class SequenceState implements MatcherState<MultiResult> {
+        private final MatcherState<?>[] states = new MatcherState<?>[matchers.length];
+        // -1 if the offset is unknown
+        private final int[] offsets = new int[matchers.length];
+
+        SequenceState() {
+            Arrays.fill(offsets, -1);
+        }
+
+        @Override
+        public MultiResult matches(
+                final CharSequence input,
+                final int stable,
+                final boolean isEof) {
+            int matchCount = 0;
+            Result[] results = new Result[matchers.length];
+            Arrays.fill(results, failure(input, false));
+            int beginIndex = 0;
+            int i = 0;
+            for (; i < matchers.length; i++) {
+                int childStable = Math.max(0, stable - beginIndex);
+                if (offsets[i] != beginIndex) {
+                    states[i] = CharSequences.createState(matchers[i]);
+                    offsets[i] = beginIndex;
+                    childStable = 0;
+                }
+                Result result = states[i].matches(
+                        CharSequences.tail(input, beginIndex),
+                        childStable,
+                        isEof);
+                if (result.isSuccessful()) {
+                    beginIndex += result.end();
+                    results[i] = result;
+                    if (++matchCount == matchers.length) {
+                        Result finalResult = new SimpleResult(
+                                true,
+                                input,
+                                beginIndex - result.end() + result.start(),
+                                beginIndex,
+                                result.canStopMatching());
+                        return new MultiResultImpl(finalResult, Arrays.asList(results));
+                    }
+                } else {
+                    break;
+                }
+            }
+            // the states which haven't seen the current input can't be resumed
+            for (i++; i < matchers.length; i++) {
+                offsets[i] = -1;
+            }
+            final List<Result> resultList = Arrays.asList(results);
+            boolean canStopMatching = MultiResultImpl.canStopMatching(resultList);
+            return new MultiResultImpl(failure(input, canStopMatching), resultList);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("sequence(%s)", MultiMatcher.matchersToString(matchers));
+    }
+}
@@ -20,17 +20,25 @@ package net.sf.expectit.matcher;
  * #L%
  */
 
+import net.sf.expectit.DroppedCharsAware;
+import net.sf.expectit.InputView;
 import net.sf.expectit.Result;
 
 /**
  * A result of string matching.
+ * <p/>
+ * The result can be created either from the strings before and of the match, or from the match
+ * positions in the input character sequence. In the latter case the strings are created only
+ * when they are requested.
  */
-public class SimpleResult implements Result {
+public class SimpleResult implements Result, DroppedCharsAware {
     private final boolean succeeded;
-    private final String before;
-    private final String group;
-    private final String input;
+    private final CharSequence input;
     private final boolean canStopMatching;
+    private final int start;
+    private final int end;
+    private String before;
+    private String group;
 
     /**
      * Creates an instance with the initial field values.
@@ -51,11 +59,36 @@ public class SimpleResult implements Result {
         this.before = before;
         this.group = group;
         this.canStopMatching = canStopMatching;
+        this.start = -1;
+        this.end = -1;
+    }
+
+    /**
+     * Creates an instance from the match positions. The strings before and of the match are
+     * extracted from the input when requested.
+     *
+     * @param succeeded       the success flag.
+     * @param input           the matcher`s input sequence, its content must not change.
+     * @param start           the start position of the match.
+     * @param end             the end position of the match.
+     * @param canStopMatching the flag indicating whether the matching can be stopped.
+     */
+    protected SimpleResult(
+            final boolean succeeded,
+            final CharSequence input,
+            final int start,
+            final int end,
+            final boolean canStopMatching) {
+        this.succeeded = succeeded;
+        this.input = input;
+        this.start = start;
+        this.end = end;
+        this.canStopMatching = canStopMatching;
     }
 
     @Override
     public String getInput() {
-        return input;
+        return input == null ? null : input.toString();
     }
 
     @Override
@@ -66,6 +99,9 @@ public class SimpleResult implements Result {
     @Override
     public String getBefore() {
         checkSucceeded();
+        if (before == null) {
+            before = input.subSequence(0, start).toString();
+        }
         return before;
     }
 
@@ -74,8 +110,17 @@ public class SimpleResult implements Result {
         return canStopMatching;
     }
 
+    @Override
+    public long getDroppedChars() {
+        return input instanceof InputView ? ((InputView) input).getDroppedChars() : 0;
+    }
+
     @Override
     public int start() {
+        if (start != -1) {
+            checkSucceeded();
+            return start;
+        }
         return getBefore().length();
     }
 
@@ -87,6 +132,10 @@ public class SimpleResult implements Result {
 
     @Override
     public int end() {
+        if (end != -1) {
+            checkSucceeded();
+            return end;
+        }
         return start() + group().length();
     }
 
@@ -99,6 +148,9 @@ public class SimpleResult implements Result {
     @Override
     public String group() {
         checkSucceeded();
+        if (group == null) {
+            group = input.subSequence(start, end).toString();
+        }
         return group;
     }
 
@@ -137,6 +189,19 @@ public class SimpleResult implements Result {
         return new SimpleResult(true, input, before, group, true);
     }
 
+    /**
+     * Creates an instance of a successful result type from the match positions. The strings
+     * before and of the match are created when requested.
+     * The {@link net.sf.expectit.Result#canStopMatching()} is always set to {@code true}.
+     * @param input the matcher`s input sequence, its content must not change.
+     * @param start the start position of the match.
+     * @param end the end position of the match.
+     * @return the result object.
+     */
+    public static Result success(CharSequence input, int start, int end) {
+        return new SimpleResult(true, input, start, end, true);
+    }
+
     /**
      * Creates an instance of an unsuccessful match.
      * @param input the input string.
@@ -147,12 +212,22 @@ public class SimpleResult implements Result {
         return new SimpleResult(false, input, null, null, canStopMatching);
     }
 
+    /**
+     * Creates an instance of an unsuccessful match.
+     * @param input the input sequence.
+     * @param canStopMatching indicates whether matching operation can be stopped.
+     * @return the result object.
+     */
+    public static Result failure(CharSequence input, boolean canStopMatching) {
+        return new SimpleResult(false, input, -1, -1, canStopMatching);
+    }
+
     @Override
     public String toString() {
         return "SimpleResult{"
                 + "succeeded=" + succeeded
-                + ", before='" + before + '\''
-                + ", group='" + group + '\''
+                + ", before='" + (succeeded ? getBefore() : null) + '\''
+                + ", group='" + (succeeded ? group() : null) + '\''
                 + ", input='" + input + '\''
                 + ", canStopMatching=" + canStopMatching + '}';
     }
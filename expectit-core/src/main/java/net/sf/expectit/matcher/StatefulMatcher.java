@@ -0,0 +1,41 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import net.sf.expectit.Result;
+
+/**
+ * A matcher which can resume matching from the point where the previous attempt stopped
+ * instead of rescanning the entire input buffer when new data arrives.
+ * <p/>
+ * An expect operation creates a new state at the beginning and uses it for all the matching
+ * attempts until the operation completes.
+ *
+ * @param <R> the result type
+ */
+public interface StatefulMatcher<R extends Result> extends CharSequenceMatcher<R> {
+    /**
+     * Creates a new matching state for an expect operation.
+     *
+     * @return the state
+     */
+    MatcherState<R> createState();
+}
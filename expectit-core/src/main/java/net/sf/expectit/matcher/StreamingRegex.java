@@ -0,0 +1,905 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A regular expression compiled to a program for the Pike virtual machine which simulates the
+ * non-deterministic automaton of the expression. See {@link RegexEngine#STREAMING} for the
+ * supported syntax.
+ */
+final class StreamingRegex {
+    static final int CHAR = 0;
+    static final int SPLIT = 1;
+    static final int JUMP = 2;
+    static final int SAVE = 3;
+    static final int ASSERT = 4;
+    static final int MATCH = 5;
+
+    static final int BEGIN_INPUT = 0;
+    static final int END_INPUT = 1;
+    static final int BEGIN_LINE = 2;
+    static final int END_LINE = 3;
+    static final int WORD_BOUNDARY = 4;
+    static final int NOT_WORD_BOUNDARY = 5;
+
+    /**
+     * The value of a character before the beginning or after the end of input.
+     */
+    static final int NONE = -1;
+
+    private static final int MAX_PROGRAM_SIZE = 10000;
+    private static final int MAX_CHAR = 0xffff;
+    private static final int HEX = 16;
+    private static final int OCTAL = 8;
+    private static final int MAX_OCTAL = 0xff;
+    private static final int OCTAL_DIGITS = 3;
+    private static final int UNICODE_DIGITS = 4;
+    private static final int ESCAPE = 0x1b;
+    private static final int BELL = 0x07;
+    private static final int CONTROL_MASK = 0x40;
+    private static final int SUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.MULTILINE
+            | Pattern.DOTALL | Pattern.UNICODE_CASE | Pattern.UNIX_LINES;
+
+    private final int[] ops;
+    private final int[] args;
+    private final int[] alternatives;
+    private final CharClass[] classes;
+    private final int groupCount;
+    private final boolean unixLines;
+
+    private StreamingRegex(final Program program, final int groupCount, final boolean unixLines) {
+        this.ops = Arrays.copyOf(program.ops, program.size);
+        this.args = Arrays.copyOf(program.args, program.size);
+        this.alternatives = Arrays.copyOf(program.alternatives, program.size);
+        this.classes = Arrays.copyOf(program.classes, program.size);
+        this.groupCount = groupCount;
+        this.unixLines = unixLines;
+    }
+
+    /**
+     * Compiles the given pattern.
+     *
+     * @param pattern the pattern
+     * @return the compiled expression
+     * @throws IllegalArgumentException if the pattern contains the unsupported constructs.
+     */
+    static StreamingRegex compile(final Pattern pattern) {
+        if ((pattern.flags() & ~SUPPORTED_FLAGS) != 0) {
+            throw unsupported(pattern.pattern(), "flags " + pattern.flags());
+        }
+        final Parser parser = new Parser(pattern.pattern(), pattern.flags());
+        final Node root = parser.parseExpression();
+        final Program program = new Program(pattern.pattern());
+        program.emit(SAVE, 0, 0, null);
+        root.emit(program);
+        program.emit(SAVE, 1, 0, null);
+        program.emit(MATCH, 0, 0, null);
+        return new StreamingRegex(
+                program,
+                parser.groupCount,
+                (pattern.flags() & Pattern.UNIX_LINES) != 0);
+    }
+
+    int size() {
+        return ops.length;
+    }
+
+    int op(final int pc) {
+        return ops[pc];
+    }
+
+    /**
+     * Returns the argument of the instruction: the jump target, the capture slot or the
+     * assertion kind.
+     */
+    int arg(final int pc) {
+        return args[pc];
+    }
+
+    /**
+     * Returns the lower priority target of a split instruction.
+     */
+    int alternative(final int pc) {
+        return alternatives[pc];
+    }
+
+    boolean accepts(final int pc, final char c) {
+        return classes[pc].contains(c);
+    }
+
+    int groupCount() {
+        return groupCount;
+    }
+
+    /**
+     * Checks if the assertion of the given instruction holds between the given characters.
+     *
+     * @param pc       the instruction
+     * @param position the position in the input
+     * @param previous the character before the position or {@link #NONE}
+     * @param next     the character at the position or {@link #NONE}
+     */
+    boolean holds(final int pc, final int position, final int previous, final int next) {
+        switch (args[pc]) {
+            case BEGIN_INPUT:
+                return position == 0;
+            case END_INPUT:
+                return next == NONE;
+            case BEGIN_LINE:
+                // never matches at the end of input, like java.util.regex
+                return next != NONE
+                        && (position == 0 || isLineTerminator(previous) && !isCrLf(previous, next));
+            case END_LINE:
+                return next == NONE || isLineTerminator(next) && !isCrLf(previous, next);
+            case WORD_BOUNDARY:
+                return isWord(previous) != isWord(next);
+            case NOT_WORD_BOUNDARY:
+                return isWord(previous) == isWord(next);
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private boolean isCrLf(final int previous, final int next) {
+        return !unixLines && previous == '\r' && next == '\n';
+    }
+
+    private boolean isLineTerminator(final int c) {
+        if (unixLines) {
+            return c == '\n';
+        }
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isWord(final int c) {
+        return c != NONE && (c == '_' || Character.isLetterOrDigit(c));
+    }
+
+    private static IllegalArgumentException unsupported(
+            final String pattern,
+            final String construct) {
+        return new IllegalArgumentException(
+                "The streaming regex engine does not support " + construct + " in '"
+                        + pattern + "'");
+    }
+
+    /**
+     * A set of characters represented by the sorted disjoint inclusive ranges.
+     */
+    static final class CharClass {
+        private final char[] ranges;
+
+        private CharClass(final char[] ranges) {
+            this.ranges = ranges;
+        }
+
+        boolean contains(final char c) {
+            int low = 0;
+            int high = ranges.length / 2 - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (c < ranges[mid * 2]) {
+                    high = mid - 1;
+                } else if (c > ranges[mid * 2 + 1]) {
+                    low = mid + 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Accumulates the character ranges of a class.
+     */
+    private static final class CharClassBuilder {
+        private static final Comparator<int[]> RANGE_ORDER = new Comparator<int[]>() {
+            @Override
+            public int compare(final int[] o1, final int[] o2) {
+                return o1[0] - o2[0];
+            }
+        };
+
+        private final List<int[]> ranges = new ArrayList<int[]>();
+
+        CharClassBuilder add(final int from, final int to) {
+            ranges.add(new int[]{from, to});
+            return this;
+        }
+
+        CharClassBuilder addAll(final CharClassBuilder other) {
+            ranges.addAll(other.ranges);
+            return this;
+        }
+
+        CharClassBuilder addCaseVariants(final boolean unicodeCase) {
+            for (int[] range : new ArrayList<int[]>(ranges)) {
+                for (int c = range[0]; c <= range[1]; c++) {
+                    if (unicodeCase || c < Byte.MAX_VALUE) {
+                        final char lower = Character.toLowerCase((char) c);
+                        final char upper = Character.toUpperCase((char) c);
+                        if (lower != c && (unicodeCase || lower < Byte.MAX_VALUE)) {
+                            add(lower, lower);
+                        }
+                        if (upper != c && (unicodeCase || upper < Byte.MAX_VALUE)) {
+                            add(upper, upper);
+                        }
+                    }
+                }
+            }
+            return this;
+        }
+
+        CharClassBuilder negate() {
+            final int[][] sorted = normalize();
+            ranges.clear();
+            int next = 0;
+            for (int[] range : sorted) {
+                if (range[0] > next) {
+                    add(next, range[0] - 1);
+                }
+                next = range[1] + 1;
+            }
+            if (next <= MAX_CHAR) {
+                add(next, MAX_CHAR);
+            }
+            return this;
+        }
+
+        CharClass build() {
+            final int[][] sorted = normalize();
+            final char[] result = new char[sorted.length * 2];
+            for (int i = 0; i < sorted.length; i++) {
+                result[i * 2] = (char) sorted[i][0];
+                result[i * 2 + 1] = (char) sorted[i][1];
+            }
+            return new CharClass(result);
+        }
+
+        private int[][] normalize() {
+            final int[][] sorted = ranges.toArray(new int[ranges.size()][]);
+            Arrays.sort(sorted, RANGE_ORDER);
+            final List<int[]> merged = new ArrayList<int[]>();
+            for (int[] range : sorted) {
+                final int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && range[0] <= last[1] + 1) {
+                    last[1] = Math.max(last[1], range[1]);
+                } else {
+                    merged.add(new int[]{range[0], range[1]});
+                }
+            }
+            return merged.toArray(new int[merged.size()][]);
+        }
+    }
+
+    /**
+     * The program being generated.
+     */
+    private static final class Program {
+        private final String pattern;
+        private int[] ops = new int[HEX];
+        private int[] args = new int[HEX];
+        private int[] alternatives = new int[HEX];
+        private CharClass[] classes = new CharClass[HEX];
+        private int size;
+
+        Program(final String pattern) {
+            this.pattern = pattern;
+        }
+
+        int emit(final int op, final int arg, final int alternative, final CharClass charClass) {
+            if (size == MAX_PROGRAM_SIZE) {
+                throw unsupported(pattern, "expressions of more than " + MAX_PROGRAM_SIZE
+                        + " instructions");
+            }
+            if (size == ops.length) {
+                ops = Arrays.copyOf(ops, size * 2);
+                args = Arrays.copyOf(args, size * 2);
+                alternatives = Arrays.copyOf(alternatives, size * 2);
+                classes = Arrays.copyOf(classes, size * 2);
+            }
+            ops[size] = op;
+            args[size] = arg;
+            alternatives[size] = alternative;
+            classes[size] = charClass;
+            return size++;
+        }
+
+        void setArg(final int pc, final int arg) {
+            args[pc] = arg;
+        }
+
+        void setAlternative(final int pc, final int alternative) {
+            alternatives[pc] = alternative;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * A node of the expression syntax tree.
+     */
+    private abstract static class Node {
+        abstract void emit(Program program);
+    }
+
+    private static final class CharNode extends Node {
+        private final CharClass charClass;
+
+        CharNode(final CharClass charClass) {
+            this.charClass = charClass;
+        }
+
+        @Override
+        void emit(final Program program) {
+            program.emit(CHAR, 0, 0, charClass);
+        }
+    }
+
+    private static final class AssertNode extends Node {
+        private final int kind;
+
+        AssertNode(final int kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        void emit(final Program program) {
+            program.emit(ASSERT, kind, 0, null);
+        }
+    }
+
+    private static final class GroupNode extends Node {
+        private final int index;
+        private final Node node;
+
+        GroupNode(final int index, final Node node) {
+            this.index = index;
+            this.node = node;
+        }
+
+        @Override
+        void emit(final Program program) {
+            program.emit(SAVE, index * 2, 0, null);
+            node.emit(program);
+            program.emit(SAVE, index * 2 + 1, 0, null);
+        }
+    }
+
+    private static final class ConcatNode extends Node {
+        private final List<Node> nodes;
+
+        ConcatNode(final List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        void emit(final Program program) {
+            for (Node node : nodes) {
+                node.emit(program);
+            }
+        }
+    }
+
+    private static final class AlternationNode extends Node {
+        private final List<Node> nodes;
+
+        AlternationNode(final List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        void emit(final Program program) {
+            final int[] jumps = new int[nodes.size() - 1];
+            for (int i = 0; i < jumps.length; i++) {
+                final int split = program.emit(SPLIT, program.size() + 1, 0, null);
+                nodes.get(i).emit(program);
+                jumps[i] = program.emit(JUMP, 0, 0, null);
+                program.setAlternative(split, program.size());
+            }
+            nodes.get(jumps.length).emit(program);
+            for (int jump : jumps) {
+                program.setArg(jump, program.size());
+            }
+        }
+    }
+
+    private static final class RepeatNode extends Node {
+        private final Node node;
+        private final int min;
+        private final int max;
+        private final boolean greedy;
+
+        /**
+         * @param max the maximum number of repetitions, negative if unbounded
+         */
+        RepeatNode(final Node node, final int min, final int max, final boolean greedy) {
+            this.node = node;
+            this.min = min;
+            this.max = max;
+            this.greedy = greedy;
+        }
+
+        @Override
+        void emit(final Program program) {
+            for (int i = 0; i < min; i++) {
+                node.emit(program);
+            }
+            if (max < 0) {
+                final int split = split(program);
+                node.emit(program);
+                program.emit(JUMP, split, 0, null);
+                exit(program, split, program.size());
+                return;
+            }
+            final int[] splits = new int[max - min];
+            for (int i = 0; i < splits.length; i++) {
+                splits[i] = split(program);
+                node.emit(program);
+            }
+            for (int split : splits) {
+                exit(program, split, program.size());
+            }
+        }
+
+        private int split(final Program program) {
+            final int split = program.emit(SPLIT, 0, 0, null);
+            if (greedy) {
+                program.setArg(split, split + 1);
+            } else {
+                program.setAlternative(split, split + 1);
+            }
+            return split;
+        }
+
+        private void exit(final Program program, final int split, final int target) {
+            if (greedy) {
+                program.setAlternative(split, target);
+            } else {
+                program.setArg(split, target);
+            }
+        }
+    }
+
+    /**
+     * A recursive descent parser of the supported syntax. The pattern is known to be valid
+     * since it has been compiled by {@link Pattern}.
+     */
+    private static final class Parser {
+        private final String pattern;
+        private int position;
+        private int flags;
+        private int groupCount;
+
+        Parser(final String pattern, final int flags) {
+            this.pattern = pattern;
+            this.flags = flags;
+        }
+
+        Node parseExpression() {
+            final Node result = parseAlternation();
+            if (position < pattern.length()) {
+                throw unsupported(pattern, "'" + pattern.charAt(position) + "'");
+            }
+            return result;
+        }
+
+        private Node parseAlternation() {
+            final List<Node> alternatives = new ArrayList<Node>();
+            alternatives.add(parseConcatenation());
+            while (peek('|')) {
+                position++;
+                alternatives.add(parseConcatenation());
+            }
+            if (alternatives.size() == 1) {
+                return alternatives.get(0);
+            }
+            return new AlternationNode(alternatives);
+        }
+
+        private Node parseConcatenation() {
+            final List<Node> nodes = new ArrayList<Node>();
+            while (position < pattern.length() && !peek('|') && !peek(')')) {
+                final Node atom = parseAtom();
+                if (atom != null) {
+                    nodes.add(parseQuantifier(atom));
+                }
+            }
+            return new ConcatNode(nodes);
+        }
+
+        private Node parseQuantifier(final Node atom) {
+            Node result = atom;
+            while (position < pattern.length()) {
+                final char c = pattern.charAt(position);
+                final int min;
+                final int max;
+                if (c == '*') {
+                    min = 0;
+                    max = -1;
+                    position++;
+                } else if (c == '+') {
+                    min = 1;
+                    max = -1;
+                    position++;
+                } else if (c == '?') {
+                    min = 0;
+                    max = 1;
+                    position++;
+                } else if (c == '{') {
+                    position++;
+                    min = parseNumber();
+                    if (peek(',')) {
+                        position++;
+                        max = peek('}') ? -1 : parseNumber();
+                    } else {
+                        max = min;
+                    }
+                    expect('}');
+                } else {
+                    return result;
+                }
+                boolean greedy = true;
+                if (peek('?')) {
+                    greedy = false;
+                    position++;
+                } else if (peek('+')) {
+                    throw unsupported(pattern, "possessive quantifiers");
+                }
+                result = new RepeatNode(result, min, max, greedy);
+            }
+            return result;
+        }
+
+        private int parseNumber() {
+            final int start = position;
+            while (position < pattern.length() && Character.isDigit(pattern.charAt(position))) {
+                position++;
+            }
+            try {
+                return Integer.parseInt(pattern.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw unsupported(pattern, "the quantifier at " + start);
+            }
+        }
+
+        /**
+         * Parses an atom.
+         *
+         * @return the atom or {@code null} if the atom was a flag modifier
+         */
+        private Node parseAtom() {
+            final char c = pattern.charAt(position++);
+            switch (c) {
+                case '(':
+                    return parseGroup();
+                case '[':
+                    return new CharNode(parseClass().build());
+                case '.':
+                    return new CharNode(dot().build());
+                case '^':
+                    return new AssertNode(isSet(Pattern.MULTILINE) ? BEGIN_LINE : BEGIN_INPUT);
+                case '$':
+                    return new AssertNode(isSet(Pattern.MULTILINE) ? END_LINE : END_INPUT);
+                case '\\':
+                    return parseEscape();
+                default:
+                    return new CharNode(withCase(new CharClassBuilder().add(c, c)).build());
+            }
+        }
+
+        private Node parseGroup() {
+            final int savedFlags = flags;
+            int index = -1;
+            if (peek('?')) {
+                position++;
+                final int flagsEnd = parseFlags();
+                if (peek(')')) {
+                    // the flags apply to the rest of the enclosing group
+                    position++;
+                    return null;
+                }
+                if (!peek(':') || flagsEnd < 0) {
+                    throw unsupported(pattern, "the group construct at " + position);
+                }
+                position++;
+            } else {
+                index = ++groupCount;
+            }
+            final Node node = parseAlternation();
+            expect(')');
+            flags = savedFlags;
+            return index < 0 ? node : new GroupNode(index, node);
+        }
+
+        /**
+         * Parses the inline flags.
+         *
+         * @return the position after the flags or {@code -1} if the construct is not a flag
+         * modifier
+         */
+        private int parseFlags() {
+            boolean on = true;
+            final int start = position;
+            while (position < pattern.length()) {
+                final char c = pattern.charAt(position);
+                final int flag;
+                switch (c) {
+                    case 'i':
+                        flag = Pattern.CASE_INSENSITIVE;
+                        break;
+                    case 'm':
+                        flag = Pattern.MULTILINE;
+                        break;
+                    case 's':
+                        flag = Pattern.DOTALL;
+                        break;
+                    case 'u':
+                        flag = Pattern.UNICODE_CASE;
+                        break;
+                    case 'd':
+                        flag = Pattern.UNIX_LINES;
+                        break;
+                    case '-':
+                        on = false;
+                        position++;
+                        continue;
+                    default:
+                        return position == start && c != ':' ? -1 : position;
+                }
+                if (flag == Pattern.UNIX_LINES) {
+                    throw unsupported(pattern, "the inline UNIX_LINES flag");
+                }
+                flags = on ? flags | flag : flags & ~flag;
+                position++;
+            }
+            return position;
+        }
+
+        private Node parseEscape() {
+            final char c = pattern.charAt(position);
+            switch (c) {
+                case 'b':
+                    position++;
+                    return new AssertNode(WORD_BOUNDARY);
+                case 'B':
+                    position++;
+                    return new AssertNode(NOT_WORD_BOUNDARY);
+                case 'A':
+                    position++;
+                    return new AssertNode(BEGIN_INPUT);
+                case 'z':
+                    position++;
+                    return new AssertNode(END_INPUT);
+                case 'Q':
+                    position++;
+                    return parseQuotation();
+                default:
+                    return new CharNode(withCase(parseClassEscape()).build());
+            }
+        }
+
+        private Node parseQuotation() {
+            int end = pattern.indexOf("\\E", position);
+            if (end < 0) {
+                end = pattern.length();
+            }
+            final List<Node> nodes = new ArrayList<Node>();
+            for (int i = position; i < end; i++) {
+                final char c = pattern.charAt(i);
+                nodes.add(new CharNode(withCase(new CharClassBuilder().add(c, c)).build()));
+            }
+            position = Math.min(end + 2, pattern.length());
+            return new ConcatNode(nodes);
+        }
+
+        /**
+         * Parses an escape sequence which denotes a character or a predefined class. The
+         * position points after the backslash.
+         */
+        private CharClassBuilder parseClassEscape() {
+            final char c = pattern.charAt(position++);
+            switch (c) {
+                case 'd':
+                    return digits();
+                case 'D':
+                    return digits().negate();
+                case 'w':
+                    return wordChars();
+                case 'W':
+                    return wordChars().negate();
+                case 's':
+                    return spaces();
+                case 'S':
+                    return spaces().negate();
+                case 't':
+                    return single('\t');
+                case 'n':
+                    return single('\n');
+                case 'r':
+                    return single('\r');
+                case 'f':
+                    return single('\f');
+                case 'a':
+                    return single(BELL);
+                case 'e':
+                    return single(ESCAPE);
+                case 'c':
+                    return single(pattern.charAt(position++) ^ CONTROL_MASK);
+                case 'x':
+                    return single(parseHex(2));
+                case 'u':
+                    return single(parseHex(UNICODE_DIGITS));
+                case '0':
+                    return single(parseOctal());
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        throw unsupported(pattern, "the escape sequence \\" + c);
+                    }
+                    return single(c);
+            }
+        }
+
+        private int parseHex(final int digits) {
+            if (peek('{')) {
+                throw unsupported(pattern, "the code point escape sequences");
+            }
+            final int start = position;
+            position += digits;
+            return Integer.parseInt(pattern.substring(start, position), HEX);
+        }
+
+        private int parseOctal() {
+            int result = 0;
+            for (int i = 0; i < OCTAL_DIGITS && position < pattern.length(); i++) {
+                final int digit = Character.digit(pattern.charAt(position), OCTAL);
+                if (digit < 0 || result * OCTAL + digit > MAX_OCTAL) {
+                    break;
+                }
+                result = result * OCTAL + digit;
+                position++;
+            }
+            return result;
+        }
+
+        /**
+         * Parses a character class. The position points after the opening bracket.
+         */
+        private CharClassBuilder parseClass() {
+            boolean negated = false;
+            if (peek('^')) {
+                negated = true;
+                position++;
+            }
+            final CharClassBuilder result = new CharClassBuilder();
+            while (!peek(']')) {
+                if (peek('[') || pattern.startsWith("&&", position)) {
+                    throw unsupported(pattern, "nested classes and intersections");
+                }
+                result.addAll(parseClassItem());
+            }
+            position++;
+            withCase(result);
+            return negated ? result.negate() : result;
+        }
+
+        /**
+         * Parses a character, a range or a predefined class within a character class.
+         */
+        private CharClassBuilder parseClassItem() {
+            final int from;
+            if (peek('\\')) {
+                position++;
+                final CharClassBuilder escape = parseClassEscape();
+                if (!isSingle(escape)) {
+                    return escape;
+                }
+                from = escape.ranges.get(0)[0];
+            } else {
+                from = pattern.charAt(position++);
+            }
+            if (peek('-') && position + 1 < pattern.length()
+                    && pattern.charAt(position + 1) != ']') {
+                position++;
+                final int to;
+                if (peek('\\')) {
+                    position++;
+                    final CharClassBuilder escape = parseClassEscape();
+                    if (!isSingle(escape)) {
+                        throw unsupported(pattern, "the range at " + position);
+                    }
+                    to = escape.ranges.get(0)[0];
+                } else {
+                    to = pattern.charAt(position++);
+                }
+                return new CharClassBuilder().add(from, to);
+            }
+            return single(from);
+        }
+
+        private static boolean isSingle(final CharClassBuilder builder) {
+            return builder.ranges.size() == 1
+                    && builder.ranges.get(0)[0] == builder.ranges.get(0)[1];
+        }
+
+        private CharClassBuilder withCase(final CharClassBuilder builder) {
+            if (isSet(Pattern.CASE_INSENSITIVE)) {
+                builder.addCaseVariants(isSet(Pattern.UNICODE_CASE));
+            }
+            return builder;
+        }
+
+        private CharClassBuilder dot() {
+            if (isSet(Pattern.DOTALL)) {
+                return new CharClassBuilder().add(0, MAX_CHAR);
+            }
+            if (isSet(Pattern.UNIX_LINES)) {
+                return single('\n').negate();
+            }
+            return new CharClassBuilder()
+                    .add('\n', '\n')
+                    .add('\r', '\r')
+                    .add('\u0085', '\u0085')
+                    .add('\u2028', '\u2029')
+                    .negate();
+        }
+
+        private static CharClassBuilder digits() {
+            return new CharClassBuilder().add('0', '9');
+        }
+
+        private static CharClassBuilder wordChars() {
+            return new CharClassBuilder().add('a', 'z').add('A', 'Z').add('0', '9').add('_', '_');
+        }
+
+        private static CharClassBuilder spaces() {
+            return new CharClassBuilder().add('\t', '\r').add(' ', ' ');
+        }
+
+        private static CharClassBuilder single(final int c) {
+            return new CharClassBuilder().add(c, c);
+        }
+
+        private boolean isSet(final int flag) {
+            return (flags & flag) != 0;
+        }
+
+        private boolean peek(final char c) {
+            return position < pattern.length() && pattern.charAt(position) == c;
+        }
+
+        private void expect(final char c) {
+            if (!peek(c)) {
+                throw unsupported(pattern, "the construct at " + position);
+            }
+            position++;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.generateToString;
+
+import java.util.Arrays;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+import net.sf.expectit.Result;
+
+/**
+ * A regular expression matcher based on {@link RegexEngine#STREAMING}.
+ * <p/>
+ * The matcher simulates the automaton of the expression keeping the set of the active
+ * threads, one per instruction, so the time is linear in the input length. The threads are
+ * ordered by priority, which gives the same leftmost match and the same groups as
+ * {@link java.util.regex.Matcher}. When used as a stateful matcher, the threads are kept
+ * between the attempts and only the new data is fed to the automaton.
+ */
+class StreamingRegexpMatcher extends AbstractCharSequenceMatcher<Result>
+        implements StatefulMatcher<Result> {
+    private final Pattern pattern;
+    private final StreamingRegex regex;
+    private final boolean useFind;
+    private final int[] noCaptures;
+
+    /**
+     * The constructor.
+     *
+     * @param pattern the pattern
+     * @param useFind when <tt>true</tt> the matcher searches for the pattern in the input,
+     *                otherwise the entire input must match the pattern.
+     * @throws IllegalArgumentException if the pattern is not supported by the engine.
+     */
+    StreamingRegexpMatcher(final Pattern pattern, final boolean useFind) {
+        this.pattern = pattern;
+        this.regex = StreamingRegex.compile(pattern);
+        this.useFind = useFind;
+        this.noCaptures = new int[(regex.groupCount() + 1) * 2];
+        Arrays.fill(noCaptures, -1);
+    }
+
+    @Override
+    public Result matches(final CharSequence input, final boolean isEof) {
+        return createState().matches(input, 0, isEof);
+    }
+
+    @Override
+    public MatcherState<Result> createState() {
+        return new State(regex, useFind, noCaptures);
+    }
+
+    @Override
+    public String toString() {
+        if (useFind) {
+            return generateToString("regexp", pattern);
+        }
+        return generateToString("matches", pattern);
+    }
+
+    /**
+     * A list of threads, at most one per instruction.
+     */
+    private static final class ThreadList {
+        private final int[] pcs;
+        private final int[][] captures;
+        private int size;
+
+        ThreadList(final int capacity) {
+            pcs = new int[capacity];
+            captures = new int[capacity][];
+        }
+
+        void add(final int pc, final int[] threadCaptures) {
+            pcs[size] = pc;
+            captures[size] = threadCaptures;
+            size++;
+        }
+
+        void copyFrom(final ThreadList other) {
+            System.arraycopy(other.pcs, 0, pcs, 0, other.size);
+            System.arraycopy(other.captures, 0, captures, 0, other.size);
+            size = other.size;
+        }
+
+        void clear() {
+            Arrays.fill(captures, 0, size, null);
+            size = 0;
+        }
+    }
+
+    /**
+     * The state of the automaton. The pending threads are waiting for the closure at the
+     * current position, which is computed when the character at the position is known, since
+     * the boundary assertions depend on it.
+     * <p/>
+     * The capture arrays are never modified once created, so the threads share them and only
+     * a save instruction allocates a new one.
+     */
+    private static final class State implements MatcherState<Result> {
+        private final StreamingRegex regex;
+        private final boolean useFind;
+        private final int[] noCaptures;
+        private final int[] marks;
+        private final int[] stackPcs;
+        private final int[][] stackCaptures;
+        private int generation;
+        private ThreadList pending;
+        private ThreadList next;
+        private final ThreadList current;
+        private int position;
+        private int previous = StreamingRegex.NONE;
+        private int[] matched;
+
+        State(final StreamingRegex regex, final boolean useFind, final int[] noCaptures) {
+            this.regex = regex;
+            this.useFind = useFind;
+            this.noCaptures = noCaptures;
+            this.marks = new int[regex.size()];
+            // every instruction is expanded once and pushes at most two successors
+            this.stackPcs = new int[regex.size() * 2 + 1];
+            this.stackCaptures = new int[regex.size() * 2 + 1][];
+            this.pending = new ThreadList(regex.size());
+            this.next = new ThreadList(regex.size());
+            this.current = new ThreadList(regex.size());
+        }
+
+        @Override
+        public Result matches(final CharSequence input, final int stable, final boolean isEof) {
+            if (stable < position) {
+                reset();
+            }
+            final int length = input.length();
+            while (position < length && !isFinal()) {
+                step(input.charAt(position));
+            }
+            int[] result = closeAtEnd();
+            if (result == null) {
+                result = matched;
+            }
+            if (result != null) {
+                return new RegexpResult(input, new CaptureResult(input, result));
+            }
+            return SimpleResult.failure(input, !useFind && position > 0 && pending.size == 0);
+        }
+
+        private void reset() {
+            pending.clear();
+            position = 0;
+            previous = StreamingRegex.NONE;
+            matched = null;
+        }
+
+        /**
+         * Checks if the outcome can't be affected by more input: the search has found a match
+         * and no thread of a higher priority is alive, or the entire input can no longer
+         * match.
+         */
+        private boolean isFinal() {
+            return pending.size == 0 && (matched != null || !useFind && position > 0);
+        }
+
+        /**
+         * Feeds the character at the current position to the automaton.
+         */
+        private void step(final char c) {
+            close(c);
+            next.clear();
+            for (int i = 0; i < current.size; i++) {
+                final int pc = current.pcs[i];
+                if (regex.op(pc) == StreamingRegex.MATCH) {
+                    if (useFind) {
+                        // the threads of a lower priority are discarded
+                        matched = current.captures[i];
+                        break;
+                    }
+                } else if (regex.accepts(pc, c)) {
+                    next.add(pc + 1, current.captures[i]);
+                }
+            }
+            current.clear();
+            final ThreadList tmp = pending;
+            pending = next;
+            next = tmp;
+            previous = c;
+            position++;
+        }
+
+        /**
+         * Computes the closure assuming the input ends at the current position.
+         *
+         * @return the captures of the best match ending at the position or {@code null}
+         */
+        private int[] closeAtEnd() {
+            close(StreamingRegex.NONE);
+            int[] result = null;
+            for (int i = 0; i < current.size; i++) {
+                if (regex.op(current.pcs[i]) == StreamingRegex.MATCH) {
+                    result = current.captures[i];
+                    break;
+                }
+            }
+            current.clear();
+            return result;
+        }
+
+        /**
+         * Follows the non-consuming instructions of the pending threads and of a new thread
+         * starting at the current position.
+         */
+        private void close(final int c) {
+            generation++;
+            current.clear();
+            for (int i = 0; i < pending.size; i++) {
+                add(pending.pcs[i], pending.captures[i], c);
+            }
+            if (useFind ? matched == null : position == 0) {
+                add(0, noCaptures, c);
+            }
+        }
+
+        /**
+         * Adds the threads reachable from the given instruction in the order of priority. The
+         * depth first traversal uses an explicit stack since the chains of the non-consuming
+         * instructions may be long.
+         */
+        private void add(final int pc, final int[] captures, final int c) {
+            int top = push(0, pc, captures);
+            while (top > 0) {
+                top--;
+                final int instruction = stackPcs[top];
+                final int[] threadCaptures = stackCaptures[top];
+                stackCaptures[top] = null;
+                if (marks[instruction] == generation) {
+                    continue;
+                }
+                marks[instruction] = generation;
+                switch (regex.op(instruction)) {
+                    case StreamingRegex.JUMP:
+                        top = push(top, regex.arg(instruction), threadCaptures);
+                        break;
+                    case StreamingRegex.SPLIT:
+                        top = push(top, regex.alternative(instruction), threadCaptures);
+                        top = push(top, regex.arg(instruction), threadCaptures);
+                        break;
+                    case StreamingRegex.SAVE:
+                        final int[] copy = threadCaptures.clone();
+                        copy[regex.arg(instruction)] = position;
+                        top = push(top, instruction + 1, copy);
+                        break;
+                    case StreamingRegex.ASSERT:
+                        if (regex.holds(instruction, position, previous, c)) {
+                            top = push(top, instruction + 1, threadCaptures);
+                        }
+                        break;
+                    default:
+                        current.add(instruction, threadCaptures);
+                }
+            }
+        }
+
+        private int push(final int top, final int pc, final int[] captures) {
+            stackPcs[top] = pc;
+            stackCaptures[top] = captures;
+            return top + 1;
+        }
+    }
+
+    /**
+     * The match result built from the capture positions.
+     */
+    private static final class CaptureResult implements MatchResult {
+        private final CharSequence input;
+        private final int[] captures;
+
+        CaptureResult(final CharSequence input, final int[] captures) {
+            this.input = input;
+            this.captures = captures;
+        }
+
+        @Override
+        public int start() {
+            return start(0);
+        }
+
+        @Override
+        public int start(final int group) {
+            checkGroup(group);
+            return captures[group * 2];
+        }
+
+        @Override
+        public int end() {
+            return end(0);
+        }
+
+        @Override
+        public int end(final int group) {
+            checkGroup(group);
+            return captures[group * 2 + 1];
+        }
+
+        @Override
+        public String group() {
+            return group(0);
+        }
+
+        @Override
+        public String group(final int group) {
+            final int start = start(group);
+            final int end = end(group);
+            if (start == -1 || end == -1) {
+                return null;
+            }
+            return input.subSequence(start, end).toString();
+        }
+
+        @Override
+        public int groupCount() {
+            return captures.length / 2 - 1;
+        }
+
+        private void checkGroup(final int group) {
+            if (group < 0 || group > groupCount()) {
+                throw new IndexOutOfBoundsException("No group " + group);
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.anyOf;
+import static net.sf.expectit.matcher.Matchers.contains;
+import static net.sf.expectit.matcher.Matchers.regexp;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import net.sf.expectit.matcher.CharSequenceMatcher;
+import net.sf.expectit.matcher.Matcher;
+import net.sf.expectit.matcher.RegexEngine;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies the number of bytes allocated by the expect operations per kilobyte of the processed
+ * input stays within the budgets. The inputs are read inline, so all the allocations of the hot
+ * path are made by the thread running the test and counted by the {@link ThreadMXBean}.
+ * <p/>
+ * Every scenario is repeated until the JIT compiler has optimized it, and the smallest
+ * measurement is compared to the budget. Decoding the input and running the matchers over the
+ * buffer must not allocate. The budgets of the expect operations cover the result and the view
+ * of the buffer created for every matcher run, and the copies of the views made when the buffer
+ * reuses its array. They are set about 12-15% above the figures measured on JDK 8, noted next to
+ * them, so an allocation added to a per-operation or a per-chunk path is caught.
+ */
+public class AllocationTest {
+    private static final String PROMPT = "device> ";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int RUNS = 20;
+    private static final int SIZE = 256 * 1024;
+    private static final int CHUNK = 4096;
+    private static final int SMALL_CHUNK = 128;
+    private static final int LINE_LENGTH = 80;
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    @Before
+    public void setup() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void testDecoder() throws Exception {
+        final byte[] data = (text(SIZE) + "\u00e9\u20ac").getBytes(UTF_8);
+        final InputDecoder decoder = new InputDecoder(UTF_8, CHUNK);
+        assertBudget("decoder", data.length, 4, new Scenario() {
+            @Override
+            public void run() {
+                for (int i = 0; i < data.length; i += CHUNK) {
+                    decoder.decode(data, i, Math.min(CHUNK, data.length - i));
+                }
+                decoder.finish();
+            }
+        });
+    }
+
+    @Test
+    public void testMatchers() throws Exception {
+        final ArrayInputBuffer buffer = new ArrayInputBuffer();
+        buffer.append(text(SIZE));
+        final InputView view = buffer.view();
+        final List<CharSequenceMatcher<?>> matchers = Arrays.<CharSequenceMatcher<?>>asList(
+                (CharSequenceMatcher<?>) contains(PROMPT),
+                (CharSequenceMatcher<?>) anyOf(contains("error> "), contains(PROMPT)),
+                (CharSequenceMatcher<?>) regexp("dev\\w+> ", 64));
+        assertBudget("matchers", SIZE * matchers.size(), 4, new Scenario() {
+            @Override
+            public void run() {
+                for (CharSequenceMatcher<?> matcher : matchers) {
+                    assertFalse(matcher.matches(view, false).isSuccessful());
+                }
+            }
+        });
+    }
+
+    /**
+     * Many short responses each followed by a prompt.
+     */
+    @Test
+    public void testPrompts() throws Exception {
+        final StringBuilder builder = new StringBuilder();
+        int count = 0;
+        while (builder.length() < SIZE) {
+            builder.append("show interface ").append(count++).append("\nstatus up\n")
+                    .append(PROMPT);
+        }
+        final byte[] data = builder.toString().getBytes(UTF_8);
+        final int prompts = count;
+        final Matcher<?> matcher = contains(PROMPT);
+        // measured 13249
+        assertBudget("prompts", data.length, 15000, new Scenario() {
+            @Override
+            public void run() throws IOException {
+                final Expect expect = build(new ByteArrayInputStream(data)).build();
+                for (int i = 0; i < prompts; i++) {
+                    assertTrue(expect.expect(matcher).isSuccessful());
+                }
+                expect.close();
+            }
+        });
+    }
+
+    /**
+     * Unmatched output arriving in small chunks, every chunk runs the matcher.
+     */
+    @Test
+    public void testChunks() throws Exception {
+        // measured 4970
+        assertChunksBudget("chunks", contains(PROMPT), 5600);
+    }
+
+    @Test
+    public void testChunksMultiMatcher() throws Exception {
+        assertChunksBudget(
+                "chunksMultiMatcher",
+                anyOf(contains("error> "), contains(PROMPT)),
+                // measured 6060
+                6800);
+    }
+
+    @Test
+    public void testChunksRegexp() throws Exception {
+        // measured 4971
+        assertChunksBudget("chunksRegexp", regexp("dev\\w+> ", 64), 5600);
+    }
+
+    @Test
+    public void testChunksStreamingRegexp() throws Exception {
+        assertChunksBudget(
+                "chunksStreamingRegexp",
+                regexp("dev\\w+> ", RegexEngine.STREAMING),
+                // measured 780054, the dropped input makes the engine scan the buffer again
+                880000);
+    }
+
+    private void assertChunksBudget(
+            final String name,
+            final Matcher<?> matcher,
+            final long bytesPerKb) throws Exception {
+        final byte[] data = (text(SIZE) + PROMPT).getBytes(UTF_8);
+        assertBudget(name, data.length, bytesPerKb, new Scenario() {
+            @Override
+            public void run() throws IOException {
+                final Expect expect = build(new ChunkedInputStream(data, SMALL_CHUNK))
+                        .withMaxBufferSize(CHUNK, OverflowPolicy.DROP_OLDEST)
+                        .build();
+                assertTrue(expect.expect(matcher).isSuccessful());
+                expect.close();
+            }
+        });
+    }
+
+    /**
+     * Generates lines of text which don't contain the prompt.
+     */
+    private static String text(final int size) {
+        final char[] chars = new char[size];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = i % LINE_LENGTH == LINE_LENGTH - 1 ? '\n' : (char) ('a' + i % 26);
+        }
+        return new String(chars);
+    }
+
+    private static ExpectBuilder build(final InputStream input) {
+        return new ExpectBuilder()
+                .withInputs(input)
+                .withInlineReading()
+                .withCharset(UTF_8)
+                .withBufferSize(CHUNK);
+    }
+
+    private void assertBudget(
+            final String name,
+            final int inputSize,
+            final long bytesPerKb,
+            final Scenario scenario) throws Exception {
+        final long threadId = Thread.currentThread().getId();
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            scenario.run();
+            min = Math.min(min, threadMXBean.getThreadAllocatedBytes(threadId) - before);
+        }
+        final long perKb = min * 1024 / inputSize;
+        assertTrue(
+                String.format("%s: %d bytes per KB, the budget is %d", name, perKb, bytesPerKb),
+                perKb <= bytesPerKb);
+    }
+
+    /**
+     * A measured scenario.
+     */
+    private interface Scenario {
+        void run() throws Exception;
+    }
+
+    /**
+     * Returns the data in chunks of the given size and never reports it available, as if it
+     * arrived from a remote peer.
+     */
+    private static final class ChunkedInputStream extends InputStream {
+        private final byte[] data;
+        private final int chunk;
+        private int pos;
+
+        ChunkedInputStream(final byte[] data, final int chunk) {
+            this.data = data;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            return pos < data.length ? data[pos++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (pos == data.length) {
+                return -1;
+            }
+            final int n = Math.min(Math.min(len, chunk), data.length - pos);
+            System.arraycopy(data, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for the input buffer backed by an array.
+ */
+public class ArrayInputBufferTest {
+
+    @Test
+    public void testAppendConsume() {
+        final ArrayInputBuffer buffer = new ArrayInputBuffer();
+        buffer.append("abc");
+        buffer.append("xdefx".toCharArray(), 1, 3);
+        assertEquals(buffer.length(), 6);
+        assertEquals(buffer.toString(), "abcdef");
+        buffer.consume(2);
+        assertEquals(buffer.toString(), "cdef");
+        assertEquals(buffer.charAt(0), 'c');
+        assertEquals(buffer.subSequence(1, 3), "de");
+        try {
+            buffer.charAt(4);
+            fail();
+        } catch (IndexOutOfBoundsException ok) {
+        }
+        try {
+            buffer.consume(5);
+            fail();
+        } catch (IndexOutOfBoundsException ok) {
+        }
+        buffer.consume(4);
+        assertEquals(buffer.length(), 0);
+        assertEquals(buffer.toString(), "");
+    }
+
+    @Test
+    public void testCompactionAndTrimming() {
+        final ArrayInputBuffer buffer = new ArrayInputBuffer();
+        final char[] chunk = new char[ArrayInputBuffer.INITIAL_CAPACITY / 4];
+        // a sliding window of data never grows the buffer
+        for (int i = 0; i < 100; i++) {
+            buffer.append(chunk, 0, chunk.length);
+            if (buffer.length() > chunk.length) {
+                buffer.consume(chunk.length);
+            }
+        }
+        assertEquals(buffer.capacity(), ArrayInputBuffer.INITIAL_CAPACITY);
+        // the array grows for a burst and shrinks when it's consumed
+        for (int i = 0; i < 100; i++) {
+            buffer.append(chunk, 0, chunk.length);
+        }
+        assertEquals(buffer.length(), chunk.length * 101);
+        buffer.consume(buffer.length() - 10);
+        assertEquals(buffer.capacity(), ArrayInputBuffer.INITIAL_CAPACITY);
+        assertEquals(buffer.length(), 10);
+    }
+
+    @Test
+    public void testViews() {
+        final ArrayInputBuffer buffer = new ArrayInputBuffer();
+        buffer.append("abcdef");
+        final InputView view = buffer.view();
+        buffer.append("gh");
+        assertEquals(view.length(), 6);
+        assertEquals(view.charAt(0), 'a');
+        view.detach();
+        buffer.consume(5);
+        final InputView view2 = buffer.view();
+        view2.detach();
+        buffer.consume(3);
+        // the detached views are not affected by the reuse and the growth of the array
+        final char[] chunk = new char[ArrayInputBuffer.INITIAL_CAPACITY];
+        for (int i = 0; i < 10; i++) {
+            buffer.append(chunk, 0, chunk.length / 2);
+            buffer.consume(chunk.length / 3);
+        }
+        assertEquals(view.subSequence(1, 3), "bc");
+        assertEquals(view.charAt(5), 'f');
+        assertEquals(view2.toString(), "fgh");
+        try {
+            view2.charAt(3);
+            fail();
+        } catch (IndexOutOfBoundsException ok) {
+        }
+    }
+
+    @Test
+    public void testViewsNotOverwritten() {
+        final ArrayInputBuffer buffer = new ArrayInputBuffer();
+        final char[] chunk = new char[ArrayInputBuffer.INITIAL_CAPACITY / 4];
+        Arrays.fill(chunk, 'x');
+        appendChunks(buffer, chunk, 3);
+        buffer.append("a");
+        buffer.consume(chunk.length * 3);
+        // the space is not reused under the last view, the buffer moves to a new array
+        final InputView view = buffer.view();
+        appendChunks(buffer, chunk, 3);
+        assertEquals(view.toString(), "a");
+        view.detach();
+
+        // the detached view copies the content when the array is reused
+        final InputView view2 = buffer.view();
+        view2.detach();
+        buffer.consume(buffer.length());
+        appendChunks(buffer, chunk, 4);
+        assertEquals(buffer.capacity(), ArrayInputBuffer.INITIAL_CAPACITY);
+        assertEquals(view2.length(), chunk.length * 3 + 1);
+        assertEquals(view2.charAt(0), 'a');
+        assertEquals(view.toString(), "a");
+    }
+
+    @Test
+    public void testCopiedView() {
+        final ArrayInputBuffer buffer = new ArrayInputBuffer();
+        buffer.append("abc");
+        final InputView view = buffer.view();
+        view.copy();
+        // the copied view is independent of the subsequent modifications
+        buffer.consume(3);
+        buffer.append("xyz");
+        assertEquals(buffer.capacity(), ArrayInputBuffer.INITIAL_CAPACITY);
+        assertEquals(buffer.toString(), "xyz");
+        assertEquals(view.toString(), "abc");
+        assertEquals(view.charAt(1), 'b');
+        assertEquals(view.subSequence(1, 3), "bc");
+        view.detach();
+        view.copy();
+        assertEquals(view.toString(), "abc");
+    }
+
+    private static void appendChunks(
+            final ArrayInputBuffer buffer,
+            final char[] chunk,
+            final int count) {
+        for (int i = 0; i < count; i++) {
+            buffer.append(chunk, 0, chunk.length);
+        }
+    }
+
+    @Test
+    public void testRandomOperations() {
+        final Random random = new Random(1);
+        final ArrayInputBuffer buffer = new ArrayInputBuffer();
+        final StringBuilder expected = new StringBuilder();
+        final List<InputView> views = new ArrayList<InputView>();
+        final List<String> contents = new ArrayList<String>();
+        for (int i = 0; i < 10000; i++) {
+            final int operation = random.nextInt(10);
+            if (operation < 6) {
+                final char[] chars = new char[random.nextInt(500)];
+                for (int j = 0; j < chars.length; j++) {
+                    chars[j] = (char) ('a' + random.nextInt(26));
+                }
+                buffer.append(chars, 0, chars.length);
+                expected.append(chars);
+            } else if (operation < 9) {
+                final int count = random.nextInt(expected.length() + 1);
+                final InputView view = buffer.view();
+                final String content = expected.toString();
+                view.detach();
+                buffer.consume(count);
+                expected.delete(0, count);
+                views.add(view);
+                contents.add(content);
+            } else if (expected.length() > 0) {
+                final int start = random.nextInt(expected.length());
+                assertEquals(buffer.charAt(start), expected.charAt(start));
+                assertEquals(
+                        buffer.substring(start, expected.length()),
+                        expected.substring(start));
+            }
+            assertEquals(buffer.toString(), expected.toString());
+        }
+        for (int i = 0; i < views.size(); i++) {
+            assertEquals(views.get(i).toString(), contents.get(i));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Pipe;
+import java.nio.charset.Charset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the transport reading a channel directly.
+ */
+public class ChannelTransportTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Pipe pipe;
+
+    @Before
+    public void setup() throws IOException {
+        pipe = Pipe.open();
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        pipe.sink().close();
+        pipe.source().close();
+    }
+
+    @Test
+    public void testReadChannel() throws IOException {
+        StringWriter echo = new StringWriter();
+        ChannelTransport transport = new ChannelTransport(
+                pipe.source(), UTF_8, 4, echo, false, null);
+        assertFalse(pipe.source().isBlocking());
+        CharBuffer dst = CharBuffer.allocate(2);
+        assertFalse(transport.await(1));
+        assertEquals(transport.read(dst), 0);
+
+        // a character split between the reads
+        byte[] bytes = "ab\u00e9\u20accd".getBytes(UTF_8);
+        pipe.sink().write(ByteBuffer.wrap(bytes));
+        StringBuilder received = new StringBuilder();
+        while (received.length() < 6) {
+            assertTrue(transport.await(1000));
+            dst.clear();
+            int len = transport.read(dst);
+            received.append(dst.array(), 0, len);
+        }
+        assertEquals(received.toString(), "ab\u00e9\u20accd");
+        assertEquals(echo.toString(), "ab\u00e9\u20accd");
+
+        pipe.sink().write(ByteBuffer.wrap(new byte[] {'x', (byte) 0xe2}));
+        pipe.sink().close();
+        received.setLength(0);
+        int len;
+        dst.clear();
+        while (transport.await(1000) && (len = transport.read(dst)) != -1) {
+            received.append(dst.array(), 0, len);
+            dst.clear();
+        }
+        assertEquals(received.toString(), "x\uFFFD");
+        assertTrue(transport.await(1));
+        assertEquals(transport.read(dst), -1);
+        transport.close();
+        try {
+            transport.await(1);
+            fail();
+        } catch (IOException ok) {
+        }
+    }
+
+    @Test
+    public void testUnsupported() throws IOException {
+        try {
+            new ChannelTransport(pipe.sink(), UTF_8, 4, null, false, null);
+            fail();
+        } catch (IllegalArgumentException ok) {
+        }
+        try {
+            new ChannelTransport(pipe.source(), UTF_8, 4, null, false, null).sink();
+            fail();
+        } catch (UnsupportedOperationException ok) {
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.TestUtils.LONG_TIMEOUT;
+import static net.sf.expectit.TestUtils.SMALL_TIMEOUT;
+import static net.sf.expectit.matcher.Matchers.contains;
+import static net.sf.expectit.matcher.Matchers.eof;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the expect operations performed by the reactor threads.
+ */
+public class ExpectReactorTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Pipe> pipes = new ArrayList<Pipe>();
+    private ExpectReactor reactor;
+
+    @Before
+    public void setup() throws IOException {
+        reactor = new ExpectReactor(2);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        reactor.close();
+        executor.shutdownNow();
+        for (Pipe pipe : pipes) {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    private Pipe openPipe() throws IOException {
+        Pipe pipe = Pipe.open();
+        pipes.add(pipe);
+        return pipe;
+    }
+
+    private Expect build(Pipe pipe) throws IOException {
+        return new ExpectBuilder()
+                .withInputChannels(pipe.source())
+                .withReactor(reactor)
+                .withTimeout(LONG_TIMEOUT, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    private static void write(Pipe pipe, String string) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(string.getBytes());
+        while (bytes.hasRemaining()) {
+            pipe.sink().write(bytes);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testManySessions() throws Exception {
+        final int sessions = 50;
+        final List<Expect> expects = new ArrayList<Expect>();
+        final List<Future<String>> futures = new ArrayList<Future<String>>();
+        for (int i = 0; i < sessions; i++) {
+            final Pipe pipe = openPipe();
+            final Expect expect = build(pipe);
+            expects.add(expect);
+            futures.add(
+                    executor.submit(
+                            new Callable<String>() {
+                                @Override
+                                public String call() throws Exception {
+                                    String before = expect.expect(contains("> ")).getBefore();
+                                    assertTrue(expect.expect(eof()).isSuccessful());
+                                    return before;
+                                }
+                            }));
+        }
+        Thread.sleep(SMALL_TIMEOUT);
+        for (int i = 0; i < sessions; i++) {
+            write(pipes.get(i), "session" + i);
+        }
+        for (int i = 0; i < sessions; i++) {
+            write(pipes.get(i), "> ");
+            pipes.get(i).sink().close();
+        }
+        for (int i = 0; i < sessions; i++) {
+            assertEquals(futures.get(i).get(), "session" + i);
+            expects.get(i).close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTimeout() throws Exception {
+        Pipe pipe = openPipe();
+        Expect expect = build(pipe);
+        write(pipe, "abc");
+        long start = System.currentTimeMillis();
+        Result result = expect.withTimeout(SMALL_TIMEOUT, TimeUnit.MILLISECONDS)
+                .expect(contains("x"));
+        assertFalse(result.isSuccessful());
+        assertEquals(result.getInput(), "abc");
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(elapsed >= SMALL_TIMEOUT && elapsed < LONG_TIMEOUT);
+        assertTrue(expect.expect(contains("b")).isSuccessful());
+        assertTrue(expect.withTimeout(1, TimeUnit.MILLISECONDS).expect(contains("c"))
+                .isSuccessful());
+        expect.close();
+    }
+
+    @Test(timeout = 20000)
+    public void testLargeInput() throws Exception {
+        final Pipe pipe = openPipe();
+        Expect expect = new ExpectBuilder()
+                .withInputChannels(pipe.source())
+                .withReactor(reactor)
+                .withBufferSize(16)
+                .withTimeout(LONG_TIMEOUT * 4, TimeUnit.MILLISECONDS)
+                .build();
+        final byte[] data = new byte[200000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + i % 26);
+        }
+        Future<Object> writer = executor.submit(
+                new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        write(pipe, new String(data) + "END");
+                        return null;
+                    }
+                });
+        Result result = expect.expect(contains("END"));
+        assertTrue(result.isSuccessful());
+        assertEquals(result.getBefore(), new String(data));
+        writer.get();
+        expect.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testInterrupt() throws Exception {
+        Pipe pipe = openPipe();
+        final Expect expect = build(pipe);
+        final Thread caller = Thread.currentThread();
+        executor.submit(
+                new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        Thread.sleep(SMALL_TIMEOUT);
+                        caller.interrupt();
+                        return null;
+                    }
+                });
+        try {
+            expect.expect(contains("x"));
+            fail();
+        } catch (ClosedByInterruptException ok) {
+            assertTrue(Thread.interrupted());
+        }
+        // the session is still usable
+        write(pipe, "x");
+        assertTrue(expect.expect(contains("x")).isSuccessful());
+        expect.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testClose() throws Exception {
+        Pipe pipe = openPipe();
+        final Expect expect = build(pipe);
+        Future<Result> future = executor.submit(
+                new Callable<Result>() {
+                    @Override
+                    public Result call() throws Exception {
+                        return expect.expect(contains("x"));
+                    }
+                });
+        Thread.sleep(SMALL_TIMEOUT);
+        reactor.close();
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ClosedChannelException);
+        }
+        try {
+            expect.expect(contains("x"));
+            fail();
+        } catch (ClosedChannelException ok) {
+        }
+        expect.close();
+
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseExpect() throws Exception {
+        Pipe pipe = openPipe();
+        final Expect expect = build(pipe);
+        Future<Result> future = executor.submit(
+                new Callable<Result>() {
+                    @Override
+                    public Result call() throws Exception {
+                        return expect.expect(contains("x"));
+                    }
+                });
+        Thread.sleep(SMALL_TIMEOUT);
+        expect.close();
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ClosedChannelException);
+        }
+        // the other sessions of the reactor are not affected
+        Pipe pipe2 = openPipe();
+        Expect expect2 = build(pipe2);
+        write(pipe2, "x");
+        assertTrue(expect2.expect(contains("x")).isSuccessful());
+        expect2.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testCallback() throws Exception {
+        final Pipe pipe = openPipe();
+        final Expect expect = build(pipe);
+        final BlockingQueue<Object> outcomes = new LinkedBlockingQueue<Object>();
+        final ExpectCallback<Result> callback = new ExpectCallback<Result>() {
+            @Override
+            public void completed(final Result result) {
+                outcomes.add(result);
+            }
+
+            @Override
+            public void failed(final Throwable error) {
+                outcomes.add(error);
+            }
+        };
+        reactor.expect(expect, contains("x"), callback);
+        try {
+            reactor.expect(expect, contains("y"), callback);
+            fail();
+        } catch (IllegalStateException ok) {
+        }
+        write(pipe, "abcx");
+        Result result = (Result) outcomes.poll(LONG_TIMEOUT, TimeUnit.MILLISECONDS);
+        assertEquals(result.getBefore(), "abc");
+
+        reactor.expectIn(expect, 0, SMALL_TIMEOUT, contains("y"), callback);
+        result = (Result) outcomes.poll(LONG_TIMEOUT, TimeUnit.MILLISECONDS);
+        assertFalse(result.isSuccessful());
+
+        reactor.expect(expect, contains("y"), callback);
+        pipe.sink().close();
+        assertTrue(outcomes.poll(LONG_TIMEOUT, TimeUnit.MILLISECONDS) instanceof EOFException);
+
+        ExpectReactor other = new ExpectReactor();
+        try {
+            other.expect(expect, contains("y"), callback);
+            fail();
+        } catch (IllegalArgumentException ok) {
+        } finally {
+            other.close();
+        }
+        expect.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testChannelClosedOutside() throws Exception {
+        final ExpectReactor single = new ExpectReactor();
+        try {
+            final Pipe pipe = openPipe();
+            final Expect expect = new ExpectBuilder()
+                    .withInputChannels(pipe.source())
+                    .withReactor(single)
+                    .withMatchTrigger(100, false, SMALL_TIMEOUT, TimeUnit.MILLISECONDS)
+                    .withTimeout(LONG_TIMEOUT, TimeUnit.MILLISECONDS)
+                    .build();
+            final BlockingQueue<Object> outcomes = new LinkedBlockingQueue<Object>();
+            single.expect(
+                    expect,
+                    contains("x"),
+                    new ExpectCallback<Result>() {
+                        @Override
+                        public void completed(final Result result) {
+                            outcomes.add(result);
+                        }
+
+                        @Override
+                        public void failed(final Throwable error) {
+                            outcomes.add(error);
+                        }
+                    });
+            write(pipe, "a");
+            Thread.sleep(SMALL_TIMEOUT / 2);
+            // the match trigger timer steps the operation after the key is cancelled
+            pipe.source().close();
+            assertTrue(
+                    outcomes.poll(LONG_TIMEOUT, TimeUnit.MILLISECONDS)
+                            instanceof ClosedChannelException);
+            expect.close();
+
+            // the other sessions of the reactor thread are not affected
+            final Pipe pipe2 = openPipe();
+            final Expect expect2 = new ExpectBuilder()
+                    .withInputChannels(pipe2.source())
+                    .withReactor(single)
+                    .build();
+            write(pipe2, "x");
+            assertTrue(expect2.expect(contains("x")).isSuccessful());
+            expect2.close();
+        } finally {
+            single.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTimersRemoved() throws Exception {
+        final Pipe pipe = openPipe();
+        final Expect expect = build(pipe);
+        final BlockingQueue<Object> outcomes = new LinkedBlockingQueue<Object>();
+        final ExpectCallback<Result> callback = new ExpectCallback<Result>() {
+            @Override
+            public void completed(final Result result) {
+                outcomes.add(result);
+            }
+
+            @Override
+            public void failed(final Throwable error) {
+                outcomes.add(error);
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            reactor.expect(expect, contains("x"), callback);
+            write(pipe, "x");
+            final Object outcome = outcomes.poll(LONG_TIMEOUT, TimeUnit.MILLISECONDS);
+            assertTrue(((Result) outcome).isSuccessful());
+        }
+        // the operations completed before their timeouts don't leave their timers behind
+        final ReactorLoop loop = ((AbstractExpectImpl) expect).getInputs()[0].getReactorLoop();
+        loop.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        outcomes.add(loop.getQueuedTimers());
+                    }
+                });
+        assertTrue((Integer) outcomes.poll(LONG_TIMEOUT, TimeUnit.MILLISECONDS) <= 1);
+        expect.close();
+    }
+
+    @Test
+    public void testRequiresChannels() throws IOException {
+        try {
+            new ExpectBuilder()
+                    .withInputs(new ByteArrayInputStream(new byte[0]))
+                    .withReactor(reactor)
+                    .build();
+            fail();
+        } catch (IllegalStateException ok) {
+        }
+        try {
+            new ExpectReactor(0);
+            fail();
+        } catch (IllegalArgumentException ok) {
+        }
+    }
+}
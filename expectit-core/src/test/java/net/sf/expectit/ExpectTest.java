@@ -47,24 +47,41 @@ import static org.mockito.Mockito.when;
 
 import com.jayway.awaitility.Awaitility;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import net.sf.expectit.echo.EchoOutput;
 import net.sf.expectit.filter.Filter;
+import net.sf.expectit.filter.Filters;
 import net.sf.expectit.matcher.Matcher;
 import net.sf.expectit.matcher.Matchers;
 import org.junit.After;
@@ -721,6 +738,605 @@ public class ExpectTest {
         assertFalse(executorService.isShutdown());
     }
 
+    @Test
+    public void testRingBuffer() throws Exception {
+        ExpectBuilder builder = new ExpectBuilder();
+        try {
+            builder.withRingBuffer(0);
+            fail();
+        } catch (IllegalArgumentException ignore) {
+        }
+        try {
+            builder.withRingBuffer((1 << 30) + 1);
+            fail();
+        } catch (IllegalArgumentException ignore) {
+        }
+        MockInputStream input1 = mockInputStream("abc");
+        MockInputStream input2 = mockInputStream("def");
+        builder.withInputs(input1.getStream(), input2.getStream());
+        builder.withRingBuffer(4);
+        builder.withTimeout(SMALL_TIMEOUT, TimeUnit.MILLISECONDS);
+        expect = builder.build();
+        input1.waitUntilReady();
+        input2.waitUntilReady();
+        assertTrue(expect.expect(contains("abc")).isSuccessful());
+        assertTrue(expect.expectIn(1, contains("def")).isSuccessful());
+        input1.push("0123456789");
+        assertTrue(expect.expect(contains("789")).isSuccessful());
+        input1.push(TestUtils.EOF);
+        assertTrue(expect.expect(Matchers.eof()).isSuccessful());
+        expect.close();
+
+        input1 = mockInputStream("abc");
+        input2 = mockInputStream("def");
+        builder.withInputs(input1.getStream(), input2.getStream());
+        builder.withCombineInputs(true);
+        expect = builder.build();
+        assertTrue(expect.expect(Matchers.allOf(contains("def"), contains("abc"))).isSuccessful());
+    }
+
+    @Test
+    public void testMaxBufferSize() throws Exception {
+        ExpectBuilder builder = new ExpectBuilder();
+        try {
+            builder.withMaxBufferSize(0, OverflowPolicy.DROP_OLDEST);
+            fail();
+        } catch (IllegalArgumentException ignore) {
+        }
+        try {
+            builder.withMaxBufferSize(1, null);
+            fail();
+        } catch (IllegalArgumentException ignore) {
+        }
+        final AtomicInteger dropped = new AtomicInteger();
+        MockInputStream input = mockInputStream("0123456789");
+        builder.withInputs(input.getStream());
+        builder.withTimeout(SMALL_TIMEOUT, TimeUnit.MILLISECONDS);
+        builder.withMaxBufferSize(4, OverflowPolicy.DROP_OLDEST);
+        builder.withListener(
+                new ExpectListenerAdapter() {
+                    @Override
+                    public void inputDropped(Object context, int length) {
+                        dropped.addAndGet(length);
+                    }
+                });
+        expect = builder.build();
+        input.waitUntilReady();
+        Result result = expect.expect(contains("0"));
+        assertFalse(result.isSuccessful());
+        assertEquals(result.getInput(), "6789");
+        assertEquals(((DroppedCharsAware) result).getDroppedChars(), 6);
+        result = expect.expect(contains("78"));
+        assertTrue(result.isSuccessful());
+        assertEquals(((DroppedCharsAware) result).getDroppedChars(), 0);
+        input.push("abcdef");
+        MultiResult multiResult = expect.expect(Matchers.anyOf(contains("x")));
+        assertEquals(multiResult.getInput(), "cdef");
+        assertEquals(((DroppedCharsAware) multiResult).getDroppedChars(), 3);
+        assertEquals(dropped.get(), 9);
+        expect.close();
+
+        input = mockInputStream("0123");
+        builder.withInputs(input.getStream());
+        builder.withMaxBufferSize(4, OverflowPolicy.FAIL_FAST);
+        expect = builder.build();
+        input.waitUntilReady();
+        assertTrue(expect.expect(contains("1")).isSuccessful());
+        input.push("456");
+        try {
+            expect.expect(contains("x"));
+            fail();
+        } catch (ExpectIOException e) {
+            assertEquals(e.getInputBuffer(), "23456");
+            assertEquals(e.getDroppedChars(), 5);
+        }
+        input.push("abc");
+        assertEquals(expect.expect(contains("b")).getBefore(), "a");
+        expect.close();
+
+        input = mockInputStream("0123456789");
+        builder.withInputs(input.getStream());
+        builder.withMaxBufferSize(4, OverflowPolicy.BLOCK_READER);
+        builder.withTimeout(LONG_TIMEOUT, TimeUnit.MILLISECONDS);
+        builder.withExceptionOnFailure();
+        expect = builder.build();
+        input.waitUntilReady();
+        long start = System.currentTimeMillis();
+        try {
+            expect.expect(contains("9"));
+            fail();
+        } catch (ExpectIOException e) {
+            assertEquals(e.getInputBuffer(), "0123");
+            assertEquals(e.getDroppedChars(), 0);
+        }
+        assertTrue(System.currentTimeMillis() - start < LONG_TIMEOUT);
+        assertEquals(expect.expect(contains("3")).getBefore(), "012");
+        assertEquals(expect.expect(contains("6")).getBefore(), "45");
+        assertEquals(expect.expect(contains("9")).getBefore(), "78");
+    }
+
+    @Test
+    public void testFlowControl() throws Exception {
+        ExpectBuilder builder = new ExpectBuilder();
+        try {
+            builder.withFlowControl(0, 0);
+            fail();
+        } catch (IllegalArgumentException ignore) {
+        }
+        try {
+            builder.withFlowControl(10, 10);
+            fail();
+        } catch (IllegalArgumentException ignore) {
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append(String.format("%09d\n", i));
+        }
+        builder.withInputs(new ByteArrayInputStream(text.toString().getBytes()));
+        builder.withBufferSize(10);
+        builder.withFlowControl(100, 50);
+        builder.withTimeout(SMALL_TIMEOUT, TimeUnit.MILLISECONDS);
+        expect = builder.build();
+        Result result = expect.expect(contains("000000099"));
+        assertFalse(result.isSuccessful());
+        assertEquals(result.getInput(), text.substring(0, 100));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(expect.expect(contains("\n")).getBefore(), String.format("%09d", i));
+        }
+        assertTrue(expect.expect(Matchers.eof()).isSuccessful());
+    }
+
+    @Test
+    public void testReadAvailableData() throws Exception {
+        byte[] bytes = new byte[10000];
+        Arrays.fill(bytes, (byte) 'a');
+        ExpectBuilder builder = new ExpectBuilder()
+                .withInputs(new ByteArrayInputStream(bytes))
+                .withBufferSize(10)
+                .withTimeout(SMALL_TIMEOUT, TimeUnit.MILLISECONDS);
+        expect = builder.build();
+        // let the data be copied to the transport
+        Thread.sleep(SMALL_TIMEOUT);
+        final AtomicInteger count = new AtomicInteger();
+        Result result = expect.expect(
+                new Matcher<Result>() {
+                    @Override
+                    public Result matches(final String input, final boolean isEof) {
+                        count.incrementAndGet();
+                        return Matchers.contains("b").matches(input, isEof);
+                    }
+                });
+        assertFalse(result.isSuccessful());
+        assertEquals(result.getInput().length(), 10000);
+        // the initial run, the run on the whole data and the run on the end of the input
+        assertTrue(String.valueOf(count.get()), count.get() <= 3);
+    }
+
+    @Test
+    public void testMatchTrigger() throws Exception {
+        ExpectBuilder builder = new ExpectBuilder();
+        try {
+            builder.withMatchTrigger(0, false, 1, TimeUnit.SECONDS);
+            fail();
+        } catch (IllegalArgumentException ignore) {
+        }
+        try {
+            builder.withMatchTrigger(1, false, 0, TimeUnit.SECONDS);
+            fail();
+        } catch (IllegalArgumentException ignore) {
+        }
+        MockInputStream input = mockInputStream("");
+        builder.withInputs(input.getStream());
+        builder.withMatchTrigger(100, true, 1, TimeUnit.DAYS);
+        builder.withTimeout(LONG_TIMEOUT, TimeUnit.MILLISECONDS);
+        expect = builder.build();
+        input.waitUntilReady();
+
+        // the matcher runs before the timeout
+        input.push("abc");
+        long start = System.currentTimeMillis();
+        Expect smallTimeout = expect.withTimeout(SMALL_TIMEOUT, TimeUnit.MILLISECONDS);
+        assertTrue(smallTimeout.expect(contains("abc")).isSuccessful());
+        assertTrue(System.currentTimeMillis() - start >= SMALL_TIMEOUT);
+
+        // a line break runs the matcher immediately
+        input.push("x\n");
+        start = System.currentTimeMillis();
+        assertTrue(expect.expect(contains("x")).isSuccessful());
+        assertTrue(System.currentTimeMillis() - start < LONG_TIMEOUT);
+        expect.close();
+
+        input = mockInputStream("");
+        builder.withInputs(input.getStream());
+        builder.withMatchTrigger(100, false, SMALL_TIMEOUT / 2, TimeUnit.MILLISECONDS);
+        expect = builder.build();
+        input.waitUntilReady();
+        input.push("abc");
+        start = System.currentTimeMillis();
+        assertTrue(expect.expect(contains("abc")).isSuccessful());
+        assertTrue(System.currentTimeMillis() - start < LONG_TIMEOUT);
+    }
+
+    @Test(timeout = 10000)
+    public void testInputChannels() throws Exception {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress("127.0.0.1", 0));
+        SocketChannel client = SocketChannel.open(server.socket().getLocalSocketAddress());
+        SocketChannel session = server.accept();
+        try {
+            ExecutorService executor = mock(ExecutorService.class);
+            StringWriter echo = new StringWriter();
+            ExpectBuilder builder = new ExpectBuilder()
+                    .withInputChannels(client)
+                    .withOutputChannel(client)
+                    .withEchoInput(echo)
+                    .withExecutor(executor)
+                    .withTimeout(LONG_TIMEOUT, TimeUnit.MILLISECONDS);
+            expect = builder.build();
+            session.write(ByteBuffer.wrap("login: ".getBytes()));
+            assertTrue(expect.expect(contains("login:")).isSuccessful());
+            expect.sendLine("user");
+            ByteBuffer received = ByteBuffer.allocate(5);
+            while (received.hasRemaining()) {
+                session.read(received);
+            }
+            assertEquals(new String(received.array()), "user\n");
+            session.close();
+            assertTrue(expect.expect(Matchers.eof()).isSuccessful());
+            assertEquals(echo.toString(), "login: ");
+            verify(executor, never()).submit(Mockito.<Callable<Object>>any());
+            expect.close();
+
+            builder.withCombineInputs(true);
+            try {
+                builder.build();
+                fail();
+            } catch (IllegalStateException ok) {
+            }
+        } finally {
+            client.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        ExpectBuilder builder = new ExpectBuilder();
+        if (!VirtualThreads.isSupported()) {
+            try {
+                builder.withVirtualThreads();
+                fail();
+            } catch (UnsupportedOperationException ok) {
+            }
+            return;
+        }
+        final AtomicReference<Thread> reader = new AtomicReference<Thread>();
+        final InputStream data = new ByteArrayInputStream("abc".getBytes());
+        InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                reader.set(Thread.currentThread());
+                return data.read(b, off, len);
+            }
+        };
+        expect = builder.withInputs(input)
+                .withVirtualThreads()
+                .withTimeout(LONG_TIMEOUT, TimeUnit.MILLISECONDS)
+                .build();
+        assertTrue(expect.expect(contains("abc")).isSuccessful());
+        assertTrue(expect.expect(Matchers.eof()).isSuccessful());
+        assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(reader.get()));
+    }
+
+    @Test
+    public void testSharedExecutor() throws Exception {
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        final int sessions = 20;
+        for (int i = 0; i < sessions; i++) {
+            final InputStream data = new ByteArrayInputStream("abc".getBytes());
+            InputStream input = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read(final byte[] b, final int off, final int len)
+                        throws IOException {
+                    threads.add(Thread.currentThread());
+                    return data.read(b, off, len);
+                }
+            };
+            expect = new ExpectBuilder().withInputs(input).build();
+            assertTrue(expect.expect(Matchers.eof()).isSuccessful());
+            expect.close();
+            // lets the copier thread return to the pool
+            Thread.sleep(10);
+        }
+        assertTrue(threads.size() < sessions);
+        for (Thread thread : threads) {
+            assertTrue(thread.isDaemon());
+            assertTrue(thread.getName().startsWith("expect-"));
+        }
+    }
+
+
+    @Test
+    public void testInlineReading() throws Exception {
+        final AtomicReference<Thread> reader = new AtomicReference<Thread>();
+        final InputStream data = new ByteArrayInputStream("abc\ndef\nghi".getBytes());
+        InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                reader.set(Thread.currentThread());
+                return data.read(b, off, len);
+            }
+        };
+        StringBuilder echo = new StringBuilder();
+        expect = new ExpectBuilder()
+                .withInputs(input, new ByteArrayInputStream("xyz".getBytes()))
+                .withInlineReading()
+                .withBufferSize(4)
+                .withEchoInput(echo)
+                .withTimeout(SMALL_TIMEOUT, TimeUnit.MILLISECONDS)
+                .build();
+        assertEquals(expect.expect(contains("def")).getBefore(), "abc\n");
+        assertEquals(reader.get(), Thread.currentThread());
+        assertFalse(expect.expect(contains("def")).isSuccessful());
+        assertEquals(expect.expect(Matchers.eof()).getBefore(), "\nghi");
+        assertEquals(expect.expectIn(1, Matchers.eof()).getBefore(), "xyz");
+        assertEquals(echo.toString(), "abc\ndef\nghixyz");
+
+        try {
+            new ExpectBuilder()
+                    .withInputs(input, input)
+                    .withInlineReading()
+                    .withCombineInputs(true)
+                    .build();
+            fail();
+        } catch (IllegalStateException ok) {
+        }
+        try {
+            new ExpectBuilder()
+                    .withInputs(input)
+                    .withInlineReading()
+                    .withPollingCopier(1, TimeUnit.MILLISECONDS)
+                    .build();
+            fail();
+        } catch (IllegalStateException ok) {
+        }
+    }
+
+    @Test
+    public void testInlineReadingNoData() throws Exception {
+        final AtomicInteger reads = new AtomicInteger();
+        final AtomicReference<InputStream> data = new AtomicReference<InputStream>();
+        InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                reads.incrementAndGet();
+                // returns no data without blocking until the data is set
+                return data.get() == null ? 0 : data.get().read(b, off, len);
+            }
+        };
+        expect = new ExpectBuilder()
+                .withInputs(input)
+                .withInlineReading()
+                .withTimeout(SMALL_TIMEOUT, TimeUnit.MILLISECONDS)
+                .build();
+        final long start = System.currentTimeMillis();
+        assertFalse(expect.expect(contains("abc")).isSuccessful());
+        assertTrue(System.currentTimeMillis() - start >= SMALL_TIMEOUT);
+        // the stream is polled with a delay instead of spinning
+        assertTrue(reads.get() < 100);
+
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.schedule(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        data.set(new ByteArrayInputStream("abc".getBytes()));
+                    }
+                },
+                SMALL_TIMEOUT / 2,
+                TimeUnit.MILLISECONDS);
+        assertTrue(expect.withTimeout(LONG_TIMEOUT, TimeUnit.MILLISECONDS)
+                .expect(contains("abc")).isSuccessful());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        final long globalBytes = GlobalMetrics.get().getBytesReceived();
+        final long globalCalls = GlobalMetrics.get().getExpectCalls();
+        final MockInputStream input = mockInputStream("abc\ndef");
+        expect = new ExpectBuilder()
+                .withInputs(input.getStream(), new ByteArrayInputStream("xyz".getBytes()))
+                .withInputFilters(Filters.removeColors())
+                .withTimeout(SMALL_TIMEOUT, TimeUnit.MILLISECONDS)
+                .build();
+        assertTrue(expect.expect(contains("abc")).isSuccessful());
+        assertFalse(expect.expect(times(2, contains("d"))).isSuccessful());
+        input.push(TestUtils.EOF);
+        assertTrue(expect.expect(LONG_TIMEOUT, Matchers.eof()).isSuccessful());
+        try {
+            expect.expect(contains("def"));
+            fail();
+        } catch (EOFException ok) {
+        }
+        assertTrue(expect.expectIn(1, contains("xyz")).isSuccessful());
+
+        final ExpectMetrics input0 = expect.getMetrics(0);
+        assertEquals(input0.getBytesReceived(), 7);
+        assertTrue(input0.getChunksReceived() >= 1);
+        assertTrue(input0.getDecodeTimeNanos() > 0);
+        assertTrue(input0.getFilterTimeNanos() > 0);
+        assertTrue(input0.getMatcherEvaluations() >= 4);
+        assertTrue(input0.getMatcherTimeNanos() > 0);
+        assertEquals(input0.getExpectCalls(), 4);
+        assertTrue(input0.getExpectTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(SMALL_TIMEOUT));
+        assertEquals(input0.getTimeouts(), 1);
+        assertEquals(input0.getEofs(), 1);
+        assertEquals(input0.getBufferHighWatermark(), 7);
+
+        final ExpectMetrics metrics = expect.getMetrics();
+        assertEquals(metrics.getBytesReceived(), 10);
+        assertEquals(metrics.getExpectCalls(), 5);
+        assertEquals(metrics.getBufferHighWatermark(), 7);
+        assertTrue(metrics.toString().contains("bytesReceived=10"));
+        try {
+            expect.getMetrics(2);
+            fail();
+        } catch (IllegalArgumentException ok) {
+        }
+
+        assertTrue(GlobalMetrics.get().getBytesReceived() - globalBytes >= 10);
+        expect.close();
+        assertTrue(GlobalMetrics.get().getBytesReceived() - globalBytes >= 10);
+        assertTrue(GlobalMetrics.get().getExpectCalls() - globalCalls >= 5);
+        assertEquals(expect.getMetrics().getBytesReceived(), 10);
+    }
+
+    @Test
+    public void testMetricsMBean() throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(GlobalMetrics.OBJECT_NAME);
+        GlobalMetrics.registerMBean();
+        try {
+            // registering twice is harmless
+            GlobalMetrics.registerMBean();
+            expect = new ExpectBuilder()
+                    .withInputs(new ByteArrayInputStream("abc".getBytes()))
+                    .build();
+            assertTrue(expect.expect(contains("abc")).isSuccessful());
+            assertTrue((Long) server.getAttribute(name, "BytesReceived") >= 3);
+            assertTrue((Long) server.getAttribute(name, "ExpectCalls") >= 1);
+        } finally {
+            GlobalMetrics.unregisterMBean();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testListener() throws Exception {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final StringBuilder received = new StringBuilder();
+        final ExpectListener listener = new ExpectListenerAdapter() {
+            @Override
+            public void chunkReceived(
+                    int input, char[] chars, int offset, int length, int bytes) {
+                received.append(chars, offset, length);
+                events.add("chunk:" + input + ":" + bytes);
+            }
+
+            @Override
+            public Object filterStarted(int input, int length) {
+                return "filter:" + input + ":" + length;
+            }
+
+            @Override
+            public void filterCompleted(Object context, int length) {
+                events.add(context + ":" + length);
+            }
+
+            @Override
+            public Object expectStarted(int input, Matcher<?> matcher, long timeoutMs) {
+                return "expect:" + input + ":" + matcher + ":" + timeoutMs;
+            }
+
+            @Override
+            public void matchSucceeded(Object context, Result result) {
+                events.add(context + ":success:" + result.end());
+            }
+
+            @Override
+            public void timeout(Object context, Result result) {
+                events.add(context + ":timeout");
+            }
+
+            @Override
+            public void eof(Object context, Result result) {
+                events.add(context + ":eof");
+            }
+
+            @Override
+            public void expectFailed(Object context, Throwable error) {
+                events.add(context + ":" + error.getClass().getSimpleName());
+            }
+
+            @Override
+            public Object sendStarted(byte[] bytes, int offset, int length) {
+                return "send:" + new String(bytes, offset, length);
+            }
+
+            @Override
+            public void sendCompleted(Object context) {
+                events.add(context.toString());
+            }
+        };
+        final MockInputStream input = mockInputStream("abc\u001b[31m");
+        expect = new ExpectBuilder()
+                .withInputs(input.getStream())
+                .withOutput(new ByteArrayOutputStream())
+                .withInputFilters(Filters.removeColors())
+                .withTimeout(SMALL_TIMEOUT, TimeUnit.MILLISECONDS)
+                .withListener(listener)
+                .build();
+        assertTrue(expect.expect(LONG_TIMEOUT, contains("b")).isSuccessful());
+        assertFalse(expect.expect(contains("d")).isSuccessful());
+        expect.sendLine("x");
+        input.push(TestUtils.EOF);
+        assertFalse(expect.expect(LONG_TIMEOUT, contains("d")).isSuccessful());
+        assertEquals(received.toString(), "abc\u001b[31m");
+        assertEquals(
+                events,
+                Arrays.asList(
+                        "chunk:0:8",
+                        "filter:0:8:8",
+                        "expect:0:contains('b'):" + LONG_TIMEOUT + ":success:2",
+                        "expect:0:contains('d'):" + SMALL_TIMEOUT + ":timeout",
+                        "send:x\n",
+                        "expect:0:contains('d'):" + LONG_TIMEOUT + ":eof"));
+    }
+
+    @Test
+    public void testUserDefinedResultFailure() throws Exception {
+        final Result failure = mock(Result.class);
+        when(failure.getInput()).thenReturn("abc");
+        final Matcher<Result> matcher = new Matcher<Result>() {
+            @Override
+            public Result matches(String input, boolean isEof) {
+                return failure;
+            }
+        };
+        expect = new ExpectBuilder()
+                .withInputs(new ByteArrayInputStream("abc".getBytes()))
+                .withTimeout(SMALL_TIMEOUT, TimeUnit.MILLISECONDS)
+                .withExceptionOnFailure()
+                .build();
+        try {
+            expect.expect(matcher);
+            fail();
+        } catch (ExpectIOException e) {
+            // the result is not required to report the dropped characters
+            assertEquals(e.getDroppedChars(), 0);
+        }
+    }
 
     private static class MockedSyncEchoOutput implements EchoOutput {
         private final EchoOutput echoMock;
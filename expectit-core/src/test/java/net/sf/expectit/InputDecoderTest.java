@@ -0,0 +1,92 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.Charset;
+import org.junit.Test;
+
+/**
+ * Tests for the incremental input decoder.
+ */
+public class InputDecoderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testSplitCharacters() {
+        final String text = "abc\u00e9\u20ac\ud83d\ude00xyz";
+        final byte[] bytes = text.getBytes(UTF_8);
+        for (int chunk = 1; chunk <= bytes.length; chunk++) {
+            final InputDecoder decoder = new InputDecoder(UTF_8, 2);
+            final StringBuilder result = new StringBuilder();
+            for (int i = 0; i < bytes.length; i += chunk) {
+                result.append(decoder.decode(bytes, i, Math.min(chunk, bytes.length - i)));
+            }
+            result.append(decoder.finish());
+            assertEquals("chunk " + chunk, text, result.toString());
+        }
+    }
+
+    @Test
+    public void testSingleByteCharsets() {
+        final byte[] bytes = {'a', (byte) 0xe9, 'b'};
+        final Charset latin1 = Charset.forName("ISO-8859-1");
+        final Charset ascii = Charset.forName("US-ASCII");
+        assertEquals(
+                new InputDecoder(latin1, 1).decode(bytes, 0, 3).toString(),
+                new String(bytes, latin1));
+        assertEquals(
+                new InputDecoder(ascii, 1).decode(bytes, 0, 3).toString(),
+                new String(bytes, ascii));
+        assertEquals(
+                new InputDecoder(Charset.forName("UTF-16BE"), 1).decode(bytes, 1, 2).toString(),
+                new String(bytes, 1, 2, Charset.forName("UTF-16BE")));
+    }
+
+    @Test
+    public void testMalformedInput() {
+        final byte[] bytes = {'a', (byte) 0xff, 'b', (byte) 0xe2, (byte) 0x82};
+        final InputDecoder decoder = new InputDecoder(UTF_8, 16);
+        final String result = decoder.decode(bytes, 0, bytes.length).toString()
+                + decoder.finish().toString();
+        assertEquals(new String(bytes, UTF_8), result);
+        // the decoder is reset after the end of input
+        assertEquals("c", decoder.decode(new byte[] {'c'}, 0, 1).toString());
+    }
+
+    @Test
+    public void testMonitor() {
+        final MetricsCounters metrics = new MetricsCounters();
+        final InputDecoder decoder = new InputDecoder(
+                UTF_8,
+                16,
+                new InputMonitor(0, metrics, null));
+        decoder.decode(new byte[] {'a', (byte) 0xe2}, 0, 2);
+        assertEquals(metrics.getChunksReceived(), 1);
+        // the incomplete character decoded at the end of input is reported without the bytes
+        assertEquals(decoder.finish().toString(), "\ufffd");
+        assertEquals(metrics.getChunksReceived(), 2);
+        assertEquals(metrics.getBytesReceived(), 2);
+        decoder.finish();
+        assertEquals(metrics.getChunksReceived(), 2);
+    }
+}
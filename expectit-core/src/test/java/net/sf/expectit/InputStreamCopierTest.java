@@ -23,25 +23,32 @@ package net.sf.expectit;
 import static com.google.common.io.Resources.getResource;
 import static com.google.common.io.Resources.toByteArray;
 import static net.sf.expectit.ExpectBuilder.DEFAULT_BUFFER_SIZE;
+import static net.sf.expectit.TestUtils.LONG_TIMEOUT;
+import static net.sf.expectit.TestUtils.SMALL_TIMEOUT;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
 import com.google.common.base.Charsets;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.io.StringWriter;
 import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.WritableByteChannel;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -53,16 +60,14 @@ public class InputStreamCopierTest {
     private ExecutorService executor = Executors.newCachedThreadPool();
 
     private InputStream input;
-    private ByteArrayOutputStream sink;
+    private StringWriter channel;
     private URL resource;
-    private WritableByteChannel channel;
 
     @Before
     public void setup() throws IOException {
         resource = getResource("sample.txt");
         input = resource.openStream();
-        sink = new ByteArrayOutputStream();
-        channel = Channels.newChannel(sink);
+        channel = new StringWriter();
     }
 
     @After
@@ -72,18 +77,18 @@ public class InputStreamCopierTest {
 
     @Test
     public void testCopy() throws IOException, ExecutionException, InterruptedException {
-        final InputStreamCopier copier =
-                new InputStreamCopier(channel, input, DEFAULT_BUFFER_SIZE, null, null, false);
+        final InputStreamCopier copier = new InputStreamCopier(
+                channel, input, DEFAULT_BUFFER_SIZE, null, null, false, null, null);
         executor.submit(copier).get();
-        assertArrayEquals(toByteArray(resource), sink.toByteArray());
+        assertEquals(new String(toByteArray(resource)), channel.toString());
     }
 
     @Test
     public void testClosedStream() throws IOException, ExecutionException, InterruptedException {
         input.close();
         try {
-            final InputStreamCopier copier =
-                    new InputStreamCopier(channel, input, DEFAULT_BUFFER_SIZE, null, null, false);
+            final InputStreamCopier copier = new InputStreamCopier(
+                    channel, input, DEFAULT_BUFFER_SIZE, null, null, false, null, null);
             executor.submit(copier).get();
             fail();
         } catch (ExecutionException e) {
@@ -94,8 +99,8 @@ public class InputStreamCopierTest {
     @Test
     public void testEcho() throws ExecutionException, InterruptedException, IOException {
         final StringWriter echo = mock(StringWriter.class);
-        final InputStreamCopier copier =
-                new InputStreamCopier(channel, input, DEFAULT_BUFFER_SIZE, echo, null, true);
+        final InputStreamCopier copier = new InputStreamCopier(
+                channel, input, DEFAULT_BUFFER_SIZE, echo, null, true, null, null);
         executor.submit(copier).get();
         final String string = new String(toByteArray(resource));
         verify(echo).append(string);
@@ -106,8 +111,8 @@ public class InputStreamCopierTest {
     public void testEcho2() throws ExecutionException, InterruptedException, IOException {
         final Appendable echo = mock(Appendable.class);
         final Charset utf16 = Charsets.UTF_16;
-        final InputStreamCopier copier =
-                new InputStreamCopier(channel, input, DEFAULT_BUFFER_SIZE, echo, utf16, false);
+        final InputStreamCopier copier = new InputStreamCopier(
+                channel, input, DEFAULT_BUFFER_SIZE, echo, utf16, false, null, null);
         executor.submit(copier).get();
         final String string = new String(toByteArray(resource), utf16);
         verify(echo).append(string);
@@ -117,9 +122,142 @@ public class InputStreamCopierTest {
     public void testEcho3() throws ExecutionException, InterruptedException, IOException {
         final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
         final PrintStream echo = new PrintStream(bytes);
-        final InputStreamCopier copier =
-                new InputStreamCopier(channel, input, DEFAULT_BUFFER_SIZE, echo, null, false);
+        final InputStreamCopier copier = new InputStreamCopier(
+                channel, input, DEFAULT_BUFFER_SIZE, echo, null, false, null, null);
         executor.submit(copier).get();
         assertArrayEquals(toByteArray(resource), bytes.toByteArray());
     }
+
+    @Test
+    public void testSplitCharacters() throws Exception {
+        final Charset utf8 = Charsets.UTF_8;
+        final String text = "\u00e9\u20ac\ud83d\ude00";
+        final StringWriter echo = new StringWriter();
+        final InputStreamCopier copier = new InputStreamCopier(
+                channel,
+                new ByteArrayInputStream(text.getBytes(utf8)),
+                1,
+                echo,
+                utf8,
+                false,
+                null,
+                null);
+        executor.submit(copier).get();
+        assertEquals(text, channel.toString());
+        assertEquals(text, echo.toString());
+    }
+
+    @Test(timeout = 10000)
+    public void testFlowControl() throws Exception {
+        final AtomicInteger bytesRead = new AtomicInteger();
+        final InputStream source = new ByteArrayInputStream(new byte[1000]);
+        final InputStream counting = new FilterInputStream(source) {
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                final int n = super.read(b, off, len);
+                if (n > 0) {
+                    bytesRead.addAndGet(n);
+                }
+                return n;
+            }
+        };
+        final FlowControl flowControl = new FlowControl(100, 50);
+        final Future<Object> future = executor.submit(
+                new InputStreamCopier(channel, counting, 10, null, null, false, flowControl, null));
+        waitUntilRead(bytesRead, 100);
+        Thread.sleep(SMALL_TIMEOUT);
+        assertEquals(bytesRead.get(), 100);
+        assertEquals(channel.toString().length(), 100);
+
+        flowControl.consumed(40);
+        Thread.sleep(SMALL_TIMEOUT);
+        assertEquals(bytesRead.get(), 100);
+
+        flowControl.consumed(10);
+        waitUntilRead(bytesRead, 150);
+        Thread.sleep(SMALL_TIMEOUT);
+        assertEquals(bytesRead.get(), 150);
+        assertFalse(future.isDone());
+
+        flowControl.close();
+        future.get();
+        assertEquals(bytesRead.get(), 1000);
+    }
+
+    @Test
+    public void testCopyAvailable() throws Exception {
+        final FlowControl flowControl = new FlowControl(100, 50);
+        final InputStreamCopier copier = new InputStreamCopier(
+                channel, new ByteArrayInputStream(new byte[1000]), 10, null, null, false,
+                flowControl,
+                null);
+        int total = 0;
+        int len;
+        while ((len = copier.copyAvailable()) > 0) {
+            total += len;
+        }
+        assertEquals(total, 100);
+        assertTrue(flowControl.isPaused());
+
+        flowControl.consumed(50);
+        assertFalse(flowControl.isPaused());
+        assertEquals(copier.copyAvailable(), 10);
+
+        flowControl.close();
+        copier.copyToEnd();
+        copier.finish();
+        assertEquals(channel.toString().length(), 1000);
+    }
+
+    @Test
+    public void testCopyToEndFlowControl() throws Exception {
+        final FlowControl flowControl = new FlowControl(100, 50);
+        final byte[] bytes = new byte[100];
+        // the incomplete character is decoded when the copier finishes
+        bytes[bytes.length - 1] = (byte) 0xe2;
+        final InputStreamCopier copier = new InputStreamCopier(
+                channel, new ByteArrayInputStream(bytes), 10, null, Charsets.UTF_8, false,
+                flowControl,
+                null);
+        copier.copyToEnd();
+        assertFalse(flowControl.isPaused());
+        copier.finish();
+        assertTrue(flowControl.isPaused());
+        assertEquals(channel.toString().length(), 100);
+
+        flowControl.consumed(50);
+        assertFalse(flowControl.isPaused());
+    }
+
+    @Test
+    public void testCopyAvailableFullTransport() throws Exception {
+        final RingBufferTransport transport = new RingBufferTransport(16);
+        final InputStreamCopier copier = new InputStreamCopier(
+                transport.sink(), new ByteArrayInputStream(new byte[100]), 10, null, null, false,
+                null,
+                null);
+        assertEquals(copier.copyAvailable(), 10);
+        assertEquals(copier.copyAvailable(), 6);
+        // the transport is full, the copier doesn't block
+        assertEquals(copier.copyAvailable(), 0);
+        assertFalse(copier.copyToEnd());
+
+        final CharBuffer chars = CharBuffer.allocate(100);
+        int total = transport.read(chars);
+        assertEquals(copier.copyAvailable(), 10);
+        while (!copier.copyToEnd()) {
+            total += transport.read(chars);
+        }
+        copier.finish();
+        total += transport.read(chars);
+        assertEquals(total, 100);
+    }
+
+    private static void waitUntilRead(final AtomicInteger bytesRead, final int expected)
+            throws InterruptedException {
+        final long timeToStop = System.currentTimeMillis() + LONG_TIMEOUT;
+        while (bytesRead.get() < expected && System.currentTimeMillis() < timeToStop) {
+            Thread.sleep(1);
+        }
+    }
 }
@@ -0,0 +1,169 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import net.sf.expectit.matcher.Matcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the debug logging built on the listener.
+ */
+public class LoggingListenerTest {
+    private final Logger logger = Logger.getLogger("net.sf.expectit");
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Object> contexts = Collections.synchronizedList(new ArrayList<Object>());
+    private final Handler handler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            messages.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    private final ExpectListener listener = new ExpectListenerAdapter() {
+        @Override
+        public Object expectStarted(int input, Matcher<?> matcher, long timeoutMs) {
+            return "context";
+        }
+
+        @Override
+        public void matcherEvaluated(Object context, Result result, int length, long nanos) {
+            contexts.add(context);
+        }
+
+        @Override
+        public void matchSucceeded(Object context, Result result) {
+            contexts.add(context);
+        }
+    };
+    private Level level;
+
+    @Before
+    public void setup() {
+        level = logger.getLevel();
+        handler.setLevel(Level.FINE);
+        logger.addHandler(handler);
+    }
+
+    @After
+    public void cleanup() {
+        logger.removeHandler(handler);
+        logger.setLevel(level);
+    }
+
+    @Test
+    public void testLogging() throws IOException {
+        logger.setLevel(Level.FINE);
+        expectAndSend();
+        assertTrue(messages.contains("Received from input #0: abc\\n"));
+        assertTrue(
+                messages.contains(
+                        "Expect matcher 'contains('b')' with timeout 1000 (ms) in input #0"));
+        assertTrue(hasMessage("Matcher contains('b') result: "));
+        assertTrue(hasMessage("Matcher contains('b') succeeded. Operation time: "));
+        assertTrue(messages.contains("Writing bytes: x\\n"));
+        assertTrue(contexts.size() >= 2);
+        assertEquals(Collections.frequency(contexts, "context"), contexts.size());
+    }
+
+    @Test
+    public void testLoggingDisabled() throws IOException {
+        logger.setLevel(Level.INFO);
+        expectAndSend();
+        assertTrue(messages.isEmpty());
+        assertTrue(contexts.size() >= 2);
+        assertEquals(Collections.frequency(contexts, "context"), contexts.size());
+    }
+
+    @Test
+    public void testLoggingEnabledAfterBuild() throws IOException {
+        logger.setLevel(Level.INFO);
+        final Expect expect = build();
+        try {
+            logger.setLevel(Level.FINE);
+            expectAndSend(expect);
+        } finally {
+            // closing logs the released resources directly
+            logger.setLevel(Level.INFO);
+            expect.close();
+        }
+        assertTrue(messages.isEmpty());
+        assertEquals(Collections.frequency(contexts, "context"), contexts.size());
+    }
+
+    private void expectAndSend() throws IOException {
+        final Expect expect = build();
+        try {
+            expectAndSend(expect);
+        } finally {
+            expect.close();
+        }
+    }
+
+    private void expectAndSend(final Expect expect) throws IOException {
+        assertTrue(expect.expect(contains("b")).isSuccessful());
+        expect.sendLine("x");
+    }
+
+    private Expect build() throws IOException {
+        return new ExpectBuilder()
+                .withInputs(new ByteArrayInputStream("abc\n".getBytes()))
+                .withOutput(new ByteArrayOutputStream())
+                .withInlineReading()
+                .withTimeout(1, TimeUnit.SECONDS)
+                .withListener(listener)
+                .build();
+    }
+
+    private boolean hasMessage(final String prefix) {
+        synchronized (messages) {
+            for (String message : messages) {
+                if (message.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -27,9 +27,11 @@ import static net.sf.expectit.matcher.Matchers.allOf;
 import static net.sf.expectit.matcher.Matchers.anyOf;
 import static net.sf.expectit.matcher.Matchers.anyString;
 import static net.sf.expectit.matcher.Matchers.contains;
+import static net.sf.expectit.matcher.Matchers.endsWith;
 import static net.sf.expectit.matcher.Matchers.eof;
 import static net.sf.expectit.matcher.Matchers.exact;
 import static net.sf.expectit.matcher.Matchers.matches;
+import static net.sf.expectit.matcher.Matchers.promptRegexp;
 import static net.sf.expectit.matcher.Matchers.regexp;
 import static net.sf.expectit.matcher.Matchers.sequence;
 import static net.sf.expectit.matcher.Matchers.startsWith;
@@ -54,8 +56,12 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
+import net.sf.expectit.matcher.CharSequenceMatcher;
 import net.sf.expectit.matcher.Matcher;
+import net.sf.expectit.matcher.MatcherState;
 import net.sf.expectit.matcher.Matchers;
+import net.sf.expectit.matcher.RegexEngine;
+import net.sf.expectit.matcher.StatefulMatcher;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -78,16 +84,17 @@ public class MatcherTest {
     @Before
     public void setup() throws Exception {
         mock = TestUtils.mockInputStream(text);
-        final Pipe pipe = Pipe.open();
         input = new SingleInputExpect(
-                pipe.source(),
-                pipe.sink(),
+                new PipeTransport(Pipe.open()),
                 mock.getStream(),
                 Charset.defaultCharset(),
                 null,
                 null,
                 DEFAULT_BUFFER_SIZE,
-                false);
+                false,
+                BufferLimit.UNLIMITED,
+                null,
+                null);
         executor = Executors.newSingleThreadExecutor();
         input.start(executor);
         mock.waitUntilReady();
@@ -116,7 +123,7 @@ public class MatcherTest {
         assertEquals(result.getBefore(), "a1");
         checkIndexOutOfBound(result, 1);
 
-        StringBuilder buffer = input.getBuffer();
+        CharSequence buffer = input.getBuffer();
         result = input.expect(SMALL_TIMEOUT, contains("cx"));
         // no changes in the buffer if matching fails
         assertEquals(buffer.length(), input.getBuffer().length());
@@ -254,6 +261,38 @@ public class MatcherTest {
         assertEquals(result.group(1), "1b2c3_");
     }
 
+    /**
+     * Tests for the streaming regex engine.
+     */
+    @Test
+    public void testStreamingRegexp() throws IOException, InterruptedException {
+        Result result = input.expect(LONG_TIMEOUT, regexp("a(.)b(.)c", RegexEngine.STREAMING));
+        assertTrue(result.isSuccessful());
+        assertEquals(result.group(), "a1b2c");
+        assertEquals(result.group(2), "2");
+        assertEquals(result.groupCount(), 2);
+        assertTrue(input.getBuffer().toString().startsWith("3_"));
+
+        mock.push(text);
+        result = input.expect(LONG_TIMEOUT, regexp("3_(.*?)2", RegexEngine.STREAMING));
+        assertEquals(result.group(1), "a1b");
+        assertEquals(result.getBefore(), "");
+
+        // the input can no longer match, no need to wait
+        final long time = System.currentTimeMillis();
+        result = input.expect(
+                LONG_TIMEOUT,
+                matches(Pattern.compile("x.*"), RegexEngine.STREAMING));
+        assertFalse(result.isSuccessful());
+        assertTrue(System.currentTimeMillis() - time < LONG_TIMEOUT);
+        mock.push(text);
+        result = input.expect(
+                LONG_TIMEOUT,
+                matches(Pattern.compile("c3_a1b.*"), RegexEngine.STREAMING));
+        assertTrue(result.isSuccessful());
+        assertEquals(input.getBuffer().length(), 0);
+    }
+
     /**
      * Tests for the 'allOf' matcher
      */
@@ -617,4 +656,193 @@ public class MatcherTest {
         assertFalse(result2.isSuccessful());
         assertFalse(result2.canStopMatching());
     }
+
+    /**
+     * The results must not change when the buffer is modified by the subsequent operations.
+     */
+    @Test
+    public void testEndsWith() throws IOException, InterruptedException {
+        Result result = input.expect(SMALL_TIMEOUT, endsWith("a1"));
+        assertFalse(result.isSuccessful());
+        assertFalse(result.canStopMatching());
+        result = input.expect(SMALL_TIMEOUT, endsWith("c3_"));
+        assertTrue(result.isSuccessful());
+        assertEquals(result.getBefore(), "a1b2");
+        assertEquals(result.group(), "c3_");
+        assertEquals(result.start(), 4);
+        assertEquals(input.getBuffer().length(), 0);
+        assertEquals(endsWith("x").toString(), "endsWith('x')");
+    }
+
+    @Test
+    public void testPromptRegexp() throws IOException, InterruptedException {
+        Result result = input.expect(SMALL_TIMEOUT, promptRegexp("a1", 3));
+        assertFalse(result.isSuccessful());
+        result = input.expect(SMALL_TIMEOUT, promptRegexp("(\\w)3_$", 4));
+        assertTrue(result.isSuccessful());
+        assertEquals(result.getBefore(), "a1b2");
+        assertEquals(result.group(1), "c");
+        assertEquals(result.end(), 7);
+
+        mock.push(text);
+        // the window doesn't act as the beginning of input
+        result = input.expect(SMALL_TIMEOUT, promptRegexp("^c3_", 4));
+        assertFalse(result.isSuccessful());
+        result = input.expect(SMALL_TIMEOUT, promptRegexp("(?<=b2)c", 5));
+        assertTrue(result.isSuccessful());
+        assertEquals(result.getBefore(), "a1b2");
+        assertEquals(
+                promptRegexp(Pattern.compile("x"), 10).toString(),
+                "promptRegexp('x', 10)");
+        try {
+            promptRegexp("x", 0);
+            fail();
+        } catch (IllegalArgumentException ok) {
+        }
+    }
+
+    @Test
+    public void testResultsDetachedFromBuffer() throws IOException, InterruptedException {
+        final Result result1 = input.expect(LONG_TIMEOUT, contains("b2"));
+        final Result result2 = input.expect(LONG_TIMEOUT, regexp("(c)(3)"));
+        mock.push(text);
+        assertTrue(input.expect(LONG_TIMEOUT, contains("_a1b2")).isSuccessful());
+        assertEquals(result1.getBefore(), "a1");
+        assertEquals(result1.group(), "b2");
+        assertTrue(result1.getInput().startsWith(text));
+        assertEquals(result2.getBefore(), "");
+        assertEquals(result2.group(), "c3");
+        assertEquals(result2.group(2), "3");
+        assertTrue(result2.getInput().startsWith("c3_"));
+    }
+
+    @Test
+    public void testCharSequenceMatchers() {
+        final StringBuilder builder = new StringBuilder("abc\ndef");
+        Result result = match(contains("c\nd"), builder);
+        assertEquals(result.start(), 2);
+        assertEquals(result.getBefore(), "ab");
+        result = match(regexp("(?m)^d"), builder);
+        assertEquals(result.start(), 4);
+        result = match(sequence(contains("b"), contains("e")), builder);
+        assertEquals(result.getBefore(), "abc\nd");
+        assertEquals(result.group(), "e");
+        assertEquals(result.end(), 6);
+        result = match(allOf(startsWith("abc"), exact("abc\ndef"), anyString()), builder);
+        assertEquals(result.end(), 7);
+        assertFalse(match(anyOf(contains("x"), eof()), builder).isSuccessful());
+    }
+
+    private static Result match(Matcher<?> matcher, CharSequence input) {
+        assertTrue(matcher instanceof CharSequenceMatcher);
+        return ((CharSequenceMatcher<?>) matcher).matches(input, false);
+    }
+
+    @Test
+    public void testStatefulMatchers() {
+        final StringBuilder builder = new StringBuilder();
+        final MatcherState<?> contains = createState(contains("prompt>"));
+        final MatcherState<?> sequence = createState(sequence(contains("a"), contains("b>")));
+        final MatcherState<?> anyOf = createState(anyOf(contains("xyz"), regexp("b>")));
+        final String[] chunks = {"xxpro", "mp", "t", "> a", "", "xb", ">"};
+        int stable = 0;
+        for (String chunk : chunks) {
+            builder.append(chunk);
+            final String input = builder.toString();
+            Result result = contains.matches(input, stable, false);
+            assertEquals(input.contains("prompt>"), result.isSuccessful());
+            result = sequence.matches(input, stable, false);
+            assertEquals(input.endsWith("b>"), result.isSuccessful());
+            result = anyOf.matches(input, stable, false);
+            assertEquals(input.endsWith("b>"), result.isSuccessful());
+            stable = input.length();
+        }
+        final Result result = contains.matches(builder, stable, false);
+        assertEquals(result.getBefore(), "xx");
+        assertEquals(result.end(), 9);
+        // the beginning of the input has been modified
+        builder.setCharAt(2, 'P');
+        assertFalse(contains.matches(builder, 0, false).isSuccessful());
+        builder.insert(0, "prompt>");
+        assertEquals(contains.matches(builder, 0, false).start(), 0);
+    }
+
+    @Test
+    public void testBoundedRegexp() {
+        final String prompt = "[\\w-]+[#>$] $";
+        final Matcher<Result> bounded = regexp(prompt, 32);
+        assertEquals(bounded.toString(), "regexp('" + prompt + "', 32)");
+        final MatcherState<?> state = createState(bounded);
+        final StringBuilder builder = new StringBuilder();
+        final String[] chunks = {"welcome\n", "host", "-1", "# ", "x", "\nbox$", " "};
+        int stable = 0;
+        for (String chunk : chunks) {
+            builder.append(chunk);
+            final String input = builder.toString();
+            final Result expected = regexp(prompt).matches(input, false);
+            final Result result = state.matches(input, stable, false);
+            assertEquals(expected.isSuccessful(), result.isSuccessful());
+            if (expected.isSuccessful()) {
+                assertEquals(expected.start(), result.start());
+                assertEquals(expected.group(), result.group());
+            }
+            stable = input.length();
+        }
+        // the boundaries and lookbehind see the input before the searched region
+        final MatcherState<?> boundary = createState(regexp("(?<=xa)\\Bb|^c", 1));
+        assertFalse(boundary.matches("xxxa", 0, false).isSuccessful());
+        assertFalse(boundary.matches("xxxac", 4, false).isSuccessful());
+        builder.setLength(0);
+        builder.append("xxxa");
+        assertFalse(boundary.matches(builder, 0, false).isSuccessful());
+        builder.append("b");
+        assertEquals(boundary.matches(builder, 4, false).start(), 4);
+        try {
+            regexp(prompt, 0);
+            fail();
+        } catch (IllegalArgumentException ok) {
+        }
+    }
+
+    @Test
+    public void testBoundedRegexpComposed() {
+        final String prompt = "host-(\\d)# ";
+        final String[] chunks = {"log\n", "host-1", "# ", "0123456789", "0123456789", "ok", "\n"};
+        final Matcher<?>[][] composed = {
+                {allOf(regexp(prompt, 8), contains("ok")), allOf(regexp(prompt), contains("ok"))},
+                {sequence(regexp(prompt, 8), contains("ok")),
+                        sequence(regexp(prompt), contains("ok"))}
+        };
+        for (Matcher<?>[] matchers : composed) {
+            final MatcherState<?> state = createState(matchers[0]);
+            final StringBuilder builder = new StringBuilder();
+            int stable = 0;
+            for (String chunk : chunks) {
+                builder.append(chunk);
+                final String input = builder.toString();
+                // the data arrives between the matches of the children
+                final Result expected = matchers[1].matches(input, false);
+                final Result result = state.matches(input, stable, false);
+                assertEquals(matchers[0] + " " + input, expected.isSuccessful(),
+                        result.isSuccessful());
+                if (expected.isSuccessful()) {
+                    assertEquals(expected.end(), result.end());
+                    assertEquals(expected.getBefore(), result.getBefore());
+                }
+                stable = input.length();
+            }
+        }
+
+        // the returned result doesn't change when the state searches the next input
+        final MatcherState<?> state = createState(regexp(prompt, 8));
+        final Result first = state.matches("host-1# ", 0, false);
+        assertFalse(state.matches("host-2# ", 0, false).group(1).equals(first.group(1)));
+        assertEquals(first.group(1), "1");
+        assertEquals(first.group(), "host-1# ");
+    }
+
+    private static MatcherState<?> createState(Matcher<?> matcher) {
+        assertTrue(matcher instanceof StatefulMatcher);
+        return ((StatefulMatcher<?>) matcher).createState();
+    }
 }
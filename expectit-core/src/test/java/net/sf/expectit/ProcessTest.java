@@ -27,6 +27,7 @@ import static net.sf.expectit.matcher.Matchers.contains;
 import static net.sf.expectit.matcher.Matchers.eof;
 import static net.sf.expectit.matcher.Matchers.regexp;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 
@@ -34,6 +35,8 @@ import com.google.common.io.Files;
 import java.io.File;
 import java.io.IOException;
 import java.util.UUID;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.ConsoleHandler;
 import org.junit.After;
@@ -125,6 +128,59 @@ public class ProcessTest {
         System.out.println(expect.expectIn(1, contains(string)).group());
     }
 
+    @Test
+    public void testPollingCopier() throws IOException, InterruptedException {
+        Process process2 = new ProcessBuilder(BIN_SH).start();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                0, 2, 1, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+        Expect expect2 = new ExpectBuilder()
+                .withTimeout(LONG_TIMEOUT, TimeUnit.MILLISECONDS)
+                .withProcess(process2)
+                .withPollingCopier(50, TimeUnit.MILLISECONDS)
+                .withExecutor(executor)
+                .build();
+        try {
+            // a single thread copies both the output and the error streams
+            assertEquals(executor.getTaskCount(), 1);
+            expect2.sendLine("echo out-123");
+            expect2.sendLine("echo err-123 >&2");
+            assertTrue(expect2.expect(contains("out-123")).isSuccessful());
+            assertTrue(expect2.expectIn(1, contains("err-123")).isSuccessful());
+            expect2.sendLine("sleep 0.2; echo Line1; exit");
+            assertEquals(expect2.expect(eof()).getBefore(), "\nLine1\n");
+            assertTrue(expect2.expectIn(1, eof()).isSuccessful());
+        } finally {
+            process2.destroy();
+            process2.waitFor();
+            expect2.close();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPollingCopierUnreadInput() throws IOException, InterruptedException {
+        // the error stream is never read and overflows its transport before READY is printed
+        final String command =
+                "head -c 81920 /dev/zero | tr '\\0' x >&2; sleep 0.5; echo READY; sleep 10";
+        for (ExpectBuilder builder : new ExpectBuilder[]{
+                new ExpectBuilder(), new ExpectBuilder().withRingBuffer(32768)}) {
+            Process process2 = new ProcessBuilder(BIN_SH, "-c", command).start();
+            Expect expect2 = builder
+                    .withTimeout(LONG_TIMEOUT, TimeUnit.MILLISECONDS)
+                    .withInputs(process2.getInputStream(), process2.getErrorStream())
+                    .withOutput(process2.getOutputStream())
+                    .withPollingCopier(50, TimeUnit.MILLISECONDS)
+                    .build();
+            try {
+                assertTrue(expect2.expect(contains("READY")).isSuccessful());
+            } finally {
+                process2.destroy();
+                process2.waitFor();
+                expect2.close();
+            }
+        }
+    }
+
     @Test
     public void testEof() throws IOException {
         expect.sendLine("echo Line1");
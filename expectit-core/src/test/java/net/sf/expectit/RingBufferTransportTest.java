@@ -0,0 +1,196 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.TestUtils.LONG_TIMEOUT;
+import static net.sf.expectit.TestUtils.SMALL_TIMEOUT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for the ring buffer input transport.
+ */
+public class RingBufferTransportTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void cleanup() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCapacity() {
+        assertEquals(new RingBufferTransport(1).capacity(), 1);
+        assertEquals(new RingBufferTransport(1000).capacity(), 1024);
+        assertEquals(new RingBufferTransport(1024).capacity(), 1024);
+        try {
+            new RingBufferTransport(0);
+            fail();
+        } catch (IllegalArgumentException ok) {
+        }
+        // the capacity can't be rounded up to a power of two beyond the limit
+        try {
+            new RingBufferTransport(RingBufferTransport.MAX_CAPACITY + 1);
+            fail();
+        } catch (IllegalArgumentException ok) {
+        }
+        try {
+            new RingBufferTransport(Integer.MAX_VALUE);
+            fail();
+        } catch (IllegalArgumentException ok) {
+        }
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        RingBufferTransport transport = new RingBufferTransport(8);
+        CharBuffer dst = CharBuffer.allocate(16);
+        assertEquals(transport.read(dst), 0);
+        assertFalse(transport.await(1));
+
+        // wraps around the end of the buffer
+        for (int i = 0; i < 5; i++) {
+            transport.sink().write("abcde");
+            assertTrue(transport.await(1));
+            dst.clear();
+            assertEquals(transport.read(dst), 5);
+            assertEquals(new String(dst.array(), 0, 5), "abcde");
+        }
+
+        transport.sink().write("xyz");
+        transport.sink().close();
+        dst.clear();
+        assertEquals(transport.read(dst), 3);
+        assertTrue(transport.await(1));
+        assertEquals(transport.read(dst), -1);
+        try {
+            transport.sink().write("abc");
+            fail();
+        } catch (ClosedChannelException ok) {
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTransfer() throws Exception {
+        final Random random = new Random(1);
+        final char[] chars = new char[1024 * 1024];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (' ' + random.nextInt('~' - ' '));
+        }
+        final byte[] bytes = new String(chars).getBytes("US-ASCII");
+        final RingBufferTransport transport = new RingBufferTransport(100);
+        Future<Object> copier = executor.submit(
+                new InputStreamCopier(
+                        transport.sink(),
+                        new ByteArrayInputStream(bytes),
+                        33,
+                        null,
+                        null,
+                        false,
+                        null,
+                        null));
+        StringBuilder received = new StringBuilder();
+        CharBuffer dst = CharBuffer.allocate(77);
+        while (transport.await(LONG_TIMEOUT)) {
+            int len = transport.read(dst);
+            if (len == -1) {
+                break;
+            }
+            received.append(dst.array(), 0, len);
+            dst.clear();
+        }
+        copier.get();
+        assertEquals(new String(chars), received.toString());
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseUnblocksWriter() throws Exception {
+        final RingBufferTransport transport = new RingBufferTransport(4);
+        Future<Object> copier = executor.submit(
+                new InputStreamCopier(
+                        transport.sink(),
+                        new ByteArrayInputStream(new byte[100]),
+                        10,
+                        null,
+                        null,
+                        false,
+                        null,
+                        null));
+        try {
+            copier.get(SMALL_TIMEOUT, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException ok) {
+        }
+        transport.close();
+        try {
+            copier.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ClosedChannelException);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testInterruptUnblocksWriter() throws Exception {
+        final RingBufferTransport transport = new RingBufferTransport(4);
+        Future<Object> copier = executor.submit(
+                new InputStreamCopier(
+                        transport.sink(),
+                        new ByteArrayInputStream(new byte[100]),
+                        10,
+                        null,
+                        null,
+                        false,
+                        null,
+                        null));
+        Thread.sleep(SMALL_TIMEOUT);
+        copier.cancel(true);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(LONG_TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testAwaitInterrupted() throws Exception {
+        final RingBufferTransport transport = new RingBufferTransport(4);
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(transport.await(ExpectImpl.INFINITE_TIMEOUT));
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package net.sf.expectit;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.contains;
+import static net.sf.expectit.matcher.Matchers.regexp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Socket channel example. The channel is read without a background thread.
+ */
+public class SocketChannelExample {
+    public static void main(String[] args) throws IOException {
+        // try-with-resources omitted
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress("google.com", 80));
+        Expect expect = new ExpectBuilder()
+                .withInputChannels(channel)
+                .withOutputChannel(channel)
+                .withEchoInput(System.out)
+                .withEchoOutput(System.err)
+                .build();
+        try {
+            expect.sendLine("GET");
+            String result = expect.expect(contains("\n")).getBefore();
+            System.out.println("Result: " + result);
+            String url = expect.expect(regexp("<A HREF=\"([^\"]*)")).group(1);
+            System.out.println("Redirect url from html: " + url);
+        } finally {
+            expect.close();
+            channel.close();
+        }
+    }
+}
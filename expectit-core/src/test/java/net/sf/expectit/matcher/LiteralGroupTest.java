@@ -0,0 +1,120 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.allOf;
+import static net.sf.expectit.matcher.Matchers.anyOf;
+import static net.sf.expectit.matcher.Matchers.contains;
+import static net.sf.expectit.matcher.Matchers.regexp;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Random;
+import net.sf.expectit.MultiResult;
+import net.sf.expectit.Result;
+import org.junit.Test;
+
+/**
+ * Verifies that the substring matchers evaluated by the Aho-Corasick automaton produce the same
+ * results as the matchers evaluated one by one.
+ */
+public class LiteralGroupTest {
+
+    @Test
+    public void testGrouping() {
+        assertNull(LiteralGroup.create(new Matcher<?>[]{contains("a"), regexp("b")}));
+        assertNull(LiteralGroup.create(new Matcher<?>[]{contains("a"), contains("")}));
+        final LiteralGroup group = LiteralGroup.create(
+                new Matcher<?>[]{contains("a"), regexp("b"), contains("c")});
+        assertNotNull(group);
+        assertEquals(group.contains(0), true);
+        assertEquals(group.contains(1), false);
+        assertEquals(group.contains(2), true);
+    }
+
+    @Test
+    public void testOverlappingStrings() {
+        final Matcher<?>[] matchers = {
+                contains("she"), contains("he"), contains("hers"), contains("his"),
+                contains("he"), contains("x"), contains("")};
+        final MultiResult result = ((MultiMatcher) anyOf(matchers)).matches("ushers", false);
+        assertResults(matchers, "ushers", result.getResults());
+        assertEquals(result.group(), "hers");
+        assertFalse(((MultiMatcher) allOf(matchers)).matches("ushers", false).isSuccessful());
+    }
+
+    @Test
+    public void testRandomInput() {
+        final Random random = new Random(1);
+        for (int n = 0; n < 200; n++) {
+            final Matcher<?>[] matchers = new Matcher<?>[2 + random.nextInt(10)];
+            for (int i = 0; i < matchers.length; i++) {
+                matchers[i] = i % 4 == 3
+                        ? regexp(randomString(random, 2))
+                        : contains(randomString(random, 1 + random.nextInt(4)));
+            }
+            final MultiMatcher anyOf = (MultiMatcher) anyOf(matchers);
+            final MatcherState<MultiResult> state = anyOf.createState();
+            final StringBuilder input = new StringBuilder();
+            int stable = 0;
+            for (int chunk = 0; chunk < 10; chunk++) {
+                input.append(randomString(random, random.nextInt(8)));
+                final String string = input.toString();
+                assertResults(matchers, string, anyOf.matches(string, false).getResults());
+                assertResults(
+                        matchers,
+                        string,
+                        state.matches(string, stable, false).getResults());
+                stable = string.length();
+            }
+        }
+    }
+
+    private static String randomString(final Random random, final int length) {
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(3));
+        }
+        return new String(chars);
+    }
+
+    private static void assertResults(
+            final Matcher<?>[] matchers,
+            final String input,
+            final List<Result> results) {
+        assertEquals(matchers.length, results.size());
+        for (int i = 0; i < matchers.length; i++) {
+            final Result expected = matchers[i].matches(input, false);
+            final Result actual = results.get(i);
+            assertEquals(expected.isSuccessful(), actual.isSuccessful());
+            assertEquals(expected.canStopMatching(), actual.canStopMatching());
+            if (expected.isSuccessful()) {
+                assertEquals(expected.start(), actual.start());
+                assertEquals(expected.end(), actual.end());
+                assertEquals(expected.getBefore(), actual.getBefore());
+                assertEquals(expected.group(), actual.group());
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package net.sf.expectit.matcher;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.matches;
+import static net.sf.expectit.matcher.Matchers.regexp;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+import net.sf.expectit.Result;
+import org.junit.Test;
+
+/**
+ * Verifies that the streaming regex engine produces the same results as
+ * {@link java.util.regex}.
+ */
+public class StreamingRegexTest {
+    private static final String[] PATTERNS = {
+            "", "abc", "a|b|", "a*", "a+?b", "(a|ab)(c|bcd)(d*)", "(a+)(b+)?", "x*y?z+",
+            "[a-c]+", "[^a-c\\n]+", "[\\w.-]+@\\w+", "\\d{2,3}", "\\s*\\S+", "(?i)AbC",
+            "(?i:[a-b]+)c", "a.c", "(?s)a.c", "(?m)^\\w+$", "^abc", "\\babc\\b", "\\Bb",
+            "\\Aa", "c\\z", "(a{2}){1,2}", "a{2,}?", "((a)|b)+", "\\Qa.c\\E",
+            "\\x41\\u0042\\0103", "\\t\\n\\r", "[\\]\\[-]+", "(?m)$", "(?m)^", "[a\\-z]+",
+            "[%-]+", "(?-i)a(?i)b", "\\w+\\s*[#>$] "};
+
+    private static final String[] INPUTS = {
+            "", "abc", "xabcdx", "abcd", "aaab", "ABC abc", "a\nc", "aac\nabc\r\nx",
+            "user@host", "12345", "  foo bar", "ABC", "\t\n\r", "[-]", "host-1# ",
+            "aaaa", "bbac", "abc\n", "a.c", "root@box:~$ "};
+
+    @Test
+    public void testPatterns() {
+        for (String pattern : PATTERNS) {
+            for (String input : INPUTS) {
+                assertSame(Pattern.compile(pattern), input, true);
+            }
+        }
+    }
+
+    @Test
+    public void testRandomPatterns() {
+        final Random random = new Random(1);
+        for (int n = 0; n < 2000; n++) {
+            final String pattern = randomPattern(random, 3, new boolean[1]);
+            final Pattern compiled;
+            try {
+                compiled = Pattern.compile(pattern);
+            } catch (RuntimeException e) {
+                continue;
+            }
+            for (int i = 0; i < 5; i++) {
+                assertSame(compiled, randomInput(random, random.nextInt(12)), false);
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalInput() {
+        final Random random = new Random(2);
+        for (int n = 0; n < 500; n++) {
+            final Pattern pattern = Pattern.compile(randomPattern(random, 3, new boolean[1]));
+            for (boolean find : new boolean[]{true, false}) {
+                final StatefulMatcher<Result> matcher = streaming(pattern, find);
+                MatcherState<Result> state = matcher.createState();
+                final StringBuilder input = new StringBuilder();
+                int stable = 0;
+                for (int chunk = 0; chunk < 8; chunk++) {
+                    if (random.nextInt(8) == 0 && input.length() > 0) {
+                        // the buffer has been modified, e.g. by a filter
+                        input.setCharAt(0, 'x');
+                        stable = 0;
+                    }
+                    input.append(randomInput(random, random.nextInt(4)));
+                    final String string = input.toString();
+                    final Result actual = state.matches(string, stable, false);
+                    assertResult(
+                            pattern + " " + string,
+                            jdk(pattern, find, string),
+                            actual,
+                            false);
+                    if (actual.isSuccessful()) {
+                        // the expect operation completes with a new state
+                        state = matcher.createState();
+                        stable = 0;
+                    } else {
+                        stable = string.length();
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEarlyFailure() {
+        final Matcher<Result> matcher = matches(Pattern.compile("ab+c"), RegexEngine.STREAMING);
+        assertFalse(matcher.matches("", false).canStopMatching());
+        assertFalse(matcher.matches("abb", false).canStopMatching());
+        assertTrue(matcher.matches("abd", false).canStopMatching());
+        assertTrue(matcher.matches("abcd", false).canStopMatching());
+        assertTrue(matcher.matches("abbc", false).isSuccessful());
+        final MatcherState<Result> state = ((StatefulMatcher<Result>) matcher).createState();
+        assertFalse(state.matches("ab", 0, false).canStopMatching());
+        assertTrue(state.matches("abx", 2, false).canStopMatching());
+        assertFalse(matches(Pattern.compile("ab+c")).matches("abd", false).canStopMatching());
+        assertFalse(regexp("ab+c", RegexEngine.STREAMING).matches("abd", false).canStopMatching());
+    }
+
+    @Test
+    public void testUnsupportedConstructs() {
+        final String[] patterns = {
+                "(a)\\1", "a(?=b)", "a(?!b)", "(?<=a)b", "(?<!a)b", "(?>a)", "a*+", "\\p{Alpha}",
+                "[a-z&&[^b]]", "[a[b]]", "(?x)a b", "(?<name>a)", "\\Z", "\\Ga", "\\x{41}"};
+        for (String pattern : patterns) {
+            try {
+                regexp(pattern, RegexEngine.STREAMING);
+                fail(pattern);
+            } catch (IllegalArgumentException ok) {
+            }
+        }
+        try {
+            regexp(Pattern.compile("a", Pattern.COMMENTS), RegexEngine.STREAMING);
+            fail();
+        } catch (IllegalArgumentException ok) {
+        }
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals(regexp("a+", RegexEngine.STREAMING).toString(), regexp("a+").toString());
+        assertEquals(
+                matches(Pattern.compile("a+"), RegexEngine.STREAMING).toString(),
+                matches("a+").toString());
+    }
+
+    private static void assertSame(
+            final Pattern pattern,
+            final String input,
+            final boolean allGroups) {
+        for (boolean find : new boolean[]{true, false}) {
+            final Result actual = streaming(pattern, find).matches(input, false);
+            assertResult(pattern + " " + input, jdk(pattern, find, input), actual, allGroups);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StatefulMatcher<Result> streaming(final Pattern pattern, final boolean find) {
+        return (StatefulMatcher<Result>) (find
+                ? regexp(pattern, RegexEngine.STREAMING)
+                : matches(pattern, RegexEngine.STREAMING));
+    }
+
+    private static Result jdk(final Pattern pattern, final boolean find, final String input) {
+        return (find ? regexp(pattern) : matches(pattern)).matches(input, false);
+    }
+
+    /**
+     * Compares the results. The groups within the repeated constructs are compared only when
+     * requested since {@link java.util.regex} keeps the groups captured by the backtracked
+     * iterations in some cases.
+     */
+    private static void assertResult(
+            final String message,
+            final Result expected,
+            final Result actual,
+            final boolean allGroups) {
+        assertEquals(message, expected.isSuccessful(), actual.isSuccessful());
+        if (expected.isSuccessful()) {
+            assertEquals(message, expected.groupCount(), actual.groupCount());
+            for (int i = 0; i <= (allGroups ? expected.groupCount() : 0); i++) {
+                assertEquals(message, expected.start(i), actual.start(i));
+                assertEquals(message, expected.end(i), actual.end(i));
+                assertEquals(message, expected.group(i), actual.group(i));
+            }
+            assertEquals(message, expected.getBefore(), actual.getBefore());
+        }
+    }
+
+    /**
+     * Generates a random pattern. The loops whose body can match the empty string are avoided
+     * since the groups captured by their empty iterations differ.
+     *
+     * @param nullable receives whether the pattern can match the empty string
+     */
+    private static String randomPattern(
+            final Random random,
+            final int depth,
+            final boolean[] nullable) {
+        final StringBuilder result = new StringBuilder();
+        final int length = 1 + random.nextInt(3);
+        boolean branchNullable = true;
+        nullable[0] = false;
+        for (int i = 0; i < length; i++) {
+            if (i > 0 && random.nextInt(6) == 0) {
+                result.append('|');
+                nullable[0] |= branchNullable;
+                branchNullable = true;
+            }
+            final boolean[] atomNullable = new boolean[1];
+            result.append(randomAtom(random, depth, atomNullable));
+            switch (atomNullable[0] ? 3 + random.nextInt(9) : random.nextInt(12)) {
+                case 0:
+                    result.append('*');
+                    atomNullable[0] = true;
+                    break;
+                case 1:
+                    result.append('+');
+                    break;
+                case 2:
+                    result.append("*?");
+                    atomNullable[0] = true;
+                    break;
+                case 3:
+                    result.append('?');
+                    atomNullable[0] = true;
+                    break;
+                case 4:
+                    result.append("??");
+                    atomNullable[0] = true;
+                    break;
+                case 5:
+                    if (!atomNullable[0]) {
+                        result.append("{1,2}");
+                    }
+                    break;
+                default:
+            }
+            branchNullable &= atomNullable[0];
+        }
+        nullable[0] |= branchNullable;
+        return result.toString();
+    }
+
+    private static String randomAtom(
+            final Random random,
+            final int depth,
+            final boolean[] nullable) {
+        final String[] atoms = {
+                "a", "b", "c", ".", "[ab]", "[^a]", "\\w", "\\n", "\\s"};
+        final String[] assertions = {"\\b", "(?m:^)", "(?m:$)", "^"};
+        if (depth > 0) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    return "(" + randomPattern(random, depth - 1, nullable) + ")";
+                case 1:
+                    return "(?:" + randomPattern(random, depth - 1, nullable) + ")";
+                default:
+            }
+        }
+        if (random.nextInt(4) == 0) {
+            nullable[0] = true;
+            return assertions[random.nextInt(assertions.length)];
+        }
+        nullable[0] = false;
+        return atoms[random.nextInt(atoms.length)];
+    }
+
+    private static String randomInput(final Random random, final int length) {
+        final String alphabet = "aabbc \n";
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+}
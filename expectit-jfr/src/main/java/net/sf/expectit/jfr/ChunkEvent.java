@@ -0,0 +1,50 @@
+package net.sf.expectit.jfr;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A chunk of data read from an input. Disabled by default as the chunks may be frequent.
+ */
+@Name("net.sf.expectit.Chunk")
+@Label("Chunk Received")
+@Category("ExpectIt")
+@Description("A chunk of data read from an input and decoded")
+@Enabled(false)
+@StackTrace(false)
+final class ChunkEvent extends jdk.jfr.Event {
+    @Label("Input")
+    int input;
+
+    @Label("Bytes")
+    @DataAmount
+    int bytes;
+
+    @Label("Characters")
+    int chars;
+}
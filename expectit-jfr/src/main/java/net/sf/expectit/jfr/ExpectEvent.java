@@ -0,0 +1,75 @@
+package net.sf.expectit.jfr;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import net.sf.expectit.matcher.Matcher;
+
+/**
+ * An expect operation.
+ */
+@Name("net.sf.expectit.Expect")
+@Label("Expect")
+@Category("ExpectIt")
+@Description("An expect operation waiting for the input to match")
+final class ExpectEvent extends jdk.jfr.Event {
+    static final String SUCCESS = "success";
+    static final String TIMEOUT = "timeout";
+    static final String EOF = "eof";
+    static final String FAILURE = "failure";
+
+    @Label("Input")
+    int input;
+
+    @Label("Matcher")
+    String matcher;
+
+    @Label("Timeout")
+    @Description("The timeout of the operation, or -1 if it waits infinitely")
+    @Timespan(Timespan.MILLISECONDS)
+    long timeout;
+
+    @Label("Outcome")
+    @Description("One of success, timeout, eof or failure")
+    String outcome;
+
+    @Label("Consumed Characters")
+    @Description("The number of characters consumed from the input by the successful match")
+    int consumed;
+
+    @Label("Matcher Evaluations")
+    @Description("The number of times the matcher ran over the input buffer")
+    int evaluations;
+
+    @Label("Dropped Characters")
+    @Description("The number of characters dropped from the input buffer because of its overflow")
+    long dropped;
+
+    @Label("Error")
+    String error;
+
+    // described only when the event is committed
+    transient Matcher<?> matcherObject;
+}
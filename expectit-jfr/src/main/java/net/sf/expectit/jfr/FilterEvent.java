@@ -0,0 +1,50 @@
+package net.sf.expectit.jfr;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The input filter processing the received characters. Disabled by default as the filter
+ * runs for every chunk.
+ */
+@Name("net.sf.expectit.Filter")
+@Label("Filter")
+@Category("ExpectIt")
+@Description("The input filter processing the received characters")
+@Enabled(false)
+@StackTrace(false)
+final class FilterEvent extends jdk.jfr.Event {
+    @Label("Input")
+    int input;
+
+    @Label("Input Characters")
+    int inputChars;
+
+    @Label("Appended Characters")
+    @Description("The number of characters appended to the input buffer, or -1 if discarded")
+    int appendedChars;
+}
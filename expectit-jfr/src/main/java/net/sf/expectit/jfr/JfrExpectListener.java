@@ -0,0 +1,176 @@
+package net.sf.expectit.jfr;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import net.sf.expectit.ExpectListener;
+import net.sf.expectit.Result;
+import net.sf.expectit.matcher.Matcher;
+
+/**
+ * An {@link ExpectListener} emitting the JDK Flight Recorder events, so the slow expect
+ * operations can be correlated with the garbage collection and I/O in the recordings. The
+ * listener is registered by {@link net.sf.expectit.ExpectBuilder#withListener(ExpectListener)}.
+ * <p/>
+ * The following events are emitted in the "ExpectIt" category:
+ * <ul>
+ * <li>{@code net.sf.expectit.Expect} for every expect operation, with the matcher, the
+ * timeout, the outcome and the number of the matcher evaluations;</li>
+ * <li>{@code net.sf.expectit.Send} for every write to the output, with the number of bytes;
+ * </li>
+ * <li>{@code net.sf.expectit.Chunk} for every chunk read from an input, with the number of
+ * bytes and characters, disabled by default;</li>
+ * <li>{@code net.sf.expectit.Filter} for every run of the input filter, disabled by
+ * default.</li>
+ * </ul>
+ * The events which are not enabled in the recording cost a check of the event settings. The
+ * matcher is described only when the event is committed.
+ */
+public final class JfrExpectListener implements ExpectListener {
+    @Override
+    public void chunkReceived(int input, char[] chars, int offset, int length, int bytes) {
+        final ChunkEvent event = new ChunkEvent();
+        if (event.isEnabled()) {
+            event.input = input;
+            event.bytes = bytes;
+            event.chars = length;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object filterStarted(int input, int length) {
+        final FilterEvent event = new FilterEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.input = input;
+        event.inputChars = length;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void filterCompleted(Object context, int length) {
+        if (context == null) {
+            return;
+        }
+        final FilterEvent event = (FilterEvent) context;
+        event.end();
+        if (event.shouldCommit()) {
+            event.appendedChars = length;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object expectStarted(int input, Matcher<?> matcher, long timeoutMs) {
+        final ExpectEvent event = new ExpectEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.input = input;
+        event.matcherObject = matcher;
+        event.timeout = timeoutMs;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void matcherEvaluated(Object context, Result result, int length, long nanos) {
+        if (context != null) {
+            ((ExpectEvent) context).evaluations++;
+        }
+    }
+
+    @Override
+    public void inputDropped(Object context, int length) {
+        if (context != null) {
+            ((ExpectEvent) context).dropped += length;
+        }
+    }
+
+    @Override
+    public void inputIdle(Object context, boolean bufferFull) {
+    }
+
+    @Override
+    public void matchSucceeded(Object context, Result result) {
+        commit(context, ExpectEvent.SUCCESS, result.end(), null);
+    }
+
+    @Override
+    public void timeout(Object context, Result result) {
+        commit(context, ExpectEvent.TIMEOUT, 0, null);
+    }
+
+    @Override
+    public void eof(Object context, Result result) {
+        commit(context, ExpectEvent.EOF, 0, null);
+    }
+
+    @Override
+    public void expectFailed(Object context, Throwable error) {
+        commit(context, ExpectEvent.FAILURE, 0, error);
+    }
+
+    private static void commit(
+            final Object context,
+            final String outcome,
+            final int consumed,
+            final Throwable error) {
+        if (context == null) {
+            return;
+        }
+        final ExpectEvent event = (ExpectEvent) context;
+        event.end();
+        if (event.shouldCommit()) {
+            event.matcher = event.matcherObject.toString();
+            event.outcome = outcome;
+            event.consumed = consumed;
+            event.error = error != null ? error.toString() : null;
+            event.commit();
+        }
+        event.matcherObject = null;
+    }
+
+    @Override
+    public Object sendStarted(byte[] bytes, int offset, int length) {
+        final SendEvent event = new SendEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.bytes = length;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void sendCompleted(Object context) {
+        if (context == null) {
+            return;
+        }
+        final SendEvent event = (SendEvent) context;
+        event.end();
+        if (event.shouldCommit()) {
+            event.commit();
+        }
+    }
+}
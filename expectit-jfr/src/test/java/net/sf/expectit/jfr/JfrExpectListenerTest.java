@@ -0,0 +1,133 @@
+package net.sf.expectit.jfr;
+
+/*
+ * #%L
+ * ExpectIt
+ * %%
+ * Copyright (C) 2014 Alexey Gavrilov and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static net.sf.expectit.matcher.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.sf.expectit.Expect;
+import net.sf.expectit.ExpectBuilder;
+import net.sf.expectit.filter.Filters;
+import org.junit.Test;
+
+/**
+ * Tests for the flight recorder events.
+ */
+public class JfrExpectListenerTest {
+
+    @Test
+    public void testEvents() throws IOException {
+        final List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(ExpectEvent.class);
+            recording.enable(SendEvent.class);
+            recording.enable(ChunkEvent.class);
+            recording.enable(FilterEvent.class);
+            recording.start();
+            try (Expect expect = new ExpectBuilder()
+                    .withInputs(new ByteArrayInputStream("abc".getBytes()))
+                    .withOutput(new ByteArrayOutputStream())
+                    .withInputFilters(Filters.removeColors())
+                    .withInlineReading()
+                    .withTimeout(1, TimeUnit.SECONDS)
+                    .withListener(new JfrExpectListener())
+                    .build()) {
+                assertTrue(expect.expect(contains("b")).isSuccessful());
+                expect.sendLine("x");
+                assertFalse(expect.expect(contains("d")).isSuccessful());
+            }
+            recording.stop();
+            events = readEvents(recording);
+        }
+
+        final List<RecordedEvent> expects = filter(events, "net.sf.expectit.Expect");
+        assertEquals(expects.size(), 2);
+        assertEquals(expects.get(0).getString("matcher"), "contains('b')");
+        assertEquals(expects.get(0).getLong("timeout"), 1000);
+        assertEquals(expects.get(0).getString("outcome"), "success");
+        assertEquals(expects.get(0).getInt("consumed"), 2);
+        assertTrue(expects.get(0).getInt("evaluations") >= 1);
+        assertEquals(expects.get(1).getString("matcher"), "contains('d')");
+        assertEquals(expects.get(1).getString("outcome"), "eof");
+        assertTrue(expects.get(1).getStackTrace() != null);
+
+        final List<RecordedEvent> sends = filter(events, "net.sf.expectit.Send");
+        assertEquals(sends.size(), 1);
+        assertEquals(sends.get(0).getInt("bytes"), 2);
+
+        final List<RecordedEvent> chunks = filter(events, "net.sf.expectit.Chunk");
+        assertEquals(chunks.size(), 1);
+        assertEquals(chunks.get(0).getInt("bytes"), 3);
+        assertEquals(chunks.get(0).getInt("chars"), 3);
+
+        final List<RecordedEvent> filters = filter(events, "net.sf.expectit.Filter");
+        assertEquals(filters.size(), 1);
+        assertEquals(filters.get(0).getInt("inputChars"), 3);
+        assertEquals(filters.get(0).getInt("appendedChars"), 3);
+    }
+
+    @Test
+    public void testDisabled() throws IOException {
+        final JfrExpectListener listener = new JfrExpectListener();
+        assertEquals(listener.expectStarted(0, contains("a"), 1), null);
+        assertEquals(listener.sendStarted(new byte[1], 0, 1), null);
+        assertEquals(listener.filterStarted(0, 1), null);
+        listener.timeout(null, null);
+        listener.sendCompleted(null);
+        listener.filterCompleted(null, 1);
+    }
+
+    private static List<RecordedEvent> readEvents(final Recording recording)
+            throws IOException {
+        final Path file = Files.createTempFile("expectit", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<RecordedEvent> filter(
+            final List<RecordedEvent> events,
+            final String name) {
+        final List<RecordedEvent> result = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+}